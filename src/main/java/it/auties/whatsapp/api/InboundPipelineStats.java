@@ -0,0 +1,50 @@
+package it.auties.whatsapp.api;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A snapshot of the metrics collected by the pipeline that processes incoming nodes
+ *
+ * @param frames the stage that deciphers and decodes frames on the socket thread
+ * @param lanes  the stages that decrypt and process messages, each one preserves the order of the chats assigned to it
+ */
+public record InboundPipelineStats(FrameStage frames, List<Stage> lanes) {
+    /**
+     * Returns the sum of the queue depths of all lanes
+     *
+     * @return a non-negative int
+     */
+    public int queueDepth() {
+        return lanes.stream()
+                .mapToInt(Stage::queueDepth)
+                .sum();
+    }
+
+    /**
+     * The metrics of a single stage
+     *
+     * @param name           the name of the stage
+     * @param queueDepth     the number of tasks waiting to be processed by the stage
+     * @param processed      the number of tasks processed by the stage
+     * @param averageWait    the average time a task waited in the queue of the stage
+     * @param maxWait        the maximum time a task waited in the queue of the stage
+     * @param averageLatency the average time the stage took to process a task
+     * @param maxLatency     the maximum time the stage took to process a task
+     */
+    public record Stage(String name, int queueDepth, long processed, Duration averageWait, Duration maxWait,
+                        Duration averageLatency, Duration maxLatency) {
+
+    }
+
+    /**
+     * The metrics of the frames stage, which has no queue as frames are processed as soon as they are read from the socket
+     *
+     * @param processed      the number of frames processed
+     * @param averageLatency the average time it took to process a frame
+     * @param maxLatency     the maximum time it took to process a frame
+     */
+    public record FrameStage(long processed, Duration averageLatency, Duration maxLatency) {
+
+    }
+}
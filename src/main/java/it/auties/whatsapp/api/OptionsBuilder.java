@@ -7,6 +7,7 @@ import it.auties.whatsapp.model.signal.auth.UserAgent.ReleaseChannel;
 import it.auties.whatsapp.model.signal.auth.Version;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 
 @SuppressWarnings("unused")
@@ -72,6 +73,30 @@ public sealed class OptionsBuilder<T extends OptionsBuilder<T>> permits MobileOp
         return (T) this;
     }
 
+    /**
+     * Sets how long to wait for the preview of a text message that contains a link before sending it without one
+     * By default, it's five seconds
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T textPreviewTimeout(Duration textPreviewTimeout) {
+        store.setTextPreviewTimeout(textPreviewTimeout);
+        return (T) this;
+    }
+
+    /**
+     * Sets whether the messages saved in the chats should be kept in a full-text index for {@link Store#searchMessages(it.auties.whatsapp.controller.MessageQuery)}
+     * By default, it's disabled and every message is scanned when searching
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T indexMessages(boolean indexMessages) {
+        store.setIndexMessages(indexMessages);
+        return (T) this;
+    }
+
     /**
      * Sets the error handler for this session
      *
@@ -65,6 +65,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.chrono.ChronoZonedDateTime;
@@ -136,7 +137,7 @@ public class Whatsapp {
                 removeInstanceByUuid(store.uuid());
             }
         });
-        if (store.autodetectListeners()) {
+        if (!store.autodetectListeners()) {
             return;
         }
 
@@ -210,6 +211,15 @@ public class Whatsapp {
         return socketHandler.store();
     }
 
+    /**
+     * Returns the queue depths and the latencies of the pipeline that processes incoming nodes
+     *
+     * @return a non-null snapshot
+     */
+    public InboundPipelineStats inboundStats() {
+        return socketHandler.inboundStats();
+    }
+
     /**
      * Disconnects from Whatsapp Web's WebSocket if a previous connection exists
      *
@@ -261,8 +271,7 @@ public class Whatsapp {
         var attributes = Attributes.of()
                 .put("name", type.data())
                 .put("value", value.data())
-                .put("dhash", "none", () -> value == PrivacySettingValue.CONTACTS_EXCEPT)
-                .toMap();
+                .put("dhash", "none", () -> value == PrivacySettingValue.CONTACTS_EXCEPT);
         var excludedJids = Arrays.stream(excluded).map(JidProvider::toJid).toList();
         var children = value != PrivacySettingValue.CONTACTS_EXCEPT ? null : excludedJids.stream()
                 .map(entry -> Node.of("user", Map.of("jid", entry, "action", "add")))
@@ -1163,8 +1172,7 @@ public class Whatsapp {
         var attributes = Attributes.of()
                 .put("id", ChatMessageKey.randomId(), () -> description != null)
                 .put("delete", true, () -> description == null)
-                .put("prev", descriptionId, () -> descriptionId != null)
-                .toMap();
+                .put("prev", descriptionId, () -> descriptionId != null);
         var body = Node.of("description", attributes, descriptionNode);
         return socketHandler.sendQuery(group.toJid(), "set", "w:g2", body)
                 .thenRun(() -> onDescriptionSet(group, description));
@@ -1717,6 +1725,7 @@ public class Whatsapp {
             case MOBILE -> {
                 // TODO: Send notification to companions
                 messageInfo.chat().ifPresent(chat -> chat.removeMessage(messageInfo));
+                store().removeIndexedMessage(messageInfo.chatJid(), messageInfo.id());
                 yield CompletableFuture.completedFuture(null);
             }
         };
@@ -2053,6 +2062,42 @@ public class Whatsapp {
         });
     }
 
+    /**
+     * Downloads a media from Whatsapp's servers and writes it to a file.
+     * The media is decrypted and verified while it's being downloaded, so it's never fully loaded in memory.
+     * If the download fails because the media is too old/invalid, a reupload request is sent to Whatsapp.
+     *
+     * @param info the non-null message info wrapping the media
+     * @param path the non-null path where the media should be written
+     * @return a CompletableFuture that completes with whether the media could be downloaded
+     */
+    public CompletableFuture<Boolean> downloadMedia(ChatMessageInfo info, Path path) {
+        if (!(info.message().content() instanceof MediaMessage<?> mediaMessage)) {
+            throw new IllegalArgumentException("Expected media message, got: " + info.message().category());
+        }
+
+        return Medias.downloadAsync(mediaMessage, path).thenCompose(result -> {
+            if (result) {
+                return CompletableFuture.completedFuture(true);
+            }
+
+            return requireMediaReupload(info)
+                    .thenCompose(ignored -> Medias.downloadAsync(mediaMessage, path));
+        });
+    }
+
+    /**
+     * Downloads a media from Whatsapp's servers and writes it to a file.
+     * The media is decrypted and verified while it's being downloaded, so it's never fully loaded in memory.
+     *
+     * @param mediaMessage the non-null media
+     * @param path         the non-null path where the media should be written
+     * @return a CompletableFuture that completes with whether the media could be downloaded
+     */
+    public CompletableFuture<Boolean> downloadMedia(MediaMessage<?> mediaMessage, Path path) {
+        return Medias.downloadAsync(mediaMessage, path);
+    }
+
     /**
      * Asks Whatsapp for a media reupload for a specific media
      *
@@ -2074,8 +2119,7 @@ public class Whatsapp {
         var rmrAttributes = Attributes.of()
                 .put("jid", info.chatJid())
                 .put("from_me", String.valueOf(info.fromMe()))
-                .put("participant", info.senderJid(), () -> !Objects.equals(info.chatJid(), info.senderJid()))
-                .toMap();
+                .put("participant", info.senderJid(), () -> !Objects.equals(info.chatJid(), info.senderJid()));
         var node = Node.of("receipt", Map.of("id", info.key().id(), "to", jidOrThrowError()
                 .withoutDevice(), "type", "server-error"), Node.of("encrypt", Node.of("enc_p", ciphertext), Node.of("enc_iv", retryIv)), Node.of("rmr", rmrAttributes));
         return socketHandler.send(node, result -> result.hasDescription("notification"))
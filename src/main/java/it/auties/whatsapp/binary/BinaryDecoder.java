@@ -2,6 +2,7 @@ package it.auties.whatsapp.binary;
 
 import it.auties.whatsapp.model.jid.Jid;
 import it.auties.whatsapp.model.jid.JidServer;
+import it.auties.whatsapp.model.node.Attributes;
 import it.auties.whatsapp.model.node.Node;
 import it.auties.whatsapp.util.BytesHelper;
 import it.auties.whatsapp.util.Validate;
@@ -11,9 +12,7 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static it.auties.whatsapp.binary.BinaryTag.*;
 
@@ -21,11 +20,15 @@ public final class BinaryDecoder implements AutoCloseable {
     private final DataInputStream dataInputStream;
     private boolean closed;
     public BinaryDecoder(byte[] buffer) {
+        this(buffer, buffer.length);
+    }
+
+    public BinaryDecoder(byte[] buffer, int length) {
         var token = buffer[0] & 2;
         if (token == 0) {
-            this.dataInputStream = new DataInputStream(new ByteArrayInputStream(buffer, 1, buffer.length - 1));
+            this.dataInputStream = new DataInputStream(new ByteArrayInputStream(buffer, 1, length - 1));
         }else {
-            this.dataInputStream = new DataInputStream(new ByteArrayInputStream(BytesHelper.decompress(buffer, 1, buffer.length - 1)));
+            this.dataInputStream = new DataInputStream(new ByteArrayInputStream(BytesHelper.decompress(buffer, 1, length - 1)));
         }
     }
     
@@ -53,7 +56,7 @@ public final class BinaryDecoder implements AutoCloseable {
     }
 
     private List<Node> readList(int size) throws IOException {
-        var results = new ArrayList<Node>();
+        var results = new ArrayList<Node>(size);
         for (int index = 0; index < size; index++) {
             results.add(decode());
         }
@@ -139,21 +142,21 @@ public final class BinaryDecoder implements AutoCloseable {
         var agent = dataInputStream.readUnsignedByte();
         var device = dataInputStream.readUnsignedByte();
         var user = readString();
-        return new Jid(user, JidServer.WHATSAPP, device == 0 ? null : device, agent == 0 ? null : agent);
+        return new Jid(user, JidServer.WHATSAPP, device == 0 ? null : device, agent == 0 ? null : agent).intern();
     }
 
     private int readSize(int token) throws IOException {
         return LIST_8.contentEquals(token) ? dataInputStream.readUnsignedByte() : dataInputStream.readUnsignedShort();
     }
 
-    private Map<String, Object> readAttributes(int size) throws IOException {
-        var map = new HashMap<String, Object>();
+    private Attributes readAttributes(int size) throws IOException {
+        var attributes = Attributes.ofCapacity((size - 1) / 2);
         for (var pair = size - 1; pair > 1; pair -= 2) {
             var key = readString();
             var value = read(true);
-            map.put(key, value);
+            attributes.put(key, value);
         }
-        return map;
+        return attributes;
     }
 
     @Override
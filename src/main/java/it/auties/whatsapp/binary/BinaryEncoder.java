@@ -184,9 +184,10 @@ public final class BinaryEncoder implements AutoCloseable {
     }
 
     private void writeAttributes(Node input) throws IOException {
-        for (var entry : input.attributes().toMap().entrySet()) {
-            writeString(entry.getKey());
-            write(entry.getValue());
+        var attributes = input.attributes();
+        for (var index = 0; index < attributes.size(); index++) {
+            writeString(attributes.keyAt(index));
+            write(attributes.valueAt(index));
         }
     }
 
@@ -6,6 +6,7 @@ import it.auties.protobuf.annotation.ProtobufProperty;
 import it.auties.protobuf.model.ProtobufMessage;
 import it.auties.protobuf.model.ProtobufType;
 import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.crypto.NoiseTransport;
 import it.auties.whatsapp.model.companion.CompanionHashState;
 import it.auties.whatsapp.model.companion.CompanionPatch;
 import it.auties.whatsapp.model.companion.CompanionSyncKey;
@@ -30,12 +31,9 @@ import it.auties.whatsapp.util.ProtobufUuidMixin;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.Objects.requireNonNullElseGet;
-
 /**
  * This controller holds the cryptographic-related data regarding a WhatsappWeb session
  */
@@ -91,11 +89,18 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
     Long signedKeyIndexTimestamp;
 
     /**
-     * Whether these keys have generated pre keys assigned to them
+     * The pre keys that were uploaded to the server and weren't consumed yet
      */
     @ProtobufProperty(index = 13, type = ProtobufType.OBJECT)
     final List<SignalPreKeyPair> preKeys;
 
+    /**
+     * The id of the last pre key that was generated
+     * Pre keys are removed once they are consumed, so this value can't be derived from {@link Keys#preKeys}
+     */
+    @ProtobufProperty(index = 27, type = ProtobufType.INT32)
+    Integer lastPreKeyId;
+
     /**
      * The phone id for the mobile api
      */
@@ -170,25 +175,19 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
     boolean initialAppSync;
 
     /**
-     * Write counter for IV
-     */
-    @JsonIgnore
-    final AtomicLong writeCounter;
-
-    /**
-     * Read counter for IV
+     * Session dependent cipher to write and read cyphered messages
      */
     @JsonIgnore
-    final AtomicLong readCounter;
+    NoiseTransport transport;
 
     /**
-     * Session dependent keys to write and read cyphered messages
+     * The pre keys indexed by their id
      */
     @JsonIgnore
-    byte[] writeKey, readKey;
+    final Map<Integer, SignalPreKeyPair> preKeysById;
 
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
-    public Keys(UUID uuid, PhoneNumber phoneNumber, ClientType clientType, Collection<String> alias, Integer registrationId, SignalKeyPair noiseKeyPair, SignalKeyPair ephemeralKeyPair, SignalKeyPair identityKeyPair, SignalKeyPair companionKeyPair, SignalSignedKeyPair signedKeyPair, byte[] signedKeyIndex, Long signedKeyIndexTimestamp, List<SignalPreKeyPair> preKeys, String fdid, byte[] deviceId, UUID advertisingId, byte[] identityId, SignedDeviceIdentity companionIdentity, Map<SenderKeyName, SenderKeyRecord> senderKeys, List<CompanionSyncKey> appStateKeys, Map<SessionAddress, Session> sessions, List<CompanionPatch> hashStates, Map<Jid, SenderPreKeys> groupsPreKeys, boolean registered, boolean businessCertificate, boolean initialAppSync) {
+    public Keys(UUID uuid, PhoneNumber phoneNumber, ClientType clientType, Collection<String> alias, Integer registrationId, SignalKeyPair noiseKeyPair, SignalKeyPair ephemeralKeyPair, SignalKeyPair identityKeyPair, SignalKeyPair companionKeyPair, SignalSignedKeyPair signedKeyPair, byte[] signedKeyIndex, Long signedKeyIndexTimestamp, List<SignalPreKeyPair> preKeys, Integer lastPreKeyId, String fdid, byte[] deviceId, UUID advertisingId, byte[] identityId, SignedDeviceIdentity companionIdentity, Map<SenderKeyName, SenderKeyRecord> senderKeys, List<CompanionSyncKey> appStateKeys, Map<SessionAddress, Session> sessions, List<CompanionPatch> hashStates, Map<Jid, SenderPreKeys> groupsPreKeys, boolean registered, boolean businessCertificate, boolean initialAppSync) {
         super(uuid, phoneNumber, null, clientType, alias);
         this.registrationId = Objects.requireNonNullElseGet(registrationId, KeyHelper::registrationId);
         this.noiseKeyPair = Objects.requireNonNull(noiseKeyPair, "Missing noise keypair");
@@ -199,6 +198,9 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
         this.signedKeyIndex = signedKeyIndex;
         this.signedKeyIndexTimestamp = signedKeyIndexTimestamp;
         this.preKeys = Objects.requireNonNullElseGet(preKeys, ArrayList::new);
+        this.preKeysById = new ConcurrentHashMap<>();
+        this.preKeys.forEach(preKey -> preKeysById.put(preKey.id(), preKey));
+        this.lastPreKeyId = Objects.requireNonNullElseGet(lastPreKeyId, () -> this.preKeys.stream().mapToInt(SignalPreKeyPair::id).max().orElse(0));
         this.fdid = Objects.requireNonNullElseGet(fdid, KeyHelper::fdid);
         this.deviceId = Objects.requireNonNullElseGet(deviceId, KeyHelper::deviceId);
         this.advertisingId = Objects.requireNonNullElseGet(advertisingId, UUID::randomUUID);
@@ -208,12 +210,10 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
         this.appStateKeys = Objects.requireNonNullElseGet(appStateKeys, ArrayList::new);
         this.sessions = Objects.requireNonNullElseGet(sessions, ConcurrentHashMap::new);
         this.hashStates = Objects.requireNonNullElseGet(hashStates, ArrayList::new);
-        this.groupsPreKeys = Objects.requireNonNullElseGet(groupsPreKeys, ConcurrentHashMap::new);
+        this.groupsPreKeys = groupsPreKeys == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(groupsPreKeys);
         this.registered = registered;
         this.businessCertificate = businessCertificate;
         this.initialAppSync = initialAppSync;
-        this.writeCounter = new AtomicLong();
-        this.readCounter = new AtomicLong();
     }
 
     public static Keys newKeys(UUID uuid, Long phoneNumber, Collection<String> alias, ClientType clientType) {
@@ -242,9 +242,7 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * Clears the signal keys associated with this object
      */
     public void clearReadWriteKey() {
-        this.writeKey = null;
-        this.writeCounter.set(0);
-        this.readCounter.set(0);
+        this.transport = null;
     }
 
     /**
@@ -253,7 +251,7 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return true if the client sent pre keys to the server
      */
     public boolean hasPreKeys() {
-        return !preKeys.isEmpty();
+        return !preKeysById.isEmpty();
     }
 
     /**
@@ -263,11 +261,7 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return a non-null SenderKeyRecord
      */
     public SenderKeyRecord findSenderKeyByName(SenderKeyName name) {
-        return requireNonNullElseGet(senderKeys.get(name), () -> {
-            var record = new SenderKeyRecord();
-            senderKeys.put(name, record);
-            return record;
-        });
+        return senderKeys.computeIfAbsent(name, ignored -> new SenderKeyRecord());
     }
 
     /**
@@ -298,7 +292,7 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return a non-null pre key
      */
     public Optional<SignalPreKeyPair> findPreKeyById(Integer id) {
-        return id == null ? Optional.empty() : preKeys.stream().filter(preKey -> preKey.id() == id).findFirst();
+        return id == null ? Optional.empty() : Optional.ofNullable(preKeysById.get(id));
     }
 
     /**
@@ -309,12 +303,14 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return a non-null Optional app state dataSync key
      */
     public Optional<AppStateSyncKey> findAppKeyById(Jid jid, byte[] id) {
-        return appStateKeys.stream()
-                .filter(preKey -> Objects.equals(preKey.companion(), jid))
-                .map(CompanionSyncKey::keys)
-                .flatMap(Collection::stream)
-                .filter(preKey -> preKey.keyId() != null && Arrays.equals(preKey.keyId().keyId(), id))
-                .findFirst();
+        synchronized (appStateKeys) {
+            return appStateKeys.stream()
+                    .filter(preKey -> Objects.equals(preKey.companion(), jid))
+                    .map(CompanionSyncKey::keys)
+                    .flatMap(Collection::stream)
+                    .filter(preKey -> preKey.keyId() != null && Arrays.equals(preKey.keyId().keyId(), id))
+                    .findFirst();
+        }
     }
 
     /**
@@ -325,10 +321,12 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return a non-null hash state
      */
     public Optional<CompanionHashState> findHashStateByName(Jid device, PatchType patchType) {
-        return hashStates.stream()
-                .filter(hashState -> Objects.equals(hashState.companion(), device) && hashState.state().type() == patchType)
-                .findFirst()
-                .map(CompanionPatch::state);
+        synchronized (hashStates) {
+            return hashStates.stream()
+                    .filter(hashState -> Objects.equals(hashState.companion(), device) && hashState.state().type() == patchType)
+                    .findFirst()
+                    .map(CompanionPatch::state);
+        }
     }
 
     /**
@@ -373,7 +371,9 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      */
     public Keys putState(Jid device, CompanionHashState state) {
         var hashState = new CompanionPatch(device, state);
-        hashStates.add(hashState);
+        synchronized (hashStates) {
+            hashStates.add(hashState);
+        }
         return this;
     }
 
@@ -385,13 +385,15 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return this
      */
     public Keys addAppKeys(Jid jid, Collection<AppStateSyncKey> keys) {
-        appStateKeys.stream()
-                .filter(preKey -> Objects.equals(preKey.companion(), jid))
-                .findFirst()
-                .ifPresentOrElse(key -> key.keys().addAll(keys), () -> {
-                    var syncKey = new CompanionSyncKey(jid, new LinkedList<>(keys));
-                    appStateKeys.add(syncKey);
-                });
+        synchronized (appStateKeys) {
+            appStateKeys.stream()
+                    .filter(preKey -> Objects.equals(preKey.companion(), jid))
+                    .findFirst()
+                    .ifPresentOrElse(key -> key.keys().addAll(keys), () -> {
+                        var syncKey = new CompanionSyncKey(jid, new LinkedList<>(keys));
+                        appStateKeys.add(syncKey);
+                    });
+        }
         return this;
     }
 
@@ -401,15 +403,23 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return a non-null app key
      */
     public AppStateSyncKey getLatestAppKey(Jid jid) {
-        return getAppKeys(jid).getLast();
+        synchronized (appStateKeys) {
+            return findAppKeys(jid).getLast();
+        }
     }
 
     /**
      * Get any available app key
      *
-     * @return a non-null app key
+     * @return a non-null copy of the app keys
      */
     public LinkedList<AppStateSyncKey> getAppKeys(Jid jid) {
+        synchronized (appStateKeys) {
+            return new LinkedList<>(findAppKeys(jid));
+        }
+    }
+
+    private LinkedList<AppStateSyncKey> findAppKeys(Jid jid) {
         return appStateKeys.stream()
                 .filter(preKey -> Objects.equals(preKey.companion(), jid))
                 .findFirst()
@@ -424,37 +434,34 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return this
      */
     public Keys addPreKey(SignalPreKeyPair preKey) {
-        preKeys.add(preKey);
+        synchronized (preKeys) {
+            preKeys.add(preKey);
+            preKeysById.put(preKey.id(), preKey);
+            this.lastPreKeyId = Math.max(lastPreKeyId, preKey.id());
+        }
         return this;
     }
 
     /**
-     * Returns write counter
-     *
-     * @param increment whether the counter should be incremented after the call
-     * @return an unsigned long
-     */
-    public long writeCounter(boolean increment) {
-        return increment ? writeCounter.getAndIncrement() : writeCounter.get();
-    }
-
-    /**
-     * Returns read counter
+     * Removes the pre key that matches {@code id} as it was consumed by a new session
      *
-     * @param increment whether the counter should be incremented after the call
-     * @return an unsigned long
+     * @param id the id of the pre key to remove
+     * @return whether a pre key was removed
      */
-    public long readCounter(boolean increment) {
-        return increment ? readCounter.getAndIncrement() : readCounter.get();
+    public boolean removePreKey(int id) {
+        synchronized (preKeys) {
+            var preKey = preKeysById.remove(id);
+            return preKey != null && preKeys.remove(preKey);
+        }
     }
 
     /**
-     * Returns the id of the last available pre key
+     * Returns the id of the last pre key that was generated
      *
      * @return an integer
      */
     public int lastPreKeyId() {
-        return preKeys.isEmpty() ? 0 : preKeys.getLast().id();
+        return lastPreKeyId;
     }
 
     /**
@@ -485,31 +492,17 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
      * @return a non-null collection
      */
     public Collection<SignalPreKeyPair> preKeys() {
-        return Collections.unmodifiableList(preKeys);
+        return Collections.unmodifiableCollection(preKeysById.values());
     }
 
     public void addRecipientWithPreKeys(Jid group, Jid recipient) {
-        var preKeys = groupsPreKeys.get(group);
-        if (preKeys != null) {
-            preKeys.addPreKey(recipient);
-            return;
-        }
-
-        var newPreKeys = new SenderPreKeys();
-        newPreKeys.addPreKey(recipient);
-        groupsPreKeys.put(group, newPreKeys);
+        groupsPreKeys.computeIfAbsent(group, ignored -> new SenderPreKeys())
+                .addPreKey(recipient);
     }
 
     public void addRecipientsWithPreKeys(Jid group, Collection<Jid> recipients) {
-        var preKeys = groupsPreKeys.get(group);
-        if (preKeys != null) {
-            preKeys.addPreKeys(recipients);
-            return;
-        }
-
-        var newPreKeys = new SenderPreKeys();
-        newPreKeys.addPreKeys(recipients);
-        groupsPreKeys.put(group, newPreKeys);
+        groupsPreKeys.computeIfAbsent(group, ignored -> new SenderPreKeys())
+                .addPreKeys(recipients);
     }
 
     public boolean hasGroupKeys(Jid group, Jid recipient) {
@@ -517,6 +510,71 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
         return preKeys != null && preKeys.contains(recipient);
     }
 
+    /**
+     * Returns a detached copy of these keys that can be serialized while Signal operations keep running.
+     * Every session and sender key record is copied while holding its own lock, which is the same lock that the ciphers hold while mutating it,
+     * so each record is captured in a consistent state and no cipher waits for more than the copy of a single record.
+     *
+     * @return a non-null copy
+     */
+    public Keys snapshot() {
+        var senderKeys = new ConcurrentHashMap<SenderKeyName, SenderKeyRecord>();
+        this.senderKeys.forEach((name, record) -> senderKeys.put(name, record.copy()));
+        var sessions = new ConcurrentHashMap<SessionAddress, Session>();
+        this.sessions.forEach((address, session) -> sessions.put(address, session.copy()));
+        List<SignalPreKeyPair> preKeys;
+        int lastPreKeyId;
+        synchronized (this.preKeys) {
+            preKeys = new ArrayList<>(this.preKeys);
+            lastPreKeyId = this.lastPreKeyId;
+        }
+
+        List<CompanionSyncKey> appStateKeys;
+        synchronized (this.appStateKeys) {
+            appStateKeys = this.appStateKeys.stream()
+                    .map(syncKey -> new CompanionSyncKey(syncKey.companion(), new LinkedList<>(syncKey.keys())))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        List<CompanionPatch> hashStates;
+        synchronized (this.hashStates) {
+            hashStates = new ArrayList<>(this.hashStates);
+        }
+
+        var groupsPreKeys = new ConcurrentHashMap<Jid, SenderPreKeys>();
+        this.groupsPreKeys.forEach((group, senderPreKeys) -> groupsPreKeys.put(group, senderPreKeys.copy()));
+
+        return new Keys(
+                uuid,
+                phoneNumber().orElse(null),
+                clientType,
+                new ArrayList<>(alias),
+                registrationId,
+                noiseKeyPair,
+                ephemeralKeyPair,
+                identityKeyPair,
+                companionKeyPair,
+                signedKeyPair,
+                signedKeyIndex,
+                signedKeyIndexTimestamp,
+                preKeys,
+                lastPreKeyId,
+                fdid,
+                deviceId,
+                advertisingId,
+                identityId,
+                companionIdentity,
+                senderKeys,
+                appStateKeys,
+                sessions,
+                hashStates,
+                groupsPreKeys,
+                registered,
+                businessCertificate,
+                initialAppSync
+        );
+    }
+
     @Override
     public void dispose() {
         serialize(false);
@@ -607,20 +665,8 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
         return this.initialAppSync;
     }
 
-    public AtomicLong writeCounter() {
-        return this.writeCounter;
-    }
-
-    public AtomicLong readCounter() {
-        return this.readCounter;
-    }
-
-    public Optional<byte[]> writeKey() {
-        return Optional.ofNullable(this.writeKey);
-    }
-
-    public Optional<byte[]> readKey() {
-        return Optional.ofNullable(this.readKey);
+    public Optional<NoiseTransport> transport() {
+        return Optional.ofNullable(this.transport);
     }
 
     public Keys setCompanionKeyPair(SignalKeyPair companionKeyPair) {
@@ -658,13 +704,8 @@ public final class Keys extends Controller<Keys> implements ProtobufMessage {
         return this;
     }
 
-    public Keys setWriteKey(byte[] writeKey) {
-        this.writeKey = writeKey;
-        return this;
-    }
-
-    public Keys setReadKey(byte[] readKey) {
-        this.readKey = readKey;
+    public Keys setTransport(NoiseTransport transport) {
+        this.transport = transport;
         return this;
     }
 
@@ -0,0 +1,221 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.info.ChatMessageInfo;
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.model.message.standard.DocumentMessage;
+import it.auties.whatsapp.model.message.standard.ImageMessage;
+import it.auties.whatsapp.model.message.standard.TextMessage;
+import it.auties.whatsapp.model.message.standard.VideoOrGifMessage;
+import it.auties.whatsapp.model.sync.HistorySyncMessage;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * An inverted index from the words in the text and caption of messages to the messages that contain them.
+ * Words are normalized using NFKC and lowercased, and both the length of a word and the number of words indexed for a message are bounded.
+ */
+final class MessageIndex {
+    private static final int MAX_TOKEN_LENGTH = 32;
+    private static final int MAX_TOKENS_PER_MESSAGE = 256;
+    private static final Comparator<ChatMessageInfo> NEWEST_FIRST = Comparator.comparingLong((ChatMessageInfo info) -> info.timestampSeconds().orElse(0L))
+            .reversed()
+            .thenComparing(ChatMessageInfo::id);
+
+    private final ConcurrentHashMap<DocumentKey, Document> documents;
+    private final ConcurrentHashMap<String, Set<DocumentKey>> postings;
+
+    MessageIndex() {
+        this.documents = new ConcurrentHashMap<>();
+        this.postings = new ConcurrentHashMap<>();
+    }
+
+    void add(Chat chat) {
+        for (var message : chat.messages()) {
+            var info = message.messageInfo();
+            var document = documents.get(new DocumentKey(info.chatJid(), info.id()));
+            if (document == null || document.info() != info) {
+                add(info);
+            }
+        }
+    }
+
+    void add(ChatMessageInfo info) {
+        var tokens = tokenize(textOf(info));
+        documents.compute(new DocumentKey(info.chatJid(), info.id()), (key, oldDocument) -> {
+            if (oldDocument != null && oldDocument.tokens().equals(tokens)) {
+                return new Document(info, tokens);
+            }
+
+            if (oldDocument != null) {
+                unlink(key, oldDocument.tokens());
+            }
+
+            if (tokens.isEmpty()) {
+                return null;
+            }
+
+            link(key, tokens);
+            return new Document(info, tokens);
+        });
+    }
+
+    void remove(Chat chat) {
+        for (var message : chat.messages()) {
+            remove(chat.jid(), message.messageInfo().id());
+        }
+    }
+
+    void remove(Jid chatJid, String id) {
+        documents.computeIfPresent(new DocumentKey(chatJid, id), (key, document) -> {
+            unlink(key, document.tokens());
+            return null;
+        });
+    }
+
+    private void link(DocumentKey key, Set<String> tokens) {
+        for (var token : tokens) {
+            postings.compute(token, (ignored, keys) -> {
+                var result = Objects.requireNonNullElseGet(keys, ConcurrentHashMap::<DocumentKey>newKeySet);
+                result.add(key);
+                return result;
+            });
+        }
+    }
+
+    private void unlink(DocumentKey key, Set<String> tokens) {
+        for (var token : tokens) {
+            postings.computeIfPresent(token, (ignored, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    List<ChatMessageInfo> search(MessageQuery query) {
+        var tokens = tokenize(query.text());
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        // Start from the rarest word, so that the fewest candidates need to be checked
+        Set<DocumentKey> candidates = null;
+        for (var token : tokens) {
+            var keys = postings.get(token);
+            if (keys == null) {
+                return List.of();
+            }
+
+            if (candidates == null || keys.size() < candidates.size()) {
+                candidates = keys;
+            }
+        }
+
+        var results = candidates.stream()
+                .filter(key -> query.chatJid() == null || key.chatJid().equals(query.chatJid()))
+                .map(documents::get)
+                .filter(document -> document != null && document.tokens().containsAll(tokens))
+                .map(Document::info);
+        return page(results, query);
+    }
+
+    /**
+     * Runs a query by scanning every message, used when no index is available
+     *
+     * @param chats the chats to scan
+     * @param query the query to run
+     * @return a non-null list
+     */
+    static List<ChatMessageInfo> scan(Collection<Chat> chats, MessageQuery query) {
+        var tokens = tokenize(query.text());
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        var results = chats.stream()
+                .filter(chat -> query.chatJid() == null || chat.jid().equals(query.chatJid()))
+                .flatMap(chat -> chat.messages().stream())
+                .map(HistorySyncMessage::messageInfo)
+                .filter(info -> tokenize(textOf(info)).containsAll(tokens));
+        return page(results, query);
+    }
+
+    private static List<ChatMessageInfo> page(Stream<ChatMessageInfo> results, MessageQuery query) {
+        var senderJid = query.senderJid() == null ? null : query.senderJid().withoutDevice();
+        return results.filter(info -> senderJid == null || info.senderJid().withoutDevice().equals(senderJid))
+                .filter(info -> isInTimeRange(info, query))
+                .sorted(NEWEST_FIRST)
+                .skip(query.offset())
+                .limit(query.limit())
+                .toList();
+    }
+
+    private static boolean isInTimeRange(ChatMessageInfo info, MessageQuery query) {
+        var timestamp = info.timestampSeconds().orElse(0L);
+        return timestamp >= query.fromSeconds() && timestamp <= query.toSeconds();
+    }
+
+    private static String textOf(ChatMessageInfo info) {
+        return switch (info.message().unbox().content()) {
+            case TextMessage textMessage -> textMessage.text();
+            case ImageMessage imageMessage -> imageMessage.caption().orElse(null);
+            case VideoOrGifMessage videoMessage -> videoMessage.caption().orElse(null);
+            case DocumentMessage documentMessage -> documentMessage.caption().orElse(null);
+            default -> null;
+        };
+    }
+
+    static Set<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Set.of();
+        }
+
+        var normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        var result = new HashSet<String>();
+        var start = -1;
+        var index = 0;
+        while (index < normalized.length() && result.size() < MAX_TOKENS_PER_MESSAGE) {
+            var codePoint = normalized.codePointAt(index);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start == -1) {
+                    start = index;
+                }
+            } else if (start != -1) {
+                result.add(token(normalized, start, index));
+                start = -1;
+            }
+
+            index += Character.charCount(codePoint);
+        }
+
+        if (start != -1 && result.size() < MAX_TOKENS_PER_MESSAGE) {
+            result.add(token(normalized, start, normalized.length()));
+        }
+
+        return Set.copyOf(result);
+    }
+
+    private static String token(String text, int start, int end) {
+        if (end - start <= MAX_TOKEN_LENGTH) {
+            return text.substring(start, end);
+        }
+
+        var cut = start + MAX_TOKEN_LENGTH;
+        if (Character.isHighSurrogate(text.charAt(cut - 1))) {
+            cut--;
+        }
+
+        return text.substring(start, cut);
+    }
+
+    private record DocumentKey(Jid chatJid, String id) {
+
+    }
+
+    private record Document(ChatMessageInfo info, Set<String> tokens) {
+
+    }
+}
@@ -0,0 +1,91 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.util.Validate;
+
+import java.util.Objects;
+
+/**
+ * A full-text query over the messages saved in a {@link Store}.
+ * Every word of the text must appear in the text or caption of a message for it to match, ignoring case.
+ * Results are sorted from newest to oldest.
+ *
+ * @param text        the non-null text to search
+ * @param chatJid     the jid of the chat the messages must belong to, or null to search every chat
+ * @param senderJid   the jid of the sender of the messages, or null to search every sender
+ * @param fromSeconds the minimum timestamp of the messages in seconds, inclusive
+ * @param toSeconds   the maximum timestamp of the messages in seconds, inclusive
+ * @param offset      the number of results to skip
+ * @param limit       the maximum number of results to return
+ */
+public record MessageQuery(String text, Jid chatJid, Jid senderJid, long fromSeconds, long toSeconds, int offset, int limit) {
+    private static final int DEFAULT_LIMIT = 50;
+
+    public MessageQuery {
+        Objects.requireNonNull(text, "Missing text");
+        Validate.isTrue(fromSeconds <= toSeconds, "Invalid time range: %s-%s", fromSeconds, toSeconds);
+        Validate.isTrue(offset >= 0, "Offset cannot be negative: %s", offset);
+        Validate.isTrue(limit >= 0, "Limit cannot be negative: %s", limit);
+    }
+
+    /**
+     * Constructs a query that searches every chat and returns the first page of results
+     *
+     * @param text the non-null text to search
+     * @return a non-null query
+     */
+    public static MessageQuery of(String text) {
+        return new MessageQuery(text, null, null, 0, Long.MAX_VALUE, 0, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Returns a copy of this query that only matches messages in a chat
+     *
+     * @param chatJid the jid of the chat, or null to search every chat
+     * @return a non-null query
+     */
+    public MessageQuery withChat(Jid chatJid) {
+        return new MessageQuery(text, chatJid, senderJid, fromSeconds, toSeconds, offset, limit);
+    }
+
+    /**
+     * Returns a copy of this query that only matches messages sent by a contact
+     *
+     * @param senderJid the jid of the sender, or null to search every sender
+     * @return a non-null query
+     */
+    public MessageQuery withSender(Jid senderJid) {
+        return new MessageQuery(text, chatJid, senderJid, fromSeconds, toSeconds, offset, limit);
+    }
+
+    /**
+     * Returns a copy of this query that only matches messages sent in a time range
+     *
+     * @param fromSeconds the minimum timestamp in seconds, inclusive
+     * @param toSeconds   the maximum timestamp in seconds, inclusive
+     * @return a non-null query
+     */
+    public MessageQuery withTimeRange(long fromSeconds, long toSeconds) {
+        return new MessageQuery(text, chatJid, senderJid, fromSeconds, toSeconds, offset, limit);
+    }
+
+    /**
+     * Returns a copy of this query that returns a different page of results
+     *
+     * @param offset the number of results to skip
+     * @param limit  the maximum number of results to return
+     * @return a non-null query
+     */
+    public MessageQuery withPage(int offset, int limit) {
+        return new MessageQuery(text, chatJid, senderJid, fromSeconds, toSeconds, offset, limit);
+    }
+
+    /**
+     * Returns a copy of this query that returns the page of results after this one
+     *
+     * @return a non-null query
+     */
+    public MessageQuery nextPage() {
+        return withPage(offset + limit, limit);
+    }
+}
@@ -140,11 +140,11 @@ class ProtobufControllerSerializer implements ControllerSerializer {
 
         var outputFile = getSessionFile(keys.clientType(), keys.uuid().toString(), KEYS_NAME);
         if (async) {
-            return CompletableFuture.runAsync(() -> writeFile(KeysSpec.encode(keys), KEYS_NAME, outputFile))
+            return CompletableFuture.runAsync(() -> writeFile(KeysSpec.encode(keys.snapshot()), KEYS_NAME, outputFile))
                     .exceptionallyAsync(this::onError);
         }
 
-        writeFile(KeysSpec.encode(keys), KEYS_NAME, outputFile);
+        writeFile(KeysSpec.encode(keys.snapshot()), KEYS_NAME, outputFile);
         return CompletableFuture.completedFuture(null);
     }
 
@@ -182,7 +182,8 @@ class ProtobufControllerSerializer implements ControllerSerializer {
     }
 
     private CompletableFuture<?>[] serializeChatsAsync(Store store) {
-        return store.chats()
+        return store.chats
+                .values()
                 .stream()
                 .map(chat -> serializeChatAsync(store, chat))
                 .toArray(CompletableFuture[]::new);
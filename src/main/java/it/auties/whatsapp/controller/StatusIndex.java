@@ -0,0 +1,109 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.model.info.ChatMessageInfo;
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.util.Clock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An index of status messages by id and by sender, bucketed by the hour they were sent in.
+ * Statuses expire after {@link #TIME_TO_LIVE}: expired buckets are dropped as a whole, so a status can outlive its expiration by at most one bucket.
+ */
+final class StatusIndex {
+    static final Duration TIME_TO_LIVE = Duration.ofHours(24);
+    private static final long BUCKET_SECONDS = Duration.ofHours(1).toSeconds();
+
+    private final ConcurrentHashMap<String, Entry> ids;
+    private final ConcurrentHashMap<Jid, Set<ChatMessageInfo>> senders;
+    private final ConcurrentSkipListMap<Long, Set<ChatMessageInfo>> buckets;
+
+    StatusIndex() {
+        this.ids = new ConcurrentHashMap<>();
+        this.senders = new ConcurrentHashMap<>();
+        this.buckets = new ConcurrentSkipListMap<>();
+    }
+
+    void add(ChatMessageInfo info) {
+        var bucket = info.timestampSeconds().orElseGet(Clock::nowSeconds) / BUCKET_SECONDS;
+        ids.compute(info.id(), (id, oldEntry) -> {
+            if (oldEntry != null) {
+                unlink(oldEntry);
+            }
+
+            var entry = new Entry(info, info.senderJid().withoutDevice(), bucket);
+            senders.compute(entry.senderJid(), (jid, values) -> {
+                var result = Objects.requireNonNullElseGet(values, ConcurrentHashMap::<ChatMessageInfo>newKeySet);
+                result.add(info);
+                return result;
+            });
+            buckets.computeIfAbsent(bucket, ignored -> ConcurrentHashMap.newKeySet())
+                    .add(info);
+            return entry;
+        });
+    }
+
+    private void unlink(Entry entry) {
+        unlinkSender(entry);
+        var bucket = buckets.get(entry.bucket());
+        if (bucket != null) {
+            bucket.remove(entry.info());
+        }
+    }
+
+    private void unlinkSender(Entry entry) {
+        senders.computeIfPresent(entry.senderJid(), (jid, values) -> {
+            values.remove(entry.info());
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    Optional<ChatMessageInfo> findById(String id) {
+        return Optional.ofNullable(ids.get(id))
+                .map(Entry::info);
+    }
+
+    List<ChatMessageInfo> findBySender(Jid senderJid) {
+        var result = senders.get(senderJid.withoutDevice());
+        return result == null ? List.of() : List.copyOf(result);
+    }
+
+    /**
+     * Removes the buckets that only contain expired statuses
+     *
+     * @param nowSeconds the current time in seconds
+     * @return the statuses that were removed
+     */
+    List<ChatMessageInfo> removeExpired(long nowSeconds) {
+        var cutoff = (nowSeconds - TIME_TO_LIVE.toSeconds()) / BUCKET_SECONDS;
+        var expired = buckets.headMap(cutoff);
+        var results = new ArrayList<ChatMessageInfo>();
+        for (var bucket : expired.keySet()) {
+            var values = expired.remove(bucket);
+            if (values == null) {
+                continue;
+            }
+
+            for (var info : values) {
+                var entry = ids.get(info.id());
+                if (entry != null && entry.info() == info && ids.remove(info.id(), entry)) {
+                    unlinkSender(entry);
+                    results.add(info);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private record Entry(ChatMessageInfo info, Jid senderJid, long bucket) {
+
+    }
+}
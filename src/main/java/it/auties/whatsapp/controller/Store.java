@@ -14,9 +14,12 @@ import it.auties.whatsapp.model.business.BusinessCategory;
 import it.auties.whatsapp.model.call.Call;
 import it.auties.whatsapp.model.chat.Chat;
 import it.auties.whatsapp.model.chat.ChatBuilder;
+import it.auties.whatsapp.model.chat.ChatCursor;
 import it.auties.whatsapp.model.chat.ChatEphemeralTimer;
+import it.auties.whatsapp.model.chat.ChatIndex;
 import it.auties.whatsapp.model.companion.CompanionDevice;
 import it.auties.whatsapp.model.contact.Contact;
+import it.auties.whatsapp.model.contact.ContactIndex;
 import it.auties.whatsapp.model.info.ChatMessageInfo;
 import it.auties.whatsapp.model.info.ContextInfo;
 import it.auties.whatsapp.model.info.MessageStatusInfo;
@@ -58,6 +61,8 @@ import java.util.stream.Stream;
  */
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public final class Store extends Controller<Store> implements ProtobufMessage {
+    private static final Duration DEFAULT_TEXT_PREVIEW_TIMEOUT = Duration.ofSeconds(5);
+
     /**
      * The version used by this session
      */
@@ -191,18 +196,42 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
     @JsonIgnore
     final ConcurrentHashMap<Jid, Chat> chats;
 
+    /**
+     * The non-null index of chats sorted from newest to oldest
+     */
+    @JsonIgnore
+    private final ChatIndex chatIndex;
+
+    /**
+     * The full-text index of the messages saved in the chats, or null if message search isn't indexed
+     */
+    @JsonIgnore
+    private volatile MessageIndex messageIndex;
+
     /**
      * The non-null map of contacts
      */
     @ProtobufProperty(index = 24, type = ProtobufType.MAP, keyType = ProtobufType.STRING, valueType = ProtobufType.OBJECT)
     final ConcurrentHashMap<Jid, Contact> contacts;
 
+    /**
+     * The non-null index of contacts by name
+     */
+    @JsonIgnore
+    private final ContactIndex contactIndex;
+
     /**
      * The non-null list of status messages
      */
     @ProtobufProperty(index = 25, type = ProtobufType.OBJECT)
     final KeySetView<ChatMessageInfo, Boolean> status;
 
+    /**
+     * The non-null index of status messages by id, sender and time
+     */
+    @JsonIgnore
+    private final StatusIndex statusIndex;
+
     /**
      * The non-null map of newsletters
      */
@@ -288,6 +317,12 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
     @ProtobufProperty(index = 32, type = ProtobufType.OBJECT)
     TextPreviewSetting textPreviewSetting;
 
+    /**
+     * How long to wait for the preview of a text message before sending it without one
+     */
+    @JsonIgnore
+    Duration textPreviewTimeout;
+
     /**
      * Describes how much chat history Whatsapp should send
      */
@@ -364,8 +399,13 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         this.lid = lid;
         this.properties = Objects.requireNonNullElseGet(properties, ConcurrentHashMap::new);
         this.chats = new ConcurrentHashMap<>();
+        this.chatIndex = new ChatIndex();
         this.contacts = Objects.requireNonNullElseGet(contacts, ConcurrentHashMap::new);
+        this.contactIndex = new ContactIndex();
+        this.contacts.values().forEach(contactIndex::add);
         this.status = Objects.requireNonNullElseGet(status, ConcurrentHashMap::newKeySet);
+        this.statusIndex = new StatusIndex();
+        this.status.forEach(statusIndex::add);
         this.newsletters = new ConcurrentHashMap<>();
         this.privacySettings = Objects.requireNonNullElseGet(privacySettings, ConcurrentHashMap::new);
         this.calls = Objects.requireNonNullElseGet(calls, ConcurrentHashMap::new);
@@ -379,6 +419,7 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         this.mediaConnectionLatch = new CountDownLatch(1);
         this.newChatsEphemeralTimer = Objects.requireNonNullElse(newChatsEphemeralTimer, ChatEphemeralTimer.OFF);
         this.textPreviewSetting = Objects.requireNonNullElse(textPreviewSetting, TextPreviewSetting.ENABLED_WITH_INFERENCE);
+        this.textPreviewTimeout = DEFAULT_TEXT_PREVIEW_TIMEOUT;
         this.historyLength = Objects.requireNonNullElseGet(historyLength, WebHistoryLength::standard);
         this.autodetectListeners = Objects.requireNonNullElse(autodetectListeners, true);
         this.cacheDetectedListeners = Objects.requireNonNullElse(cacheDetectedListeners, true);
@@ -429,10 +470,20 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
     }
 
     private Stream<Contact> findContactsStream(String name) {
-        return name == null ? Stream.empty() : contacts().parallelStream()
+        return name == null ? Stream.empty() : contactIndex.findByName(name)
                 .filter(contact -> contact.fullName().filter(name::equals).isPresent() || contact.chosenName().filter(name::equals).isPresent() || contact.shortName().filter(name::equals).isPresent());
     }
 
+    /**
+     * Queries every contact whose full, chosen or short name starts with {@code prefix}, ignoring case
+     *
+     * @param prefix the prefix to search
+     * @return a non-null immutable list sorted by name
+     */
+    public List<Contact> findContactsByNamePrefix(String prefix) {
+        return contactIndex.findByNamePrefix(prefix).toList();
+    }
+
     /**
      * Returns all the contacts
      *
@@ -485,9 +536,8 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
             case Jid contactJid -> switch (contactJid.type()) {
                 case NEWSLETTER -> findNewsletterByJid(contactJid)
                         .flatMap(newsletter -> findMessageById(newsletter, id));
-                case STATUS -> status.stream()
-                        .filter(entry -> Objects.equals(entry.chatJid(), provider.toJid()) && Objects.equals(entry.id(), id))
-                        .findFirst();
+                case STATUS -> statusIndex.findById(id)
+                        .filter(entry -> Objects.equals(entry.chatJid(), provider.toJid()));
                 default -> findChatByJid(contactJid)
                         .flatMap(chat -> findMessageById(chat, id));
             };
@@ -582,11 +632,20 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
 
 
     private Stream<Chat> findChatsByNameStream(String name) {
-        return name == null ? Stream.empty() : chats.values()
-                .parallelStream()
+        return name == null ? Stream.empty() : chatIndex.findByName(name)
                 .filter(chat -> chat.name().equalsIgnoreCase(name));
     }
 
+    /**
+     * Queries every chat whose name starts with {@code prefix}, ignoring case
+     *
+     * @param prefix the prefix to search
+     * @return a non-null immutable list sorted by name
+     */
+    public List<Chat> findChatsByNamePrefix(String prefix) {
+        return chatIndex.findByNamePrefix(prefix).toList();
+    }
+
     private Stream<Newsletter> findNewslettersByNameStream(String name) {
         return name == null ? Stream.empty() : newsletters.values()
                 .parallelStream()
@@ -678,9 +737,7 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      * @return a non-null immutable list
      */
     public Collection<ChatMessageInfo> findStatusBySender(JidProvider jid) {
-        return status.stream()
-                .filter(entry -> Objects.equals(entry.chatJid(), jid))
-                .toList();
+        return jid == null ? List.of() : statusIndex.findBySender(jid.toJid());
     }
 
     /**
@@ -782,13 +839,22 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
             contact.setFullName(chat.name());
         }
         var oldChat = chats.get(chat.jid());
-        if (oldChat != null) {
-            if (oldChat.hasName() && !chat.hasName()) {
-                chat.setName(oldChat.name()); // Coming from contact actions
-            }
-            joinMessages(chat, oldChat);
+        if (oldChat == null) {
+            return addChatDirect(chat);
+        }
+
+        if (oldChat.hasName() && !chat.hasName()) {
+            chat.setName(oldChat.name()); // Coming from contact actions
         }
-        return addChatDirect(chat);
+        // Only the incoming messages need to be indexed, the ones joined from the old chat already are
+        var messageIndex = this.messageIndex;
+        if (messageIndex != null) {
+            messageIndex.add(chat);
+        }
+        joinMessages(chat, oldChat);
+        var result = chats.put(chat.jid(), chat);
+        chatIndex.add(chat);
+        return Optional.ofNullable(result);
     }
 
     private void joinMessages(Chat chat, Chat oldChat) {
@@ -812,7 +878,14 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      * @return the old chat, if present
      */
     public Optional<Chat> addChatDirect(Chat chat) {
-        return Optional.ofNullable(chats.put(chat.jid(), chat));
+        var oldChat = chats.put(chat.jid(), chat);
+        chatIndex.add(chat);
+        var messageIndex = this.messageIndex;
+        if (messageIndex != null) {
+            messageIndex.add(chat);
+        }
+
+        return Optional.ofNullable(oldChat);
     }
 
     /**
@@ -833,6 +906,7 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      */
     public Contact addContact(Contact contact) {
         contacts.put(contact.jid(), contact);
+        contactIndex.add(contact);
         return contact;
     }
 
@@ -853,7 +927,15 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      * @return the chat that was deleted wrapped by an optional
      */
     public Optional<Chat> removeChat(JidProvider chatJid) {
-        return Optional.ofNullable(chats.remove(chatJid.toJid()));
+        var jid = chatJid.toJid();
+        var oldChat = chats.remove(jid);
+        chatIndex.remove(jid);
+        var messageIndex = this.messageIndex;
+        if (oldChat != null && messageIndex != null) {
+            messageIndex.remove(oldChat);
+        }
+
+        return Optional.ofNullable(oldChat);
     }
 
     /**
@@ -873,7 +955,10 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      * @return the contact that was deleted wrapped by an optional
      */
     public Optional<Contact> removeContact(JidProvider contactJid) {
-        return Optional.ofNullable(contacts.remove(contactJid.toJid()));
+        var jid = contactJid.toJid();
+        var oldContact = contacts.remove(jid);
+        contactIndex.remove(jid);
+        return Optional.ofNullable(oldContact);
     }
 
     /**
@@ -882,11 +967,7 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      * @return a non-null list of chats
      */
     public List<Chat> pinnedChats() {
-        return chats.values()
-                .parallelStream()
-                .filter(Chat::isPinned)
-                .sorted(Comparator.comparingLong(Chat::pinnedTimestampSeconds).reversed())
-                .toList();
+        return chatIndex.pinnedChats();
     }
 
     /**
@@ -898,16 +979,115 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         return chats().parallelStream().map(Chat::starredMessages).flatMap(Collection::stream).toList();
     }
 
+    /**
+     * Searches the text and caption of the messages saved in the chats.
+     * If message search isn't indexed, every message is scanned.
+     *
+     * @param query the non-null query
+     * @return a non-null list of messages sorted from newest to oldest
+     */
+    public List<ChatMessageInfo> searchMessages(MessageQuery query) {
+        Objects.requireNonNull(query, "Missing query");
+        var messageIndex = this.messageIndex;
+        return messageIndex != null ? messageIndex.search(query) : MessageIndex.scan(chats.values(), query);
+    }
+
+    /**
+     * Adds a message to the full-text index, if message search is indexed.
+     * This is done automatically for messages that are received and for the chats that are added to this store.
+     *
+     * @param info the non-null message to index
+     */
+    public void indexMessage(ChatMessageInfo info) {
+        var messageIndex = this.messageIndex;
+        if (messageIndex != null) {
+            messageIndex.add(info);
+        }
+    }
+
+    /**
+     * Removes a message from the full-text index, if message search is indexed
+     *
+     * @param chatJid the non-null jid of the chat that contains the message
+     * @param id      the non-null id of the message
+     */
+    public void removeIndexedMessage(Jid chatJid, String id) {
+        var messageIndex = this.messageIndex;
+        if (messageIndex != null) {
+            messageIndex.remove(chatJid, id);
+        }
+    }
+
+    /**
+     * Removes every message of a chat from the full-text index, if message search is indexed
+     *
+     * @param chat the non-null chat whose messages should be removed
+     */
+    public void removeIndexedMessages(Chat chat) {
+        var messageIndex = this.messageIndex;
+        if (messageIndex != null) {
+            messageIndex.remove(chat);
+        }
+    }
+
     /**
      * Returns all the chats sorted from newest to oldest
      *
      * @return an immutable collection
      */
     public List<Chat> chats() {
-        return chats.values()
-                .stream()
-                .sorted(Comparator.comparingLong(Chat::timestampSeconds).reversed())
-                .toList();
+        return chatIndex.chats();
+    }
+
+    /**
+     * Returns a page of chats sorted from newest to oldest
+     *
+     * @param after the cursor of the last chat of the previous page, or null to start from the newest chat
+     * @param limit the maximum number of chats to return
+     * @return an immutable collection
+     */
+    public List<Chat> chats(ChatCursor after, int limit) {
+        return chatIndex.chats(after, limit);
+    }
+
+    /**
+     * Returns the archived chats sorted from newest to oldest
+     *
+     * @return an immutable collection
+     */
+    public List<Chat> archivedChats() {
+        return archivedChats(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a page of archived chats sorted from newest to oldest
+     *
+     * @param after the cursor of the last chat of the previous page, or null to start from the newest chat
+     * @param limit the maximum number of chats to return
+     * @return an immutable collection
+     */
+    public List<Chat> archivedChats(ChatCursor after, int limit) {
+        return chatIndex.chats(after, limit, Chat::archived);
+    }
+
+    /**
+     * Returns the chats that have unread messages or that were marked as unread sorted from newest to oldest
+     *
+     * @return an immutable collection
+     */
+    public List<Chat> unreadChats() {
+        return unreadChats(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a page of the chats that have unread messages or that were marked as unread sorted from newest to oldest
+     *
+     * @param after the cursor of the last chat of the previous page, or null to start from the newest chat
+     * @param limit the maximum number of chats to return
+     * @return an immutable collection
+     */
+    public List<Chat> unreadChats(ChatCursor after, int limit) {
+        return chatIndex.chats(after, limit, chat -> chat.hasUnreadMessages() || chat.markedAsUnread());
     }
 
     /**
@@ -979,9 +1159,21 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
      */
     public Store addStatus(ChatMessageInfo info) {
         status.add(info);
+        statusIndex.add(info);
         return this;
     }
 
+    /**
+     * Removes the status that were sent more than 24 hours ago
+     *
+     * @return a non-null list of the status that were removed
+     */
+    public List<ChatMessageInfo> removeExpiredStatus() {
+        var expired = statusIndex.removeExpired(Clock.nowSeconds());
+        expired.forEach(status::remove);
+        return expired;
+    }
+
     /**
      * Adds a request to this store
      *
@@ -1314,6 +1506,10 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         return this.unarchiveChats;
     }
 
+    public boolean indexMessages() {
+        return this.messageIndex != null;
+    }
+
     public boolean twentyFourHourFormat() {
         return this.twentyFourHourFormat;
     }
@@ -1330,6 +1526,10 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         return this.textPreviewSetting;
     }
 
+    public Duration textPreviewTimeout() {
+        return this.textPreviewTimeout;
+    }
+
     public WebHistoryLength historyLength() {
         return this.historyLength;
     }
@@ -1447,6 +1647,28 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         return this;
     }
 
+    /**
+     * Sets whether the messages saved in the chats should be kept in a full-text index for {@link #searchMessages(MessageQuery)}.
+     * When enabled, the messages that are already saved are indexed.
+     *
+     * @param indexMessages whether messages should be indexed
+     * @return the same instance
+     */
+    public synchronized Store setIndexMessages(boolean indexMessages) {
+        if (!indexMessages) {
+            this.messageIndex = null;
+            return this;
+        }
+
+        if (messageIndex == null) {
+            var messageIndex = new MessageIndex();
+            this.messageIndex = messageIndex;
+            chats.values().forEach(messageIndex::add);
+        }
+
+        return this;
+    }
+
     public Store setTwentyFourHourFormat(boolean twentyFourHourFormat) {
         this.twentyFourHourFormat = twentyFourHourFormat;
         return this;
@@ -1462,6 +1684,11 @@ public final class Store extends Controller<Store> implements ProtobufMessage {
         return this;
     }
 
+    public Store setTextPreviewTimeout(Duration textPreviewTimeout) {
+        this.textPreviewTimeout = Objects.requireNonNull(textPreviewTimeout, "Missing text preview timeout");
+        return this;
+    }
+
     public Store setHistoryLength(WebHistoryLength historyLength) {
         this.historyLength = historyLength;
         return this;
@@ -9,12 +9,14 @@ import it.auties.whatsapp.util.KeyHelper;
 public record GroupBuilder(Keys keys) {
     public byte[] createOutgoing(SenderKeyName name) {
         var record = keys.findSenderKeyByName(name);
-        if (record.isEmpty()) {
-            record.addState(KeyHelper.senderKeyId(), SignalKeyPair.random(), 0, KeyHelper.senderKey());
+        synchronized (record) {
+            if (record.isEmpty()) {
+                record.addState(KeyHelper.senderKeyId(), SignalKeyPair.random(), 0, KeyHelper.senderKey());
+            }
+            var state = record.firstState();
+            var message = new SignalDistributionMessage(state.id(), state.chainKey().iteration(), state.chainKey().seed(), state.signingKey().encodedPublicKey());
+            return message.serialized();
         }
-        var state = record.firstState();
-        var message = new SignalDistributionMessage(state.id(), state.chainKey().iteration(), state.chainKey().seed(), state.signingKey().encodedPublicKey());
-        return message.serialized();
     }
 
     public void createIncoming(SenderKeyName name, SignalDistributionMessage message) {
@@ -15,24 +15,29 @@ public record GroupCipher(SenderKeyName name, Keys keys) {
             return new CipheredMessageResult(null, Signal.UNAVAILABLE);
         }
 
-        var currentState = keys.findSenderKeyByName(name).firstState();
-        var messageKey = currentState.chainKey().toMessageKey();
-        var ciphertext = AesCbc.encrypt(messageKey.iv(), data, messageKey.cipherKey());
-        var senderKeyMessage = new SenderKeyMessage(currentState.id(), messageKey.iteration(), ciphertext, currentState.signingKey().privateKey());
-        var next = currentState.chainKey().next();
-        currentState.setChainKey(next);
-        return new CipheredMessageResult(senderKeyMessage.serialized(), Signal.SKMSG);
+        var record = keys.findSenderKeyByName(name);
+        synchronized (record) {
+            var currentState = record.firstState();
+            var messageKey = currentState.chainKey().toMessageKey();
+            var ciphertext = AesCbc.encrypt(messageKey.iv(), data, messageKey.cipherKey());
+            var senderKeyMessage = new SenderKeyMessage(currentState.id(), messageKey.iteration(), ciphertext, currentState.signingKey().privateKey());
+            var next = currentState.chainKey().next();
+            currentState.setChainKey(next);
+            return new CipheredMessageResult(senderKeyMessage.serialized(), Signal.SKMSG);
+        }
     }
 
     public byte[] decrypt(byte[] data) {
         var record = keys.findSenderKeyByName(name);
         var senderKeyMessage = SenderKeyMessage.ofSerialized(data);
-        var senderKeyStates = record.findStatesById(senderKeyMessage.id());
-        for (var senderKeyState : senderKeyStates) {
-            try {
-                var senderKey = getSenderKey(senderKeyState, senderKeyMessage.iteration());
-                return AesCbc.decrypt(senderKey.iv(), senderKeyMessage.cipherText(), senderKey.cipherKey());
-            } catch (Throwable ignored) {
+        synchronized (record) {
+            var senderKeyStates = record.findStatesById(senderKeyMessage.id());
+            for (var senderKeyState : senderKeyStates) {
+                try {
+                    var senderKey = getSenderKey(senderKeyState, senderKeyMessage.iteration());
+                    return AesCbc.decrypt(senderKey.iv(), senderKeyMessage.cipherText(), senderKey.cipherKey());
+                } catch (Throwable ignored) {
+                }
             }
         }
         throw new RuntimeException("Cannot decode message with any session");
@@ -56,10 +56,18 @@ public final class Hkdf {
     }
 
     public static byte[] extractAndExpand(byte[] key, byte[] salt, byte[] info, int outputLength) {
-        return expand(Hmac.calculateSha256(key, salt), info, outputLength);
+        return expand(extract(key, salt), info, outputLength);
     }
 
-    private static byte[] expand(byte[] prk, byte[] info, int outputSize) {
+    public static byte[] extract(byte[] key) {
+        return extract(key, DEFAULT_SALT);
+    }
+
+    public static byte[] extract(byte[] key, byte[] salt) {
+        return Hmac.calculateSha256(key, salt);
+    }
+
+    public static byte[] expand(byte[] prk, byte[] info, int outputSize) {
         try {
             var iterations = (int) Math.ceil((double) outputSize / (double) HASH_OUTPUT_SIZE);
             var mixin = new byte[0];
@@ -0,0 +1,23 @@
+package it.auties.whatsapp.crypto;
+
+/**
+ * A sealed interface that represents an incremental cipher for media bodies
+ */
+public sealed interface MediaCipher permits MediaDecipher, MediaEncipher {
+    /**
+     * Feeds a chunk of the body
+     *
+     * @param input  the input buffer
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @return the output that could be produced from this chunk, possibly empty
+     */
+    byte[] update(byte[] input, int offset, int length);
+
+    /**
+     * Completes the operation
+     *
+     * @return the remaining output
+     */
+    byte[] finish();
+}
@@ -0,0 +1,139 @@
+package it.auties.whatsapp.crypto;
+
+import it.auties.whatsapp.exception.HmacValidationException;
+import it.auties.whatsapp.model.media.MediaKeys;
+import it.auties.whatsapp.util.Validate;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * An incremental decipher for encrypted media bodies.
+ * The body is consumed chunk by chunk: the sha256 and the hmac are updated as data arrives and the ciphertext is decrypted on the fly.
+ * The trailing mac is held back and verified when {@link MediaDecipher#finish()} is called.
+ */
+public final class MediaDecipher implements MediaCipher {
+    public static final int MAC_LENGTH = 10;
+
+    private static final String AES_CBC = "AES/CBC/PKCS5Padding";
+    private static final String AES = "AES";
+    private static final String HMAC_SHA_256 = "HmacSHA256";
+    private static final String SHA_256 = "SHA-256";
+
+    private final MessageDigest digest;
+    private final Mac mac;
+    private final Cipher cipher;
+    private final byte[] expectedSha256;
+    private final byte[] tail;
+    private int tailLength;
+
+    /**
+     * Constructs a new decipher
+     *
+     * @param keys           the keys of the media, null if the body isn't encrypted
+     * @param expectedSha256 the expected sha256 of the encrypted body, null if it shouldn't be checked
+     */
+    public MediaDecipher(MediaKeys keys, byte[] expectedSha256) {
+        try {
+            this.digest = MessageDigest.getInstance(SHA_256);
+            this.expectedSha256 = expectedSha256;
+            this.tail = new byte[MAC_LENGTH];
+            if (keys == null) {
+                this.mac = null;
+                this.cipher = null;
+                return;
+            }
+
+            this.mac = Mac.getInstance(HMAC_SHA_256);
+            mac.init(new SecretKeySpec(keys.macKey(), HMAC_SHA_256));
+            mac.update(keys.iv());
+            this.cipher = Cipher.getInstance(AES_CBC);
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(keys.cipherKey(), AES), new IvParameterSpec(keys.iv()));
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalArgumentException("Cannot initialize media decipher", exception);
+        }
+    }
+
+    /**
+     * Feeds a chunk of the encrypted body
+     *
+     * @param input  the input buffer
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @return the plaintext that could be produced from this chunk, possibly empty
+     */
+    @Override
+    public byte[] update(byte[] input, int offset, int length) {
+        digest.update(input, offset, length);
+        var available = tailLength + length;
+        var released = available - MAC_LENGTH;
+        if (released <= 0) {
+            System.arraycopy(input, offset, tail, tailLength, length);
+            tailLength = available;
+            return new byte[0];
+        }
+
+        var fromTail = Math.min(tailLength, released);
+        var fromInput = released - fromTail;
+        var result = new byte[0];
+        if (fromTail > 0) {
+            result = process(tail, 0, fromTail);
+        }
+        if (fromInput > 0) {
+            var processed = process(input, offset, fromInput);
+            result = result.length == 0 ? processed : concat(result, processed);
+        }
+
+        var remainingTail = tailLength - fromTail;
+        System.arraycopy(tail, fromTail, tail, 0, remainingTail);
+        System.arraycopy(input, offset + fromInput, tail, remainingTail, length - fromInput);
+        tailLength = remainingTail + length - fromInput;
+        return result;
+    }
+
+    private byte[] process(byte[] input, int offset, int length) {
+        if (cipher == null) {
+            return Arrays.copyOfRange(input, offset, offset + length);
+        }
+
+        mac.update(input, offset, length);
+        var result = cipher.update(input, offset, length);
+        return result == null ? new byte[0] : result;
+    }
+
+    private byte[] concat(byte[] first, byte[] second) {
+        var result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * Verifies the sha256 and the mac of the body and returns the last plaintext block
+     *
+     * @return the remaining plaintext
+     * @throws SecurityException       if the sha256 of the body doesn't match
+     * @throws HmacValidationException if the mac of the body doesn't match
+     */
+    @Override
+    public byte[] finish() {
+        Validate.isTrue(tailLength == MAC_LENGTH, "Cannot decode media: truncated body", SecurityException.class);
+        Validate.isTrue(expectedSha256 == null || MessageDigest.isEqual(expectedSha256, digest.digest()),
+                "Cannot decode media: Invalid sha256 signature", SecurityException.class);
+        if (cipher == null) {
+            return new byte[0];
+        }
+
+        var expectedMac = Arrays.copyOf(mac.doFinal(), MAC_LENGTH);
+        Validate.isTrue(MessageDigest.isEqual(expectedMac, tail), "media_decryption", HmacValidationException.class);
+        try {
+            return cipher.doFinal();
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalArgumentException("Cannot decrypt data", exception);
+        }
+    }
+}
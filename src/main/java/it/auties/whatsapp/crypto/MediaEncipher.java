@@ -0,0 +1,152 @@
+package it.auties.whatsapp.crypto;
+
+import it.auties.whatsapp.model.media.MediaKeys;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * An incremental encipher for media bodies.
+ * The plaintext is consumed chunk by chunk: it's encrypted on the fly while the plaintext sha256, the hmac and the encrypted sha256 are updated.
+ * The mac is appended to the ciphertext when {@link MediaEncipher#finish()} is called.
+ */
+public final class MediaEncipher implements MediaCipher {
+    private static final String AES_CBC = "AES/CBC/PKCS5Padding";
+    private static final String AES = "AES";
+    private static final String HMAC_SHA_256 = "HmacSHA256";
+    private static final String SHA_256 = "SHA-256";
+    private static final int AES_BLOCK_SIZE = 16;
+
+    private final MessageDigest plainDigest;
+    private final MessageDigest encryptedDigest;
+    private final Mac mac;
+    private final Cipher cipher;
+    private long fileLength;
+    private byte[] fileSha256;
+    private byte[] fileEncSha256;
+
+    /**
+     * Constructs a new encipher
+     *
+     * @param keys the keys of the media, null if the body shouldn't be encrypted
+     */
+    public MediaEncipher(MediaKeys keys) {
+        try {
+            this.plainDigest = MessageDigest.getInstance(SHA_256);
+            if (keys == null) {
+                this.encryptedDigest = null;
+                this.mac = null;
+                this.cipher = null;
+                return;
+            }
+
+            this.encryptedDigest = MessageDigest.getInstance(SHA_256);
+            this.mac = Mac.getInstance(HMAC_SHA_256);
+            mac.init(new SecretKeySpec(keys.macKey(), HMAC_SHA_256));
+            mac.update(keys.iv());
+            this.cipher = Cipher.getInstance(AES_CBC);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keys.cipherKey(), AES), new IvParameterSpec(keys.iv()));
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalArgumentException("Cannot initialize media encipher", exception);
+        }
+    }
+
+    /**
+     * Returns the length of the body produced by this encipher for a plaintext of the provided length
+     *
+     * @param plainLength the length of the plaintext
+     * @param encrypted   whether the body is encrypted
+     * @return the length of the body
+     */
+    public static long outputLength(long plainLength, boolean encrypted) {
+        if (!encrypted) {
+            return plainLength;
+        }
+
+        return (plainLength / AES_BLOCK_SIZE + 1) * AES_BLOCK_SIZE + MediaDecipher.MAC_LENGTH;
+    }
+
+    /**
+     * Feeds a chunk of the plaintext
+     *
+     * @param input  the input buffer
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @return the ciphertext that could be produced from this chunk, possibly empty
+     */
+    @Override
+    public byte[] update(byte[] input, int offset, int length) {
+        plainDigest.update(input, offset, length);
+        fileLength += length;
+        if (cipher == null) {
+            return Arrays.copyOfRange(input, offset, offset + length);
+        }
+
+        var result = cipher.update(input, offset, length);
+        if (result == null) {
+            return new byte[0];
+        }
+
+        mac.update(result);
+        encryptedDigest.update(result);
+        return result;
+    }
+
+    /**
+     * Encrypts the last block and appends the mac
+     *
+     * @return the remaining ciphertext followed by the mac
+     */
+    @Override
+    public byte[] finish() {
+        this.fileSha256 = plainDigest.digest();
+        if (cipher == null) {
+            return new byte[0];
+        }
+
+        try {
+            var last = cipher.doFinal();
+            mac.update(last);
+            var hmac = Arrays.copyOf(mac.doFinal(), MediaDecipher.MAC_LENGTH);
+            var result = Arrays.copyOf(last, last.length + hmac.length);
+            System.arraycopy(hmac, 0, result, last.length, hmac.length);
+            encryptedDigest.update(result);
+            this.fileEncSha256 = encryptedDigest.digest();
+            return result;
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalArgumentException("Cannot encrypt data", exception);
+        }
+    }
+
+    /**
+     * Returns the sha256 of the plaintext, available after {@link MediaEncipher#finish()} is called
+     *
+     * @return a nullable array of bytes
+     */
+    public byte[] fileSha256() {
+        return fileSha256;
+    }
+
+    /**
+     * Returns the sha256 of the encrypted body, available after {@link MediaEncipher#finish()} is called
+     *
+     * @return a nullable array of bytes, null if the body isn't encrypted
+     */
+    public byte[] fileEncSha256() {
+        return fileEncSha256;
+    }
+
+    /**
+     * Returns the number of plaintext bytes that were consumed
+     *
+     * @return a long
+     */
+    public long fileLength() {
+        return fileLength;
+    }
+}
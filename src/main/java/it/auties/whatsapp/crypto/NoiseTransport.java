@@ -0,0 +1,111 @@
+package it.auties.whatsapp.crypto;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The transport cipher of a Noise session, created once the handshake is complete.
+ * Each direction keeps its own AES-GCM cipher, whose key schedule is computed only once, its own counter and a reusable nonce buffer.
+ * Frames are encrypted directly into the array that will be sent, and decrypted into a buffer that is reused for the following frames.
+ */
+public final class NoiseTransport {
+    private static final int TAG_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    private final Direction write;
+    private final Direction read;
+    private byte[] readBuffer;
+
+    /**
+     * Constructs a new transport
+     *
+     * @param writeKey the non-null key used to encrypt outgoing frames
+     * @param readKey  the non-null key used to decrypt incoming frames
+     */
+    public NoiseTransport(byte[] writeKey, byte[] readKey) {
+        this.write = new Direction(writeKey, true);
+        this.read = new Direction(readKey, false);
+        this.readBuffer = new byte[MIN_BUFFER_SIZE];
+    }
+
+    /**
+     * Returns the length of an encrypted frame
+     *
+     * @param plaintextLength the length of the plaintext
+     * @return an int
+     */
+    public int encryptedLength(int plaintextLength) {
+        return plaintextLength + TAG_LENGTH;
+    }
+
+    /**
+     * Encrypts the next outgoing frame
+     *
+     * @param plaintext    the non-null plaintext
+     * @param output       the non-null array to write the ciphertext to
+     * @param outputOffset the offset of the ciphertext in the output, which must have room for {@link #encryptedLength(int)} bytes
+     * @return the number of bytes written
+     */
+    public int encrypt(byte[] plaintext, byte[] output, int outputOffset) {
+        return write.process(plaintext, 0, plaintext.length, output, outputOffset);
+    }
+
+    /**
+     * Decrypts the next incoming frame.
+     * The result is backed by a buffer that is overwritten by the next call, so it must be consumed before then.
+     *
+     * @param ciphertext the non-null ciphertext
+     * @return a non-null buffer whose remaining bytes are the plaintext
+     */
+    public synchronized ByteBuffer decrypt(byte[] ciphertext) {
+        var plaintextLength = Math.max(ciphertext.length - TAG_LENGTH, 0);
+        if (readBuffer.length < plaintextLength) {
+            this.readBuffer = new byte[Math.max(plaintextLength, readBuffer.length * 2)];
+        }
+
+        var length = read.process(ciphertext, 0, ciphertext.length, readBuffer, 0);
+        return ByteBuffer.wrap(readBuffer, 0, length);
+    }
+
+    private static final class Direction {
+        private final GCMBlockCipher cipher;
+        private final KeyParameter key;
+        private final byte[] nonce;
+        private final boolean encrypt;
+        private boolean initialized;
+        private long counter;
+
+        private Direction(byte[] key, boolean encrypt) {
+            this.cipher = new GCMBlockCipher(new AESEngine());
+            this.key = new KeyParameter(key);
+            this.nonce = new byte[NONCE_LENGTH];
+            this.encrypt = encrypt;
+        }
+
+        private synchronized int process(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset) {
+            try {
+                writeNonce(counter++);
+                // The key is only passed the first time: later calls reuse the key schedule and the hash subkey of the cipher
+                cipher.init(encrypt, new AEADParameters(initialized ? null : key, TAG_LENGTH * 8, nonce, null));
+                this.initialized = true;
+                var written = cipher.processBytes(input, inputOffset, inputLength, output, outputOffset);
+                return written + cipher.doFinal(output, outputOffset + written);
+            } catch (InvalidCipherTextException exception) {
+                throw new RuntimeException("Cannot %s data".formatted(encrypt ? "encrypt" : "decrypt"), exception);
+            }
+        }
+
+        private void writeNonce(long counter) {
+            for (var index = NONCE_LENGTH - 1; index >= 4; index--) {
+                nonce[index] = (byte) counter;
+                counter >>>= 8;
+            }
+        }
+    }
+}
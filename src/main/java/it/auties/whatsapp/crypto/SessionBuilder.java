@@ -38,10 +38,12 @@ public record SessionBuilder(SessionAddress address, Keys keys) {
                 signedPreKey.id()
         );
         state.pendingPreKey(pendingPreKey);
-        keys.findSessionByAddress(address)
-                .map(Session::closeCurrentState)
-                .orElseGet(this::createSession)
-                .addState(state);
+        var session = keys.findSessionByAddress(address)
+                .orElseGet(this::createSession);
+        synchronized (session) {
+            session.closeCurrentState()
+                    .addState(state);
+        }
     }
 
     public SessionState createState(boolean isInitiator, SignalKeyPair ourEphemeralKey, SignalKeyPair ourSignedKey, byte[] theirIdentityPubKey, byte[] theirEphemeralPubKey, byte[] theirSignedPubKey, int registrationId, int version) {
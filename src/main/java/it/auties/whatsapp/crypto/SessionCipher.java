@@ -29,20 +29,23 @@ public record SessionCipher(SessionAddress address, Keys keys) {
         if (data == null) {
             return new CipheredMessageResult(null, Signal.UNAVAILABLE);
         }
-        var currentState = loadSession().currentState()
-                .orElseThrow(() -> new NoSuchElementException("Missing session for address %s".formatted(address)));
-        Validate.isTrue(keys.hasTrust(address, currentState.remoteIdentityKey()), "Untrusted key", SecurityException.class);
-        var chain = currentState.findChain(currentState.ephemeralKeyPair().encodedPublicKey())
-                .orElseThrow(() -> new NoSuchElementException("Missing chain for %s".formatted(address)));
-        fillMessageKeys(chain, chain.counter().get() + 1);
-        var currentKey = chain.messageKeys().get(chain.counter().get());
-        var secrets = Hkdf.deriveSecrets(currentKey, "WhisperMessageKeys".getBytes(StandardCharsets.UTF_8));
-        chain.messageKeys().remove(chain.counter().get());
-        var iv = Arrays.copyOf(secrets[2], IV_LENGTH);
-        var encrypted = AesCbc.encrypt(iv, data, secrets[0]);
-        var encryptedMessageType = getMessageType(currentState);
-        var encryptedMessage = encrypt(currentState, chain, secrets[1], encrypted);
-        return new CipheredMessageResult(encryptedMessage, encryptedMessageType);
+        var session = loadSession();
+        synchronized (session) {
+            var currentState = session.currentState()
+                    .orElseThrow(() -> new NoSuchElementException("Missing session for address %s".formatted(address)));
+            Validate.isTrue(keys.hasTrust(address, currentState.remoteIdentityKey()), "Untrusted key", SecurityException.class);
+            var chain = currentState.findChain(currentState.ephemeralKeyPair().encodedPublicKey())
+                    .orElseThrow(() -> new NoSuchElementException("Missing chain for %s".formatted(address)));
+            fillMessageKeys(chain, chain.counter().get() + 1);
+            var currentKey = chain.messageKeys().get(chain.counter().get());
+            var secrets = Hkdf.deriveSecrets(currentKey, "WhisperMessageKeys".getBytes(StandardCharsets.UTF_8));
+            chain.messageKeys().remove(chain.counter().get());
+            var iv = Arrays.copyOf(secrets[2], IV_LENGTH);
+            var encrypted = AesCbc.encrypt(iv, data, secrets[0]);
+            var encryptedMessageType = getMessageType(currentState);
+            var encryptedMessage = encrypt(currentState, chain, secrets[1], encrypted);
+            return new CipheredMessageResult(encryptedMessage, encryptedMessageType);
+        }
     }
 
     private String getMessageType(SessionState currentState) {
@@ -99,11 +102,20 @@ public record SessionCipher(SessionAddress address, Keys keys) {
 
     public byte[] decrypt(SignalPreKeyMessage message) {
         var session = loadSession(this::createSession);
-        var builder = new SessionBuilder(address, keys);
-        builder.createIncoming(session, message);
-        var state = session.findState(message.version(), message.baseKey())
-                .orElseThrow(() -> new NoSuchElementException("Missing state"));
-        return decrypt(message.signalMessage(), state);
+        byte[] result;
+        synchronized (session) {
+            var builder = new SessionBuilder(address, keys);
+            builder.createIncoming(session, message);
+            var state = session.findState(message.version(), message.baseKey())
+                    .orElseThrow(() -> new NoSuchElementException("Missing state"));
+            result = decrypt(message.signalMessage(), state);
+        }
+
+        if (message.preKeyId() != null) {
+            keys.removePreKey(message.preKeyId());
+        }
+
+        return result;
     }
 
     private Optional<Session> createSession() {
@@ -113,12 +125,15 @@ public record SessionCipher(SessionAddress address, Keys keys) {
     }
 
     public byte[] decrypt(SignalMessage message) {
-        return loadSession().states()
-                .stream()
-                .map(state -> tryDecrypt(message, state))
-                .flatMap(Optional::stream)
-                .findFirst()
-                .orElseThrow(() -> new NoSuchElementException("Cannot decrypt message: no suitable session found"));
+        var session = loadSession();
+        synchronized (session) {
+            return session.states()
+                    .stream()
+                    .map(state -> tryDecrypt(message, state))
+                    .flatMap(Optional::stream)
+                    .findFirst()
+                    .orElseThrow(() -> new NoSuchElementException("Cannot decrypt message: no suitable session found"));
+        }
     }
 
     private Optional<byte[]> tryDecrypt(SignalMessage message, SessionState state) {
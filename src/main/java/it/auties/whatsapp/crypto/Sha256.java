@@ -1,6 +1,8 @@
 package it.auties.whatsapp.crypto;
 
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -21,4 +23,18 @@ public final class Sha256 {
             throw new UnsupportedOperationException("Missing sha256 implementation");
         }
     }
+
+    public static byte[] calculate(InputStream data) throws IOException {
+        try {
+            var digest = MessageDigest.getInstance(SHA_256);
+            var buffer = new byte[8192];
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException exception) {
+            throw new UnsupportedOperationException("Missing sha256 implementation");
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package it.auties.whatsapp.listener;
+
+import java.util.List;
+
+/**
+ * A registry of the classes annotated with {@link RegisterListener} that were found at compile time.
+ * Implementations are generated by {@link RegisterListenerProcessor} and discovered using a {@link java.util.ServiceLoader}.
+ */
+public interface ListenerRegistry {
+    /**
+     * Returns the listener classes known to this registry
+     *
+     * @return a non-null list
+     */
+    List<Class<?>> listeners();
+}
@@ -0,0 +1,179 @@
+package it.auties.whatsapp.listener;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An annotation processor that generates a {@link ListenerRegistry} for the classes annotated with {@link RegisterListener},
+ * so that listeners don't have to be found by scanning the classpath at runtime.
+ * A registry is generated for every round that finds new listeners, and the service file that lists them is written once all rounds are over.
+ * To enable it, add Cobalt to the annotation processor path of the compiler.
+ */
+@SupportedAnnotationTypes("it.auties.whatsapp.listener.RegisterListener")
+public final class RegisterListenerProcessor extends AbstractProcessor {
+    private static final String REGISTRY_NAME = "CobaltListenerRegistry";
+    private static final String SERVICE_FILE = "META-INF/services/" + ListenerRegistry.class.getName();
+
+    private final List<String> registries = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        var listeners = new ArrayList<TypeElement>();
+        for (var element : roundEnv.getElementsAnnotatedWith(RegisterListener.class)) {
+            if (isValidListener(element)) {
+                listeners.add((TypeElement) element);
+            }
+        }
+
+        writeRegistry(listeners);
+        return false;
+    }
+
+    private boolean isValidListener(Element element) {
+        if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.RECORD) {
+            return error(element, "Cannot register %s: only classes and records can be registered");
+        }
+
+        if (element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return error(element, "Cannot register %s: abstract classes cannot be registered");
+        }
+
+        var listenerType = processingEnv.getElementUtils()
+                .getTypeElement(Listener.class.getName())
+                .asType();
+        if (!processingEnv.getTypeUtils().isAssignable(element.asType(), listenerType)) {
+            return error(element, "Cannot register %s: cannot register classes that don't implement Listener");
+        }
+
+        if (!hasApplicableConstructor((TypeElement) element)) {
+            return error(element, "Cannot register %s: no applicable constructor was found. Create a public no args constructor or a Whatsapp constructor");
+        }
+
+        return true;
+    }
+
+    private boolean hasApplicableConstructor(TypeElement element) {
+        var whatsappType = processingEnv.getElementUtils()
+                .getTypeElement("it.auties.whatsapp.api.Whatsapp")
+                .asType();
+        return element.getEnclosedElements()
+                .stream()
+                .filter(entry -> entry.getKind() == ElementKind.CONSTRUCTOR)
+                .filter(entry -> entry.getModifiers().contains(Modifier.PUBLIC))
+                .map(entry -> ((ExecutableElement) entry).getParameters())
+                .anyMatch(parameters -> parameters.isEmpty() || (parameters.size() == 1 && isSameType(parameters.getFirst().asType(), whatsappType)));
+    }
+
+    private boolean isSameType(TypeMirror first, TypeMirror second) {
+        return processingEnv.getTypeUtils().isSameType(first, second);
+    }
+
+    private boolean error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message.formatted(element), element);
+        return false;
+    }
+
+    private void writeRegistry(List<TypeElement> listeners) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        var packageName = processingEnv.getElementUtils()
+                .getPackageOf(listeners.getFirst())
+                .getQualifiedName()
+                .toString();
+        var simpleName = registries.isEmpty() ? REGISTRY_NAME : REGISTRY_NAME + registries.size();
+        var registryName = packageName.isEmpty() ? simpleName : "%s.%s".formatted(packageName, simpleName);
+        try {
+            var source = processingEnv.getFiler().createSourceFile(registryName, listeners.toArray(Element[]::new));
+            try (var writer = source.openWriter()) {
+                writer.write(generateRegistry(packageName, simpleName, listeners));
+            }
+
+            registries.add(registryName);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot generate listener registry", exception);
+        }
+    }
+
+    private void writeServiceFile() {
+        if (registries.isEmpty()) {
+            return;
+        }
+
+        try {
+            var service = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (var writer = service.openWriter()) {
+                for (var registry : registries) {
+                    writer.write(registry);
+                    writer.write(System.lineSeparator());
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot generate listener registry service file", exception);
+        }
+    }
+
+    private String generateRegistry(String packageName, String simpleName, List<TypeElement> listeners) {
+        var elements = processingEnv.getElementUtils();
+        var classes = listeners.stream()
+                .map(listener -> isAccessible(listener) ? "%s.class".formatted(listener.getQualifiedName()) : "forName(\"%s\")".formatted(elements.getBinaryName(listener)))
+                .collect(Collectors.joining(",\n                "));
+        var packageDeclaration = packageName.isEmpty() ? "" : "package %s;%n%n".formatted(packageName);
+        return """
+                %s// Generated by %s, do not edit
+                public final class %s implements it.auties.whatsapp.listener.ListenerRegistry {
+                    @Override
+                    public java.util.List<Class<?>> listeners() {
+                        return java.util.List.of(
+                                %s
+                        );
+                    }
+
+                    private static Class<?> forName(String name) {
+                        try {
+                            return Class.forName(name);
+                        } catch (ClassNotFoundException exception) {
+                            throw new IllegalStateException("Cannot load listener " + name, exception);
+                        }
+                    }
+                }
+                """.formatted(packageDeclaration, RegisterListenerProcessor.class.getName(), simpleName, classes);
+    }
+
+    // Class literals can only be used if the listener and the classes that enclose it are public
+    private boolean isAccessible(TypeElement element) {
+        Element current = element;
+        while (current instanceof TypeElement) {
+            if (!current.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+
+            current = current.getEnclosingElement();
+        }
+
+        return true;
+    }
+}
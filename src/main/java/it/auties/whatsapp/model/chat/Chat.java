@@ -159,6 +159,8 @@ public final class Chat implements ProtobufMessage, JidProvider {
 
     private boolean update;
 
+    transient ChatIndex index;
+
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public Chat(Jid jid, ConcurrentLinkedHashedDequeue<HistorySyncMessage> historySyncMessages, Jid newJid, Jid oldJid, int unreadMessagesCount, boolean readOnly, boolean endOfHistoryTransfer, ChatEphemeralTimer ephemeralMessageDuration, long ephemeralMessagesToggleTimeSeconds, EndOfHistoryTransferType endOfHistoryTransferType, long timestampSeconds, String name, boolean notSpam, boolean archived, ChatDisappear disappearInitiator, boolean markedAsUnread, List<GroupParticipant> participants, byte[] token, long tokenTimestampSeconds, byte[] identityKey, int pinnedTimestampSeconds, ChatMute mute, ChatWallpaper wallpaper, MediaVisibility mediaVisibility, long tokenSenderTimestampSeconds, boolean suspended, boolean terminated, long foundationTimestampSeconds, Jid founder, String description, boolean support, boolean parentGroup, boolean defaultSubGroup, Jid parentGroupJid, String displayName, Jid phoneJid, boolean shareOwnPhoneNumber, boolean pnhDuplicateLidThread, Jid lidJid, ConcurrentHashMap<Jid, ContactStatus> presences, Set<Jid> participantsPreKeys, Set<GroupPastParticipant> pastParticipants) {
         this.jid = jid;
@@ -549,6 +551,14 @@ public final class Chat implements ProtobufMessage, JidProvider {
 
         this.timestampSeconds = newTimestamp;
         this.update = true;
+        updateIndex();
+    }
+
+    private void updateIndex() {
+        var index = this.index;
+        if (index != null) {
+            index.update(this);
+        }
     }
 
     /**
@@ -945,12 +955,14 @@ public final class Chat implements ProtobufMessage, JidProvider {
     public Chat setTimestampSeconds(long timestampSeconds) {
         this.timestampSeconds = timestampSeconds;
         this.update = true;
+        updateIndex();
         return this;
     }
 
     public Chat setName(String name) {
         this.name = name;
         this.update = true;
+        updateIndex();
         return this;
     }
 
@@ -999,6 +1011,7 @@ public final class Chat implements ProtobufMessage, JidProvider {
     public Chat setPinnedTimestampSeconds(int pinnedTimestampSeconds) {
         this.pinnedTimestampSeconds = pinnedTimestampSeconds;
         this.update = true;
+        updateIndex();
         return this;
     }
 
@@ -1077,6 +1090,7 @@ public final class Chat implements ProtobufMessage, JidProvider {
     public Chat setDisplayName(String displayName) {
         this.displayName = displayName;
         this.update = true;
+        updateIndex();
         return this;
     }
 
@@ -0,0 +1,28 @@
+package it.auties.whatsapp.model.chat;
+
+import it.auties.whatsapp.model.jid.Jid;
+
+import java.util.Objects;
+
+/**
+ * A model class that represents a position in the list of chats sorted from newest to oldest.
+ * Pass the cursor of the last chat of a page to get the next one.
+ *
+ * @param timestampSeconds the timestamp of the chat, in seconds
+ * @param jid              the non-null jid of the chat
+ */
+public record ChatCursor(long timestampSeconds, Jid jid) {
+    public ChatCursor {
+        Objects.requireNonNull(jid, "Missing jid");
+    }
+
+    /**
+     * Constructs a cursor that points to a chat
+     *
+     * @param chat the non-null chat
+     * @return a non-null cursor
+     */
+    public static ChatCursor of(Chat chat) {
+        return new ChatCursor(chat.timestampSeconds(), chat.jid());
+    }
+}
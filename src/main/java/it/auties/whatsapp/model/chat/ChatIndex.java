@@ -0,0 +1,215 @@
+package it.auties.whatsapp.model.chat;
+
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.util.NameIndex;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A concurrent index of chats sorted from newest to oldest and by name.
+ * Chats that belong to the index notify it when their timestamp, pinned timestamp or name changes, so the order is maintained incrementally instead of sorting every chat on each query.
+ */
+public final class ChatIndex {
+    private static final Comparator<Jid> JID_ORDER = Comparator.comparing(Jid::user, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Jid::server)
+            .thenComparing(Jid::device, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Jid::agent, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private static final Comparator<Entry> TIMESTAMP_ORDER = Comparator.comparingLong(Entry::timestampSeconds)
+            .reversed()
+            .thenComparing(Entry::jid, JID_ORDER);
+    private static final Comparator<Entry> PINNED_ORDER = Comparator.comparingInt(Entry::pinnedTimestampSeconds)
+            .reversed()
+            .thenComparing(Entry::jid, JID_ORDER);
+
+    private final ConcurrentHashMap<Jid, Entry> entries;
+    private final ConcurrentSkipListSet<Entry> sorted;
+    private final ConcurrentSkipListSet<Entry> pinned;
+    private final NameIndex<Chat> names;
+
+    public ChatIndex() {
+        this.entries = new ConcurrentHashMap<>();
+        this.sorted = new ConcurrentSkipListSet<>(TIMESTAMP_ORDER);
+        this.pinned = new ConcurrentSkipListSet<>(PINNED_ORDER);
+        this.names = new NameIndex<>();
+    }
+
+    /**
+     * Adds a chat to the index, replacing the chat with the same jid if present
+     *
+     * @param chat the non-null chat to add
+     */
+    public void add(Chat chat) {
+        Objects.requireNonNull(chat, "Missing chat");
+        entries.compute(chat.jid(), (jid, oldEntry) -> {
+            if (oldEntry != null) {
+                unlink(oldEntry);
+            }
+
+            chat.index = this;
+            return link(new Entry(chat));
+        });
+    }
+
+    /**
+     * Removes a chat from the index
+     *
+     * @param jid the non-null jid of the chat to remove
+     */
+    public void remove(Jid jid) {
+        Objects.requireNonNull(jid, "Missing jid");
+        entries.computeIfPresent(jid, (key, entry) -> {
+            unlink(entry);
+            return null;
+        });
+    }
+
+    /**
+     * Removes every chat from the index
+     */
+    public void clear() {
+        entries.keySet().forEach(this::remove);
+    }
+
+    // Only the chat that is currently indexed can move its entry, so a chat that was replaced can't add itself back
+    void update(Chat chat) {
+        entries.computeIfPresent(chat.jid(), (jid, entry) -> {
+            if (entry.chat() != chat) {
+                return entry;
+            }
+
+            var newEntry = new Entry(chat);
+            if (newEntry.hasSameKeys(entry)) {
+                return entry;
+            }
+
+            sorted.remove(entry);
+            pinned.remove(entry);
+            names.remove(entry.nameKey(), chat);
+            return link(newEntry);
+        });
+    }
+
+    private Entry link(Entry entry) {
+        sorted.add(entry);
+        if (entry.pinnedTimestampSeconds() != 0) {
+            pinned.add(entry);
+        }
+
+        names.add(entry.nameKey(), entry.chat());
+        return entry;
+    }
+
+    private void unlink(Entry entry) {
+        sorted.remove(entry);
+        pinned.remove(entry);
+        names.remove(entry.nameKey(), entry.chat());
+        if (entry.chat().index == this) {
+            entry.chat().index = null;
+        }
+    }
+
+    /**
+     * Returns the number of chats in the index
+     *
+     * @return an int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns all the chats sorted from newest to oldest
+     *
+     * @return a non-null immutable list
+     */
+    public List<Chat> chats() {
+        return stream(sorted).toList();
+    }
+
+    /**
+     * Returns a page of chats sorted from newest to oldest
+     *
+     * @param after the cursor of the last chat of the previous page, or null to start from the newest chat
+     * @param limit the maximum number of chats to return
+     * @return a non-null immutable list
+     */
+    public List<Chat> chats(ChatCursor after, int limit) {
+        return chats(after, limit, null);
+    }
+
+    /**
+     * Returns a page of the chats that match a filter sorted from newest to oldest
+     *
+     * @param after  the cursor of the last chat of the previous page, or null to start from the newest chat
+     * @param limit  the maximum number of chats to return
+     * @param filter the filter to apply, or null to include every chat
+     * @return a non-null immutable list
+     */
+    public List<Chat> chats(ChatCursor after, int limit, Predicate<Chat> filter) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+
+        var page = after == null ? sorted : sorted.tailSet(new Entry(after.jid(), after.timestampSeconds(), 0, null, null), false);
+        var result = stream(page);
+        if (filter != null) {
+            result = result.filter(filter);
+        }
+
+        return result.limit(limit).toList();
+    }
+
+    /**
+     * Returns the chats pinned to the top sorted new to old
+     *
+     * @return a non-null immutable list
+     */
+    public List<Chat> pinnedChats() {
+        return stream(pinned).toList();
+    }
+
+    /**
+     * Returns the chats whose name matches a name once normalized
+     *
+     * @param name the name to search
+     * @return a non-null stream
+     */
+    public Stream<Chat> findByName(String name) {
+        return names.find(name);
+    }
+
+    /**
+     * Returns the chats whose name starts with a prefix once normalized
+     *
+     * @param prefix the prefix to search
+     * @return a non-null stream
+     */
+    public Stream<Chat> findByNamePrefix(String prefix) {
+        return names.findByPrefix(prefix);
+    }
+
+    private Stream<Chat> stream(Collection<Entry> entries) {
+        return entries.stream()
+                .map(Entry::chat);
+    }
+
+    // The timestamps and the name are copied so that an entry can always be found and removed even if the chat changed in the meantime
+    private record Entry(Jid jid, long timestampSeconds, int pinnedTimestampSeconds, String nameKey, Chat chat) {
+        private Entry(Chat chat) {
+            this(chat.jid(), chat.timestampSeconds(), chat.pinnedTimestampSeconds(), NameIndex.normalize(chat.name()), chat);
+        }
+
+        private boolean hasSameKeys(Entry other) {
+            return timestampSeconds == other.timestampSeconds()
+                    && pinnedTimestampSeconds == other.pinnedTimestampSeconds()
+                    && Objects.equals(nameKey, other.nameKey());
+        }
+    }
+}
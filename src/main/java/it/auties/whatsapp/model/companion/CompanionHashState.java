@@ -51,8 +51,7 @@ public final class CompanionHashState implements ProtobufMessage {
         var attributes = Attributes.of()
                 .put("name", type)
                 .put("version", version)
-                .put("return_snapshot", version == 0)
-                .toMap();
+                .put("return_snapshot", version == 0);
         return of("collection", attributes);
     }
 
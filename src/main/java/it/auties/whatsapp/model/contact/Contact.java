@@ -71,6 +71,8 @@ public final class Contact implements JidProvider, ProtobufMessage {
     @ProtobufProperty(index = 7, type = ProtobufType.BOOL)
     private boolean blocked;
 
+    transient ContactIndex index;
+
     public Contact(Jid jid) {
         this.jid = jid;
         this.lastKnownPresence = ContactStatus.UNAVAILABLE;
@@ -137,19 +139,29 @@ public final class Contact implements JidProvider, ProtobufMessage {
 
     public Contact setChosenName(String chosenName) {
         this.chosenName = chosenName;
+        updateIndex();
         return this;
     }
 
     public Contact setFullName(String fullName) {
         this.fullName = fullName;
+        updateIndex();
         return this;
     }
 
     public Contact setShortName(String shortName) {
         this.shortName = shortName;
+        updateIndex();
         return this;
     }
 
+    private void updateIndex() {
+        var index = this.index;
+        if (index != null) {
+            index.update(this);
+        }
+    }
+
     public Contact setLastKnownPresence(ContactStatus lastKnownPresence) {
         this.lastKnownPresence = lastKnownPresence;
         return this;
@@ -0,0 +1,118 @@
+package it.auties.whatsapp.model.contact;
+
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.util.NameIndex;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A concurrent index of contacts by their full, chosen and short names.
+ * Contacts that belong to the index notify it when one of their names changes, so lookups by name don't have to scan every contact.
+ */
+public final class ContactIndex {
+    private final ConcurrentHashMap<Jid, Entry> entries;
+    private final NameIndex<Contact> names;
+
+    public ContactIndex() {
+        this.entries = new ConcurrentHashMap<>();
+        this.names = new NameIndex<>();
+    }
+
+    /**
+     * Adds a contact to the index, replacing the contact with the same jid if present
+     *
+     * @param contact the non-null contact to add
+     */
+    public void add(Contact contact) {
+        Objects.requireNonNull(contact, "Missing contact");
+        entries.compute(contact.jid(), (jid, oldEntry) -> {
+            if (oldEntry != null) {
+                unlink(oldEntry);
+            }
+
+            contact.index = this;
+            return link(new Entry(contact));
+        });
+    }
+
+    /**
+     * Removes a contact from the index
+     *
+     * @param jid the non-null jid of the contact to remove
+     */
+    public void remove(Jid jid) {
+        Objects.requireNonNull(jid, "Missing jid");
+        entries.computeIfPresent(jid, (key, entry) -> {
+            unlink(entry);
+            return null;
+        });
+    }
+
+    // Only the contact that is currently indexed can move its entry, so a contact that was replaced can't add itself back
+    void update(Contact contact) {
+        entries.computeIfPresent(contact.jid(), (jid, entry) -> {
+            if (entry.contact() != contact) {
+                return entry;
+            }
+
+            var newEntry = new Entry(contact);
+            if (newEntry.keys().equals(entry.keys())) {
+                return entry;
+            }
+
+            entry.keys().forEach(key -> names.remove(key, contact));
+            return link(newEntry);
+        });
+    }
+
+    private Entry link(Entry entry) {
+        entry.keys().forEach(key -> names.add(key, entry.contact()));
+        return entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.keys().forEach(key -> names.remove(key, entry.contact()));
+        if (entry.contact().index == this) {
+            entry.contact().index = null;
+        }
+    }
+
+    /**
+     * Returns the contacts whose full, chosen or short name matches a name once normalized
+     *
+     * @param name the name to search
+     * @return a non-null stream
+     */
+    public Stream<Contact> findByName(String name) {
+        return names.find(name);
+    }
+
+    /**
+     * Returns the contacts whose full, chosen or short name starts with a prefix once normalized
+     *
+     * @param prefix the prefix to search
+     * @return a non-null stream
+     */
+    public Stream<Contact> findByNamePrefix(String prefix) {
+        return names.findByPrefix(prefix);
+    }
+
+    // The normalized names are copied so that an entry can always be unlinked even if the contact changed in the meantime
+    private record Entry(Contact contact, Set<String> keys) {
+        private Entry(Contact contact) {
+            this(contact, keysOf(contact));
+        }
+
+        private static Set<String> keysOf(Contact contact) {
+            var result = new HashSet<String>(3);
+            contact.fullName().map(NameIndex::normalize).ifPresent(result::add);
+            contact.chosenName().map(NameIndex::normalize).ifPresent(result::add);
+            contact.shortName().map(NameIndex::normalize).ifPresent(result::add);
+            return Set.copyOf(result);
+        }
+    }
+}
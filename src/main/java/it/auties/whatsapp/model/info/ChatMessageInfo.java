@@ -122,6 +122,8 @@ public final class ChatMessageInfo implements MessageInfo, MessageStatusInfo<Cha
 
     private Contact sender;
 
+    private transient ReactionIndex reactionIndex;
+
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public ChatMessageInfo(ChatMessageKey key, MessageContainer message, long timestampSeconds, MessageStatus status, Jid senderJid, long messageC2STimestamp, boolean ignore, boolean starred, boolean broadcast, String pushName, byte[] mediaCiphertextSha256, boolean multicast, boolean urlText, boolean urlNumber, StubType stubType, boolean clearMedia, List<String> stubParameters, int duration, List<String> labels, PaymentInfo paymentInfo, LiveLocationMessage finalLiveLocation, PaymentInfo quotedPaymentInfo, long ephemeralStartTimestamp, int ephemeralDuration, boolean enableEphemeral, boolean ephemeralOutOfSync, BusinessPrivacyStatus businessPrivacyStatus, String businessVerifiedName, MediaData mediaData, PhotoChange photoChange, MessageReceipt receipt, List<ReactionMessage> reactions, MediaData quotedStickerData, byte[] futureProofData, PublicServiceAnnouncementStatus psaStatus, List<PollUpdate> pollUpdates, PollAdditionalMetadata pollAdditionalMetadata, String agentId, boolean statusAlreadyViewed, byte[] messageSecret, KeepInChat keepInChat, Jid originalSender, long revokeTimestampSeconds, Chat chat, Contact sender) {
         this.key = key;
@@ -155,7 +157,7 @@ public final class ChatMessageInfo implements MessageInfo, MessageStatusInfo<Cha
         this.mediaData = mediaData;
         this.photoChange = photoChange;
         this.receipt = receipt;
-        this.reactions = reactions;
+        this.reactions = requireNonNullElseGet(reactions, ArrayList::new);
         this.quotedStickerData = quotedStickerData;
         this.futureProofData = futureProofData;
         this.psaStatus = psaStatus;
@@ -204,7 +206,7 @@ public final class ChatMessageInfo implements MessageInfo, MessageStatusInfo<Cha
         this.mediaData = mediaData;
         this.photoChange = photoChange;
         this.receipt = Objects.requireNonNullElseGet(receipt, MessageReceipt::new);
-        this.reactions = reactions;
+        this.reactions = requireNonNullElseGet(reactions, ArrayList::new);
         this.quotedStickerData = quotedStickerData;
         this.futureProofData = futureProofData;
         this.psaStatus = psaStatus;
@@ -454,8 +456,41 @@ public final class ChatMessageInfo implements MessageInfo, MessageStatusInfo<Cha
         return receipt;
     }
 
+    /**
+     * Returns the reactions to this message, at most one for every sender
+     *
+     * @return a non-null unmodifiable list
+     */
     public List<ReactionMessage> reactions() {
-        return reactions;
+        return reactionIndex().reactions();
+    }
+
+    /**
+     * Returns how many senders reacted to this message with every emoji
+     *
+     * @return a non-null unmodifiable map
+     */
+    public Map<String, Integer> reactionCounts() {
+        return reactionIndex().counts();
+    }
+
+    /**
+     * Adds a reaction to this message, replacing the previous reaction of the same sender
+     * A reaction without content removes the previous reaction of its sender
+     *
+     * @param reaction the non-null reaction, whose key is the key of the message that holds the reaction
+     * @return whether the reaction was applied, false if it's older than the one already known for its sender
+     */
+    public boolean addReaction(ReactionMessage reaction) {
+        return reactionIndex().add(reaction);
+    }
+
+    private synchronized ReactionIndex reactionIndex() {
+        if (reactionIndex == null) {
+            this.reactionIndex = new ReactionIndex(reactions);
+        }
+
+        return reactionIndex;
     }
 
     public Optional<MediaData> quotedStickerData() {
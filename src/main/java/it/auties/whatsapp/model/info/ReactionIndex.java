@@ -0,0 +1,93 @@
+package it.auties.whatsapp.model.info;
+
+import it.auties.whatsapp.model.message.standard.ReactionMessage;
+
+import java.util.*;
+
+/**
+ * The reactions to a {@link ChatMessageInfo} indexed by their sender.
+ * Every sender has at most one reaction: a newer reaction replaces the previous one and an empty reaction removes it.
+ * The persisted list of reactions is kept in sync, so it never holds reactions that were replaced or removed,
+ * and the number of reactions for every emoji is kept as an immutable snapshot that is replaced after every change.
+ */
+final class ReactionIndex {
+    private static final String SELF = "";
+
+    private final List<ReactionMessage> reactions;
+    private final Map<String, ReactionMessage> reactionsBySender;
+    private final Map<String, Integer> counts;
+    private volatile Map<String, Integer> countsSnapshot;
+
+    ReactionIndex(List<ReactionMessage> reactions) {
+        this.reactions = reactions;
+        this.reactionsBySender = new HashMap<>();
+        this.counts = new HashMap<>();
+        for (var reaction : reactions) {
+            var sender = senderOf(reaction);
+            var previous = reactionsBySender.get(sender);
+            if (previous == null || previous.timestampSeconds() <= reaction.timestampSeconds()) {
+                reactionsBySender.put(sender, reaction);
+            }
+        }
+
+        // Older versions appended every reaction, so the replaced ones are dropped here
+        reactions.removeIf(reaction -> reactionsBySender.get(senderOf(reaction)) != reaction || isRemoval(reaction));
+        reactionsBySender.values().removeIf(ReactionIndex::isRemoval);
+        reactionsBySender.values().forEach(reaction -> counts.merge(reaction.content(), 1, Integer::sum));
+        this.countsSnapshot = Map.copyOf(counts);
+    }
+
+    /**
+     * Adds a reaction, replacing or removing the previous reaction of the same sender
+     *
+     * @param reaction the non-null reaction, whose key must be the key of the reaction message
+     * @return whether the reaction was applied, false if it's older than the one already known for its sender
+     */
+    synchronized boolean add(ReactionMessage reaction) {
+        var sender = senderOf(reaction);
+        var previous = reactionsBySender.get(sender);
+        if (previous != null && previous.timestampSeconds() > reaction.timestampSeconds()) {
+            return false;
+        }
+
+        if (previous != null) {
+            reactions.remove(previous);
+            counts.computeIfPresent(previous.content(), (ignored, count) -> count == 1 ? null : count - 1);
+        }
+
+        if (isRemoval(reaction)) {
+            reactionsBySender.remove(sender);
+        } else {
+            reactionsBySender.put(sender, reaction);
+            reactions.add(reaction);
+            counts.merge(reaction.content(), 1, Integer::sum);
+        }
+
+        this.countsSnapshot = Map.copyOf(counts);
+        return true;
+    }
+
+    synchronized List<ReactionMessage> reactions() {
+        return List.copyOf(reactions);
+    }
+
+    Map<String, Integer> counts() {
+        return countsSnapshot;
+    }
+
+    private static String senderOf(ReactionMessage reaction) {
+        var key = reaction.key();
+        if (key.fromMe()) {
+            return SELF;
+        }
+
+        return key.senderJid()
+                .orElseGet(key::chatJid)
+                .withoutDevice()
+                .toString();
+    }
+
+    private static boolean isRemoval(ReactionMessage reaction) {
+        return reaction.content() == null || reaction.content().isEmpty();
+    }
+}
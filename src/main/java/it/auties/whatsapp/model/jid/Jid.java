@@ -45,30 +45,36 @@ public record Jid(String user, JidServer server, Integer device, Integer agent)
      * @return a non-null contact jid
      */
     public static Jid of(String jid, JidServer server) {
-        var complexUser = withoutServer(jid);
-        if (complexUser == null) {
-            return new Jid(null, server, null, null);
+        if (jid == null) {
+            return new Jid(null, server, null, null).intern();
+        }
+
+        // The jid is scanned once: user[_agent][:device][@server]
+        var end = serverSeparatorIndex(jid);
+        var deviceSeparator = jid.indexOf(':');
+        if (deviceSeparator >= end) {
+            deviceSeparator = -1;
         }
 
-        if (complexUser.contains(":")) {
-            var simpleUser = complexUser.split(":", 2);
-            var user = simpleUser[0];
-            var device = Integer.parseUnsignedInt(simpleUser[1]);
-            if (user.contains("_")) {
-                var simpleUserAgent = user.split("_", 2);
-                var agent = tryParseAgent(simpleUserAgent[1]);
-                return new Jid(simpleUserAgent[0], server, device, agent);
-            }
-            return new Jid(user, server, device, null);
+        var userEnd = deviceSeparator == -1 ? end : deviceSeparator;
+        var agentSeparator = jid.indexOf('_');
+        if (agentSeparator >= userEnd) {
+            agentSeparator = -1;
         }
 
-        if (!complexUser.contains("_")) {
-            return new Jid(complexUser, server, null, null);
+        var user = jid.substring(0, agentSeparator == -1 ? userEnd : agentSeparator);
+        var agent = agentSeparator == -1 ? null : tryParseAgent(jid, agentSeparator + 1, userEnd);
+        var device = deviceSeparator == -1 ? null : Integer.parseUnsignedInt(jid, deviceSeparator + 1, end, 10);
+        return new Jid(user, server, device, agent).intern();
+    }
+
+    private static int serverSeparatorIndex(String jid) {
+        var separator = jid.lastIndexOf('@');
+        if (separator == -1 || JidServer.ofAddress(jid.substring(separator + 1)) == null) {
+            return jid.length();
         }
 
-        var simpleUserAgent = complexUser.split("_", 2);
-        var agent = tryParseAgent(simpleUserAgent[1]);
-        return new Jid(simpleUserAgent[0], server, null, agent);
+        return separator;
     }
 
     /**
@@ -81,15 +87,13 @@ public record Jid(String user, JidServer server, Integer device, Integer agent)
         if (jid == null) {
             return null;
         }
-        for (var server : JidServer.values()) {
-            jid = jid.replace("@%s".formatted(server), "");
-        }
-        return jid;
+
+        return jid.substring(0, serverSeparatorIndex(jid));
     }
 
-    private static Integer tryParseAgent(String string) {
+    private static Integer tryParseAgent(String string, int start, int end) {
         try {
-            return Integer.parseUnsignedInt(string);
+            return Integer.parseUnsignedInt(string, start, end, 10);
         } catch (NumberFormatException exception) {
             return null;
         }
@@ -103,7 +107,7 @@ public record Jid(String user, JidServer server, Integer device, Integer agent)
      * @return a non-null contact jid
      */
     public static Jid ofDevice(String jid, int device) {
-        return new Jid(withoutServer(jid), JidServer.WHATSAPP, device, null);
+        return new Jid(withoutServer(jid), JidServer.WHATSAPP, device, null).intern();
     }
 
     /**
@@ -114,7 +118,11 @@ public record Jid(String user, JidServer server, Integer device, Integer agent)
      */
     @JsonCreator
     public static Jid of(String jid) {
-        return of(jid, JidServer.of(jid));
+        if (jid == null) {
+            return of(null, JidServer.WHATSAPP);
+        }
+
+        return JidCache.parse(jid, entry -> of(entry, JidServer.of(entry)));
     }
 
     /**
@@ -198,6 +206,16 @@ public record Jid(String user, JidServer server, Integer device, Integer agent)
         return of(user(), server());
     }
 
+    /**
+     * Returns the canonical instance of this jid.
+     * Jids returned by the factory methods of this class are already canonical, so they can usually be compared by reference.
+     *
+     * @return a non-null jid equal to this one
+     */
+    public Jid intern() {
+        return JidCache.intern(this);
+    }
+
     /**
      * Converts this jid to a non-formatted phone number
      *
@@ -270,8 +288,20 @@ public record Jid(String user, JidServer server, Integer device, Integer agent)
         return agent != null;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Jid that
+                && Objects.equals(user, that.user)
+                && server == that.server
+                && Objects.equals(device, that.device)
+                && Objects.equals(agent, that.agent);
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hashCode(toString());
+        var result = Objects.hashCode(user);
+        result = 31 * result + Objects.hashCode(server);
+        result = 31 * result + Objects.hashCode(device);
+        return 31 * result + Objects.hashCode(agent);
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package it.auties.whatsapp.model.jid;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache that interns jids.
+ * Encoded jids are mapped to their parsed instance, and parsed jids are mapped to a canonical instance,
+ * so that the same few thousand jids exchanged by a session are parsed once and compared by reference most of the time.
+ * When a map grows past its limit it's cleared: the entries that are still in use are cached again the next time they are requested.
+ */
+final class JidCache {
+    private static final int MAX_SIZE = 16384;
+
+    private static final Map<String, Jid> encoded = new ConcurrentHashMap<>();
+    private static final Map<Jid, Jid> canonical = new ConcurrentHashMap<>();
+
+    private JidCache() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    static Jid parse(String jid, Function<String, Jid> parser) {
+        var cached = encoded.get(jid);
+        if (cached != null) {
+            return cached;
+        }
+
+        ensureCapacity(encoded);
+        return encoded.computeIfAbsent(jid, parser);
+    }
+
+    static Jid intern(Jid jid) {
+        var cached = canonical.get(jid);
+        if (cached != null) {
+            return cached;
+        }
+
+        ensureCapacity(canonical);
+        var result = canonical.putIfAbsent(jid, jid);
+        return result == null ? jid : result;
+    }
+
+    private static void ensureCapacity(Map<?, ?> map) {
+        if (map.size() >= MAX_SIZE) {
+            map.clear();
+        }
+    }
+}
@@ -3,8 +3,6 @@ package it.auties.whatsapp.model.jid;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 
-import java.util.Arrays;
-
 /**
  * The constants of this enumerated type describe the various servers that a jid might be linked
  * to
@@ -45,12 +43,46 @@ public enum JidServer {
         this.address = address;
     }
 
+    private static final JidServer[] VALUES = values();
+
     @JsonCreator
     public static JidServer of(String address) {
-        return Arrays.stream(values())
-                .filter(entry -> address != null && address.endsWith(entry.address()))
-                .findFirst()
-                .orElse(WHATSAPP);
+        if (address == null) {
+            return WHATSAPP;
+        }
+
+        var separator = address.lastIndexOf('@');
+        var result = ofAddress(separator == -1 ? address : address.substring(separator + 1));
+        return result != null ? result : ofSuffix(address);
+    }
+
+    /**
+     * Returns the server whose address is exactly the one provided
+     *
+     * @param address the non-null address
+     * @return the matching server, or null if the address is unknown
+     */
+    static JidServer ofAddress(String address) {
+        return switch (address) {
+            case "c.us" -> USER;
+            case "g.us" -> GROUP;
+            case "broadcast" -> BROADCAST;
+            case "call" -> GROUP_CALL;
+            case "s.whatsapp.net" -> WHATSAPP;
+            case "lid" -> LID;
+            case "newsletter" -> NEWSLETTER;
+            default -> null;
+        };
+    }
+
+    private static JidServer ofSuffix(String address) {
+        for (var entry : VALUES) {
+            if (address.endsWith(entry.address())) {
+                return entry;
+            }
+        }
+
+        return WHATSAPP;
     }
 
     public String address() {
@@ -0,0 +1,11 @@
+package it.auties.whatsapp.model.media;
+
+/**
+ * A model class that represents the properties of an image
+ *
+ * @param dimensions the non-null dimensions of the image
+ * @param thumbnail  the thumbnail of the image, or null if it wasn't requested or couldn't be generated
+ */
+public record ImageMetadata(MediaDimensions dimensions, byte[] thumbnail) {
+
+}
@@ -1,7 +1,7 @@
 package it.auties.whatsapp.model.media;
 
 import it.auties.whatsapp.crypto.Hkdf;
-import it.auties.whatsapp.util.BytesHelper;
+import it.auties.whatsapp.util.SecureRandoms;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -13,7 +13,7 @@ public record MediaKeys(byte[] mediaKey, byte[] iv, byte[] cipherKey, byte[] mac
     private static final int EXPANDED_SIZE = 112;
 
     public static MediaKeys random(String type) {
-        return of(BytesHelper.random(32), type);
+        return of(SecureRandoms.random(32), type);
     }
 
     public static MediaKeys of(byte[] key, String type) {
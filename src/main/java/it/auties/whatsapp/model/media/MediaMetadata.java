@@ -0,0 +1,25 @@
+package it.auties.whatsapp.model.media;
+
+/**
+ * A model class that represents the properties of an audio or video file read from its container
+ *
+ * @param width    the width of the video track in pixels, or 0 if unknown
+ * @param height   the height of the video track in pixels, or 0 if unknown
+ * @param duration the duration in seconds, or 0 if unknown
+ */
+public record MediaMetadata(int width, int height, int duration) {
+    private static final MediaMetadata EMPTY = new MediaMetadata(0, 0, 0);
+
+    public static MediaMetadata empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the dimensions of the video track
+     *
+     * @return the dimensions, or the default dimensions if they are unknown
+     */
+    public MediaDimensions dimensions() {
+        return width > 0 && height > 0 ? new MediaDimensions(width, height) : MediaDimensions.defaultDimensions();
+    }
+}
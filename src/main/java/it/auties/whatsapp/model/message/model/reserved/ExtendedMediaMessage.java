@@ -3,10 +3,12 @@ package it.auties.whatsapp.model.message.model.reserved;
 import it.auties.whatsapp.model.message.model.MediaMessage;
 import it.auties.whatsapp.model.message.standard.*;
 
+import java.nio.file.Path;
 import java.util.Optional;
 
 public abstract sealed class ExtendedMediaMessage<T extends ExtendedMediaMessage<T>> implements MediaMessage<T> permits AudioMessage, DocumentMessage, ImageMessage, StickerMessage, VideoOrGifMessage {
     private byte[] decodedMedia;
+    private Path decodedMediaFile;
     private String handle;
 
     public Optional<String> handle() {
@@ -23,6 +25,16 @@ public abstract sealed class ExtendedMediaMessage<T extends ExtendedMediaMessage
         return (T) this;
     }
 
+    public Optional<Path> decodedMediaFile() {
+        return Optional.ofNullable(decodedMediaFile);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setDecodedMediaFile(Path decodedMediaFile) {
+        this.decodedMediaFile = decodedMediaFile;
+        return (T) this;
+    }
+
     @SuppressWarnings("unchecked")
     public T setHandle(String handle) {
         this.handle = handle;
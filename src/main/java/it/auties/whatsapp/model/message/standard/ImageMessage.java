@@ -154,13 +154,14 @@ public final class ImageMessage extends ExtendedMediaMessage<ImageMessage>
      */
     @ProtobufBuilder(className = "ImageMessageSimpleBuilder")
     static ImageMessage simpleBuilder(byte[] media, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
-        var dimensions = Medias.getDimensions(media, false);
+        var metadata = Medias.getImageMetadata(media, thumbnail != null ? null : JPG);
+        var dimensions = metadata.dimensions();
         return new ImageMessageBuilder()
                 .mimetype(requireNonNullElse(mimeType, IMAGE.defaultMimeType()))
                 .caption(caption)
                 .width(dimensions.width())
                 .height(dimensions.height())
-                .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, JPG).orElse(null))
+                .thumbnail(thumbnail != null ? thumbnail : metadata.thumbnail())
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::empty))
                 .build()
                 .setDecodedMedia(media);
@@ -13,6 +13,7 @@ import it.auties.whatsapp.model.message.model.ContextualMessage;
 import it.auties.whatsapp.model.message.model.MessageCategory;
 import it.auties.whatsapp.model.message.model.MessageType;
 import it.auties.whatsapp.model.poll.PollOption;
+import it.auties.whatsapp.model.poll.PollTally;
 import it.auties.whatsapp.model.poll.SelectedPollOption;
 import it.auties.whatsapp.util.KeyHelper;
 import it.auties.whatsapp.util.Validate;
@@ -46,6 +47,8 @@ public final class PollCreationMessage implements ContextualMessage<PollCreation
     @ProtobufProperty(index = 1000, type = ProtobufType.OBJECT)
     final List<SelectedPollOption> selectedOptions;
 
+    private transient PollTally tally;
+
     public PollCreationMessage(byte[] encryptionKey, String title, List<PollOption> selectableOptions, int selectableOptionsCount, ContextInfo contextInfo, Map<String, PollOption> selectableOptionsMap, List<SelectedPollOption> selectedOptions) {
         this.encryptionKey = encryptionKey;
         this.title = title;
@@ -88,14 +91,27 @@ public final class PollCreationMessage implements ContextualMessage<PollCreation
      * @return a non-null unmodifiable map
      */
     public Collection<SelectedPollOption> getSelectedOptions(JidProvider voter) {
-        return selectedOptions.stream()
-                .filter(entry -> Objects.equals(entry.jid(), voter.toJid()))
+        var jid = voter.toJid();
+        return tally().findVotes(jid)
+                .stream()
+                .map(option -> new SelectedPollOption(jid, option.name()))
                 .toList();
     }
 
-    public void addSelectedOptions(JidProvider voter, Collection<PollOption> voted) {
-        for(var entry : voted) {
-            var selectedPollOption = new SelectedPollOption(voter.toJid(), entry.name());
+    /**
+     * Registers the vote of a contact in this poll, replacing the previous one if any
+     *
+     * @param voter the non-null contact that voted in this poll
+     * @param voted the non-null options that were selected, empty if the vote was withdrawn
+     */
+    public synchronized void addSelectedOptions(JidProvider voter, Collection<PollOption> voted) {
+        var jid = voter.toJid();
+        if (tally().vote(jid, voted)) {
+            selectedOptions.removeIf(entry -> Objects.equals(entry.jid(), jid));
+        }
+
+        for (var entry : voted) {
+            var selectedPollOption = new SelectedPollOption(jid, entry.name());
             selectedOptions.add(selectedPollOption);
         }
     }
@@ -108,6 +124,39 @@ public final class PollCreationMessage implements ContextualMessage<PollCreation
         return Optional.ofNullable(selectableOptionsMap.get(hash));
     }
 
+    /**
+     * Returns the option whose name has the provided SHA-256
+     *
+     * @param sha256 the non-null hash of the option
+     * @return a non-null optional
+     */
+    public Optional<PollOption> getSelectableOption(byte[] sha256) {
+        return tally().findOptionByHash(sha256);
+    }
+
+    /**
+     * Returns the number of votes that every option of this poll received
+     * Only the last vote of every voter is counted
+     *
+     * @return a non-null unmodifiable map
+     */
+    public Map<PollOption, Integer> results() {
+        return tally().results();
+    }
+
+    /**
+     * Returns the live results of this poll
+     *
+     * @return a non-null tally
+     */
+    public synchronized PollTally tally() {
+        if (tally == null) {
+            this.tally = new PollTally(selectableOptions, selectedOptions);
+        }
+
+        return tally;
+    }
+
     @Override
     public MessageType type() {
         return MessageType.POLL_CREATION;
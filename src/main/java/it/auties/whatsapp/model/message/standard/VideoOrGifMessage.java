@@ -129,8 +129,9 @@ public final class VideoOrGifMessage extends ExtendedMediaMessage<VideoOrGifMess
 
     @ProtobufBuilder(className = "VideoMessageSimpleBuilder")
     static VideoOrGifMessage videoBuilder(byte[] media, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
-        var dimensions = Medias.getDimensions(media, true);
-        var duration = Medias.getDuration(media);
+        var metadata = Medias.getMetadata(media);
+        var dimensions = metadata.dimensions();
+        var duration = metadata.duration();
         return new VideoOrGifMessageBuilder()
                 .mimetype(requireNonNullElse(mimeType, VIDEO.defaultMimeType()))
                 .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, Medias.Format.VIDEO).orElse(null))
@@ -146,8 +147,9 @@ public final class VideoOrGifMessage extends ExtendedMediaMessage<VideoOrGifMess
     @ProtobufBuilder(className = "GifMessageSimpleBuilder")
     static VideoOrGifMessage gifBuilder(byte[] media, String mimeType, String caption, Attribution gifAttribution, byte[] thumbnail, ContextInfo contextInfo) {
         Validate.isTrue(isNotGif(media, mimeType), "Cannot create a VideoMessage with mime type image/gif: gif messages on whatsapp are videos played as gifs");
-        var dimensions = Medias.getDimensions(media, true);
-        var duration = Medias.getDuration(media);
+        var metadata = Medias.getMetadata(media);
+        var dimensions = metadata.dimensions();
+        var duration = metadata.duration();
         return new VideoOrGifMessageBuilder()
                 .mimetype(requireNonNullElse(mimeType, VIDEO.defaultMimeType()))
                 .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, Medias.Format.VIDEO).orElse(null))
@@ -6,6 +6,7 @@ import it.auties.whatsapp.model.jid.Jid;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 
@@ -13,11 +14,42 @@ import static java.util.Map.ofEntries;
 import static java.util.Objects.requireNonNull;
 
 /**
- * A utility class that wraps a map and provides easy methods to interact with its content
- *
- * @param toMap the non-null wrapped map
+ * A utility class that stores the attributes of a node and provides easy methods to interact with them.
+ * Nodes usually carry only a handful of attributes, so they are kept in two flat arrays that preserve the insertion order:
+ * a linear scan over them is faster and allocates much less than a hash map.
+ * Once {@link #toMap()} is called, the attributes are moved to the returned map, which backs this object from then on.
  */
-public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
+public final class Attributes {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+    private LinkedHashMap<String, Object> map;
+
+    /**
+     * Constructs a new instance backed by a map
+     *
+     * @param toMap the non-null map, changes to it are reflected by this object
+     */
+    public Attributes(LinkedHashMap<String, Object> toMap) {
+        this.map = Objects.requireNonNull(toMap);
+    }
+
+    private Attributes(int capacity) {
+        this.keys = new String[Math.max(capacity, 1)];
+        this.values = new Object[keys.length];
+    }
+
+    /**
+     * Constructs a new empty instance with room for the provided number of attributes
+     *
+     * @param capacity the expected number of attributes
+     * @return a new instance of Attributes
+     */
+    public static Attributes ofCapacity(int capacity) {
+        return new Attributes(capacity);
+    }
     /**
      * Constructs a new map using the non-null provided entries
      *
@@ -37,10 +69,12 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return a new instance of Attributes
      */
     public static Attributes ofNullable(Map<String, ?> map) {
-        var modifiableMap = Optional.ofNullable(map)
-                .map(LinkedHashMap<String, Object>::new)
-                .orElseGet(LinkedHashMap::new);
-        return new Attributes(modifiableMap);
+        if (map == null) {
+            return new Attributes(DEFAULT_CAPACITY);
+        }
+
+        return new Attributes(map.size())
+                .putAll(map);
     }
 
     /**
@@ -60,7 +94,7 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return a boolean
      */
     public boolean hasKey(String key) {
-        return toMap.containsKey(key);
+        return map != null ? map.containsKey(key) : indexOf(key) != -1;
     }
 
     /**
@@ -71,7 +105,7 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return a boolean
      */
     public boolean hasValue(String key, String value) {
-        return Objects.equals(toMap.get(key), value);
+        return Objects.equals(getValue(key), value);
     }
 
     /**
@@ -113,7 +147,7 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      */
     public Attributes put(String key, Object value, boolean condition) {
         if (condition) {
-            toMap.put(key, value);
+            put(key, value);
         }
         return this;
     }
@@ -126,10 +160,46 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return the calling instance
      */
     public Attributes put(String key, Object value) {
-        toMap.put(key, value);
+        if (map != null) {
+            map.put(key, value);
+            return this;
+        }
+
+        var index = indexOf(key);
+        if (index != -1) {
+            values[index] = value;
+            return this;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        keys[size] = key;
+        values[size++] = value;
         return this;
     }
 
+    private int indexOf(String key) {
+        for (var index = 0; index < size; index++) {
+            if (Objects.equals(keys[index], key)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    private Object getValue(String key) {
+        if (map != null) {
+            return map.get(key);
+        }
+
+        var index = indexOf(key);
+        return index == -1 ? null : values[index];
+    }
+
     /**
      * Gets a value by key in the wrapped map
      *
@@ -152,7 +222,7 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return the non-null value
      */
     public <T> Optional<T> get(String key, Class<T> clazz) {
-        return Optional.ofNullable(toMap.get(key)).map(clazz::cast);
+        return Optional.ofNullable(getValue(key)).map(clazz::cast);
     }
 
     /**
@@ -373,7 +443,15 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return a non-null instance
      */
     public Attributes copy() {
-        return new Attributes(toMap);
+        if (map != null) {
+            return ofNullable(map);
+        }
+
+        var result = new Attributes(size);
+        System.arraycopy(keys, 0, result.keys, 0, size);
+        System.arraycopy(values, 0, result.values, 0, size);
+        result.size = size;
+        return result;
     }
 
     /**
@@ -382,7 +460,101 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
      * @return a boolean
      */
     public boolean isEmpty() {
-        return toMap.isEmpty();
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of attributes
+     *
+     * @return an unsigned int
+     */
+    public int size() {
+        return map != null ? map.size() : size;
+    }
+
+    /**
+     * Returns the key of the attribute at the provided position, in insertion order
+     *
+     * @param index the position, between 0 and {@link #size()}
+     * @return a non-null key
+     */
+    public String keyAt(int index) {
+        if (map != null) {
+            return entryAt(index).getKey();
+        }
+
+        Objects.checkIndex(index, size);
+        return keys[index];
+    }
+
+    /**
+     * Returns the value of the attribute at the provided position, in insertion order
+     *
+     * @param index the position, between 0 and {@link #size()}
+     * @return a nullable value
+     */
+    public Object valueAt(int index) {
+        if (map != null) {
+            return entryAt(index).getValue();
+        }
+
+        Objects.checkIndex(index, size);
+        return values[index];
+    }
+
+    private Entry<String, Object> entryAt(int index) {
+        Objects.checkIndex(index, map.size());
+        var iterator = map.entrySet().iterator();
+        for (var skipped = 0; skipped < index; skipped++) {
+            iterator.next();
+        }
+
+        return iterator.next();
+    }
+
+    /**
+     * Performs the given action for each attribute in insertion order
+     *
+     * @param consumer the non-null action
+     */
+    public void forEach(BiConsumer<String, Object> consumer) {
+        if (map != null) {
+            map.forEach(consumer);
+            return;
+        }
+
+        for (var index = 0; index < size; index++) {
+            consumer.accept(keys[index], values[index]);
+        }
+    }
+
+    /**
+     * Returns the map that backs these attributes, in insertion order.
+     * Changes to the returned map are reflected by this object, and vice versa.
+     *
+     * @return a non-null map
+     */
+    public LinkedHashMap<String, Object> toMap() {
+        if (map == null) {
+            map = snapshot();
+            keys = null;
+            values = null;
+            size = 0;
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns a new map that contains the attributes in insertion order, without moving them out of the flat arrays
+     *
+     * @return a non-null map
+     */
+    @JsonValue
+    LinkedHashMap<String, Object> snapshot() {
+        var result = LinkedHashMap.<String, Object>newLinkedHashMap(size());
+        forEach(result::put);
+        return result;
     }
 
     public Attributes putAll(Map<String, ?> map) {
@@ -391,7 +563,7 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
 
     public Attributes putAll(Collection<? extends Entry<String, ?>> entries) {
         for(var entry : entries) {
-            toMap.put(entry.getKey(), entry.getValue());
+            put(entry.getKey(), entry.getValue());
         }
 
         return this;
@@ -400,9 +572,44 @@ public record Attributes(@JsonValue LinkedHashMap<String, Object> toMap) {
     @SafeVarargs
     public final Attributes putAll(Entry<String, ?>... entries) {
         for(var entry : entries) {
-            toMap.put(entry.getKey(), entry.getValue());
+            put(entry.getKey(), entry.getValue());
         }
 
         return this;
     }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Attributes that) || that.size() != size()) {
+            return false;
+        }
+
+        for (var index = 0; index < size(); index++) {
+            var key = keyAt(index);
+            if (!that.hasKey(key) || !Objects.equals(valueAt(index), that.getValue(key))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        if (map != null) {
+            return map.hashCode();
+        }
+
+        var result = 0;
+        for (var index = 0; index < size; index++) {
+            result += Objects.hashCode(keys[index]) ^ Objects.hashCode(values[index]);
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Attributes[toMap=%s]".formatted(snapshot());
+    }
 }
@@ -8,7 +8,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * An immutable model class that represents the primary unit used by WhatsappWeb's WebSocket to communicate with the client
@@ -18,6 +17,30 @@ import java.util.stream.Collectors;
  * @param content     a nullable object: a List of {@link Node}, a {@link String} or a {@link Number}
  */
 public record Node(String description, Attributes attributes, Object content) {
+    /**
+     * Canonical constructor: collections of nodes are copied once into an immutable, array-backed list
+     * so that the lookup methods can scan them without copying them again
+     */
+    public Node {
+        if (content instanceof Collection<?> collection) {
+            content = toChildren(collection);
+        }
+    }
+
+    private static List<Node> toChildren(Collection<?> collection) {
+        var nodes = new Node[collection.size()];
+        var size = 0;
+        for (var entry : collection) {
+            switch (entry) {
+                case null -> {}
+                case Node node -> nodes[size++] = node;
+                default -> throw new IllegalArgumentException("Unexpected payload type: expected nodes collection");
+            }
+        }
+
+        return List.of(size == nodes.length ? nodes : Arrays.copyOf(nodes, size));
+    }
+
     /**
      * Constructs a Node that only provides a non-null tag
      *
@@ -149,29 +172,15 @@ public record Node(String description, Attributes attributes, Object content) {
             return null;
         }
 
-        return Arrays.stream(entries)
-                .filter(Objects::nonNull)
-                .toList();
+        return Arrays.asList(entries);
     }
 
-    @SuppressWarnings("unchecked")
-    private static Collection<Node> getNodesOrThrow(Collection<?> entries) {
-        try {
-            if (entries == null) {
-                return null;
-            }
-
-            var results = (Collection<Node>) entries;
-            if (results.isEmpty()) {
-                return null;
-            }
-
-            return results.stream()
-                    .filter(Objects::nonNull)
-                    .toList();
-        } catch (ClassCastException exception) {
-            throw new IllegalArgumentException("Unexpected payload type: expected nodes collection", exception);
+    private static Collection<?> getNodesOrThrow(Collection<?> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return null;
         }
+
+        return entries;
     }
 
     /**
@@ -240,25 +249,32 @@ public record Node(String description, Attributes attributes, Object content) {
      * @return true if a child node with the given description whatsappOldEligible
      */
     public boolean hasNode(String description) {
-        return children().stream().anyMatch(node -> Objects.equals(node.description(), description));
+        return indexOf(description) != -1;
     }
 
     /**
      * Returns a non-null list of children of this node
      *
-     * @return a non-null list
+     * @return a non-null, modifiable copy of the children
      */
     public LinkedList<Node> children() {
-        if (content == null) {
-            return new LinkedList<>();
-        }
-        if (!(content instanceof Collection<?> collection)) {
-            return new LinkedList<>();
+        return new LinkedList<>(childNodes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Node> childNodes() {
+        return content instanceof List<?> children ? (List<Node>) children : List.of();
+    }
+
+    private int indexOf(String description) {
+        var children = childNodes();
+        for (var index = 0; index < children.size(); index++) {
+            if (Objects.equals(children.get(index).description(), description)) {
+                return index;
+            }
         }
-        return collection.stream()
-                .filter(entry -> entry instanceof Node)
-                .map(entry -> (Node) entry)
-                .collect(Collectors.toCollection(LinkedList::new));
+
+        return -1;
     }
 
     /**
@@ -277,7 +293,8 @@ public record Node(String description, Attributes attributes, Object content) {
      * @return an optional
      */
     public Optional<Node> findNode() {
-        return children().stream().findFirst();
+        var children = childNodes();
+        return children.isEmpty() ? Optional.empty() : Optional.of(children.getFirst());
     }
 
     /**
@@ -287,7 +304,8 @@ public record Node(String description, Attributes attributes, Object content) {
      * @return an optional
      */
     public Optional<Node> findNode(String description) {
-        return children().stream().filter(node -> Objects.equals(node.description(), description)).findFirst();
+        var index = indexOf(description);
+        return index == -1 ? Optional.empty() : Optional.of(childNodes().get(index));
     }
 
     /**
@@ -297,7 +315,21 @@ public record Node(String description, Attributes attributes, Object content) {
      * @return an optional body, present if a newsletters was found
      */
     public List<Node> findNodes(String description) {
-        return children().stream().filter(node -> Objects.equals(node.description(), description)).toList();
+        var children = childNodes();
+        var first = indexOf(description);
+        if (first == -1) {
+            return List.of();
+        }
+
+        var results = new ArrayList<Node>(children.size() - first);
+        for (var index = first; index < children.size(); index++) {
+            var child = children.get(index);
+            if (Objects.equals(child.description(), description)) {
+                results.add(child);
+            }
+        }
+
+        return Collections.unmodifiableList(results);
     }
 
     /**
@@ -314,7 +346,7 @@ public record Node(String description, Attributes attributes, Object content) {
      */
     public int size() {
         var descriptionSize = 1;
-        var attributesSize = 2 * attributes.toMap().size();
+        var attributesSize = 2 * attributes.size();
         var contentSize = hasContent() ? 1 : 0;
         return descriptionSize + attributesSize + contentSize;
     }
@@ -370,7 +402,7 @@ public record Node(String description, Attributes attributes, Object content) {
     @Override
     public String toString() {
         var description = this.description.isBlank() || this.description.isEmpty() ? "" : "description=%s".formatted(this.description);
-        var attributes = this.attributes.toMap().isEmpty() ? "" : ", attributes=%s".formatted(this.attributes.toMap());
+        var attributes = this.attributes.isEmpty() ? "" : ", attributes=%s".formatted(this.attributes.snapshot());
         var content = this.content == null ? "" : ", content=%s".formatted(this.content instanceof byte[] bytes ? Arrays.toString(bytes) : this.content);
         return "Node[%s%s%s]".formatted(description, attributes, content);
     }
@@ -0,0 +1,105 @@
+package it.auties.whatsapp.model.poll;
+
+import it.auties.whatsapp.crypto.Sha256;
+import it.auties.whatsapp.model.jid.Jid;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The live results of a {@link it.auties.whatsapp.model.message.standard.PollCreationMessage}.
+ * Only the last vote of every voter is counted, and the results are kept as an immutable snapshot that is replaced after every vote,
+ * so reading them doesn't depend on the number of voters.
+ */
+public final class PollTally {
+    private final List<PollOption> options;
+    private final Map<ByteBuffer, PollOption> optionsByHash;
+    private final Map<Jid, List<PollOption>> votes;
+    private final Map<PollOption, Integer> counts;
+    private volatile Map<PollOption, Integer> results;
+
+    /**
+     * Constructs a new tally for a poll
+     *
+     * @param options         the non-null options of the poll
+     * @param selectedOptions the non-null votes that were already cast
+     */
+    public PollTally(List<PollOption> options, Collection<SelectedPollOption> selectedOptions) {
+        this.options = List.copyOf(options);
+        this.optionsByHash = new HashMap<>();
+        for (var option : this.options) {
+            optionsByHash.put(ByteBuffer.wrap(Sha256.calculate(option.name())), option);
+        }
+
+        this.counts = new LinkedHashMap<>();
+        for (var option : this.options) {
+            counts.put(option, 0);
+        }
+
+        this.votes = new ConcurrentHashMap<>();
+        for (var selectedOption : selectedOptions) {
+            var option = new PollOption(selectedOption.name());
+            votes.computeIfAbsent(selectedOption.jid(), ignored -> new ArrayList<>()).add(option);
+            counts.merge(option, 1, Integer::sum);
+        }
+
+        this.results = Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+    }
+
+    /**
+     * Returns the option whose name has the provided SHA-256
+     *
+     * @param sha256 the non-null hash of the option
+     * @return a non-null optional
+     */
+    public Optional<PollOption> findOptionByHash(byte[] sha256) {
+        return Optional.ofNullable(optionsByHash.get(ByteBuffer.wrap(sha256)));
+    }
+
+    /**
+     * Registers the vote of a voter, replacing the previous one if any
+     *
+     * @param voter   the non-null voter
+     * @param options the non-null options that were selected, empty if the vote was withdrawn
+     * @return whether the voter had already voted
+     */
+    public synchronized boolean vote(Jid voter, Collection<PollOption> options) {
+        var previous = options.isEmpty() ? votes.remove(voter) : votes.put(voter, List.copyOf(options));
+        if (previous != null) {
+            previous.forEach(option -> counts.merge(option, -1, Integer::sum));
+        }
+
+        options.forEach(option -> counts.merge(option, 1, Integer::sum));
+        this.results = Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+        return previous != null;
+    }
+
+    /**
+     * Returns the options selected by a voter
+     *
+     * @param voter the non-null voter
+     * @return a non-null unmodifiable list
+     */
+    public List<PollOption> findVotes(Jid voter) {
+        return Collections.unmodifiableList(votes.getOrDefault(voter, List.of()));
+    }
+
+    /**
+     * Returns the number of voters
+     *
+     * @return an int
+     */
+    public int votersCount() {
+        return votes.size();
+    }
+
+    /**
+     * Returns the number of votes that every option received, in the order in which the options appear in the poll
+     *
+     * @return a non-null unmodifiable map
+     */
+    public Map<PollOption, Integer> results() {
+        return results;
+    }
+}
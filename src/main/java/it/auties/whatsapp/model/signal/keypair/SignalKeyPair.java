@@ -1,13 +1,16 @@
 package it.auties.whatsapp.model.signal.keypair;
 
-import it.auties.curve25519.Curve25519;
 import it.auties.curve25519.XecUtils;
 import it.auties.protobuf.annotation.ProtobufProperty;
 import it.auties.protobuf.model.ProtobufMessage;
 import it.auties.protobuf.model.ProtobufType;
 import it.auties.whatsapp.model.node.Node;
 import it.auties.whatsapp.util.KeyHelper;
+import it.auties.whatsapp.util.SecureRandoms;
 
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.interfaces.XECPrivateKey;
 import java.security.interfaces.XECPublicKey;
 import java.util.Arrays;
@@ -18,6 +21,11 @@ public record SignalKeyPair(
         @ProtobufProperty(index = 2, type = ProtobufType.BYTES)
         byte[] privateKey
 ) implements ISignalKeyPair, ProtobufMessage {
+    private static final String KEY_ALGORITHM = "X25519";
+    private static final int KEY_SIZE = 255;
+    private static final int KEY_LENGTH = 32;
+    private static final ThreadLocal<CachedGenerator> GENERATOR = new ThreadLocal<>();
+
     public SignalKeyPair(byte[] publicKey, byte[] privateKey) {
         this.publicKey = KeyHelper.withoutHeader(publicKey);
         this.privateKey = privateKey;
@@ -28,12 +36,35 @@ public record SignalKeyPair(
     }
 
     public static SignalKeyPair random() {
-        var keyPair = Curve25519.randomKeyPair();
+        var keyPair = keyPairGenerator().generateKeyPair();
         var publicKey = XecUtils.toBytes((XECPublicKey) keyPair.getPublic());
         var privateKey = XecUtils.toBytes((XECPrivateKey) keyPair.getPrivate());
         return new SignalKeyPair(publicKey, privateKey);
     }
 
+    // Each thread reuses its generator, which is initialized again only if the secure random of the thread was replaced
+    private static KeyPairGenerator keyPairGenerator() {
+        var random = SecureRandoms.current(KEY_LENGTH);
+        var cached = GENERATOR.get();
+        if (cached != null && cached.random() == random) {
+            return cached.generator();
+        }
+
+        var generator = newKeyPairGenerator(random);
+        GENERATOR.set(new CachedGenerator(generator, random));
+        return generator;
+    }
+
+    private static KeyPairGenerator newKeyPairGenerator(SecureRandom random) {
+        try {
+            var generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+            generator.initialize(KEY_SIZE, random);
+            return generator;
+        } catch (NoSuchAlgorithmException exception) {
+            throw new UnsupportedOperationException("Missing X25519 implementation", exception);
+        }
+    }
+
     @Override
     public boolean equals(Object other) {
         return other instanceof SignalKeyPair that && Arrays.equals(publicKey(), that.publicKey()) && Arrays.equals(privateKey(), that.privateKey());
@@ -48,4 +79,8 @@ public record SignalKeyPair(
     public SignalKeyPair toGenericKeyPair() {
         return this;
     }
+
+    private record CachedGenerator(KeyPairGenerator generator, SecureRandom random) {
+
+    }
 }
@@ -21,13 +21,13 @@ public final class SenderKeyRecord implements ProtobufMessage {
         this.states = new ArrayList<>();
     }
 
-    public SenderKeyState firstState() {
+    public synchronized SenderKeyState firstState() {
         return states.stream()
                 .findFirst()
                 .orElseThrow(() -> new NoSuchElementException("Cannot get head state for empty record"));
     }
 
-    public List<SenderKeyState> findStatesById(int keyId) {
+    public synchronized List<SenderKeyState> findStatesById(int keyId) {
         return states.stream()
                 .filter(entry -> entry.id() == keyId)
                 .toList();
@@ -37,7 +37,7 @@ public final class SenderKeyRecord implements ProtobufMessage {
         addState(id, SignalKeyPair.of(signatureKey), iteration, seed);
     }
 
-    public void addState(int id, SignalKeyPair signingKey, int iteration, byte[] seed) {
+    public synchronized void addState(int id, SignalKeyPair signingKey, int iteration, byte[] seed) {
         var state = new SenderKeyState(id, signingKey, iteration, seed);
         states.add(state);
     }
@@ -46,10 +46,22 @@ public final class SenderKeyRecord implements ProtobufMessage {
         return Collections.unmodifiableList(states);
     }
 
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return states.isEmpty();
     }
 
+    /**
+     * Returns a deep copy of this record.
+     * Ciphers hold the lock of a record while they mutate it, so the copy never observes a partially applied operation.
+     *
+     * @return a non-null record
+     */
+    public synchronized SenderKeyRecord copy() {
+        var states = new ArrayList<SenderKeyState>(this.states.size());
+        this.states.forEach(state -> states.add(state.copy()));
+        return new SenderKeyRecord(states);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hashCode(this.states);
@@ -65,6 +65,10 @@ public final class SenderKeyState implements ProtobufMessage {
         this.chainKey = chainKey;
     }
 
+    public SenderKeyState copy() {
+        return new SenderKeyState(id, signingKey, new ConcurrentHashMap<>(messageKeys), chainKey);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hashCode(this.id());
@@ -7,7 +7,7 @@ import it.auties.whatsapp.model.jid.Jid;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 public final class SenderPreKeys implements ProtobufMessage {
@@ -22,22 +22,31 @@ public final class SenderPreKeys implements ProtobufMessage {
         this.preKeys = preKeys;
     }
 
-    public Collection<Jid> preKeys() {
-        return Collections.unmodifiableCollection(preKeys);
+    public synchronized Collection<Jid> preKeys() {
+        return List.copyOf(preKeys);
     }
 
-    public void addPreKey(Jid jid) {
+    public synchronized void addPreKey(Jid jid) {
         preKeys.add(jid);
     }
 
-    public void addPreKeys(Collection<Jid> recipients) {
+    public synchronized void addPreKeys(Collection<Jid> recipients) {
         preKeys.addAll(recipients);
     }
 
-    public boolean contains(Jid recipient) {
+    public synchronized boolean contains(Jid recipient) {
         return preKeys.contains(recipient);
     }
 
+    /**
+     * Returns a deep copy of these pre keys, taken while holding the same lock as the mutators
+     *
+     * @return a non-null copy
+     */
+    public synchronized SenderPreKeys copy() {
+        return new SenderPreKeys(new ArrayList<>(preKeys));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) return true;
@@ -24,7 +24,7 @@ public final class Session implements ProtobufMessage {
         this.states = states;
     }
 
-    public Session closeCurrentState() {
+    public synchronized Session closeCurrentState() {
         var currentState = currentState();
         currentState.ifPresent(value -> value.closed(true));
         return this;
@@ -48,10 +48,22 @@ public final class Session implements ProtobufMessage {
         return states.stream().filter(state -> state.contentEquals(version, baseKey)).findFirst();
     }
 
-    public void addState(SessionState state) {
+    public synchronized void addState(SessionState state) {
         states.add(state);
     }
 
+    /**
+     * Returns a deep copy of this session.
+     * Ciphers hold the lock of a session while they mutate it, so the copy never observes a partially applied operation.
+     *
+     * @return a non-null session
+     */
+    public synchronized Session copy() {
+        var states = ConcurrentHashMap.<SessionState>newKeySet();
+        this.states.forEach(state -> states.add(state.copy()));
+        return new Session(states);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) return true;
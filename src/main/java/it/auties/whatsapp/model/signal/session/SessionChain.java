@@ -24,4 +24,8 @@ public record SessionChain(
     public boolean hasMessageKey(int counter) {
         return messageKeys.containsKey(counter);
     }
+
+    public SessionChain copy() {
+        return new SessionChain(new AtomicInteger(counter.get()), new AtomicReference<>(key.get()), new ConcurrentHashMap<>(messageKeys));
+    }
 }
\ No newline at end of file
@@ -166,4 +166,15 @@ public final class SessionState implements ProtobufMessage {
     public Map<String, SessionChain> chains() {
         return Collections.unmodifiableMap(chains);
     }
+
+    /**
+     * Returns a deep copy of this state
+     *
+     * @return a non-null state
+     */
+    public SessionState copy() {
+        var chains = new ConcurrentHashMap<String, SessionChain>();
+        this.chains.forEach((key, chain) -> chains.put(key, chain.copy()));
+        return new SessionState(version, registrationId, baseKey, remoteIdentityKey, chains, rootKey, pendingPreKey, ephemeralKeyPair, lastRemoteEphemeralKey, previousCounter, closed);
+    }
 }
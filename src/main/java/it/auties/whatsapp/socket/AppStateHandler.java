@@ -29,6 +29,8 @@ import it.auties.whatsapp.util.Validate;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -45,13 +47,15 @@ class AppStateHandler {
     private final SocketHandler socketHandler;
     private final Map<PatchType, Integer> attempts;
     private ExecutorService executor;
+    private CompletableFuture<Void> lastPush;
 
     protected AppStateHandler(SocketHandler socketHandler) {
         this.socketHandler = socketHandler;
-        this.attempts = new HashMap<>();
+        this.attempts = new ConcurrentHashMap<>();
+        this.lastPush = CompletableFuture.completedFuture(null);
     }
 
-    private ExecutorService getOrCreateAppService() {
+    private synchronized ExecutorService getOrCreateAppService() {
         if (executor == null || executor.isShutdown()) {
             executor = Executors.newSingleThreadExecutor();
         }
@@ -78,18 +82,12 @@ class AppStateHandler {
                 .collect(Collectors.toUnmodifiableSet());
     }
 
-    private CompletableFuture<Void> runPushTask(Supplier<CompletableFuture<?>> task) {
-        var executor = getOrCreateAppService();
-        var future = new CompletableFuture<Void>();
-        executor.execute(() -> {
-            try {
-                task.get().join();
-                future.complete(null);
-            } catch (Throwable throwable) {
-                future.completeExceptionally(throwable);
-            }
-        });
-        return future;
+    private synchronized CompletableFuture<Void> runPushTask(Supplier<CompletableFuture<?>> task) {
+        var result = lastPush.exceptionally(ignored -> null)
+                .thenComposeAsync(ignored -> task.get(), getOrCreateAppService())
+                .<Void>thenApply(ignored -> null);
+        this.lastPush = result;
+        return result;
     }
 
     private CompletableFuture<Void> sendPush(Jid jid, List<PatchRequest> patches, boolean readPatches) {
@@ -101,8 +99,7 @@ class AppStateHandler {
                 .map(request -> createPushRequestNode(request, mobile))
                 .toList();
         var syncAttributes = Attributes.of()
-                .put("data_namespace", 3, mobile)
-                .toMap();
+                .put("data_namespace", 3, mobile);
         var sync = Node.of("sync", syncAttributes, body);
         return socketHandler.sendQuery("set", "w:sync:app:state", sync)
                 .thenRunAsync(() -> onPush(jid, requests, readPatches));
@@ -177,8 +174,7 @@ class AppStateHandler {
                 .put("name", request.type())
                 .put("version", version, !mobile)
                 .put("return_snapshot", false, !mobile)
-                .put("order", request.type() != PatchType.CRITICAL_UNBLOCK_LOW ? "1" : "0", mobile)
-                .toMap();
+                .put("order", request.type() != PatchType.CRITICAL_UNBLOCK_LOW ? "1" : "0", mobile);
         return Node.of("collection", collectionAttributes,
                 Node.of("patch", PatchSyncSpec.encode(request.sync())));
     }
@@ -265,11 +261,11 @@ class AppStateHandler {
     }
 
     private CompletableFuture<Boolean> pullUninterruptedly(Jid jid, Set<PatchType> patchTypes) {
-        var tempStates = new HashMap<PatchType, CompanionHashState>();
+        var tempStates = new ConcurrentHashMap<PatchType, CompanionHashState>();
         var nodes = getPullNodes(jid, patchTypes, tempStates);
         return socketHandler.sendQuery("set", "w:sync:app:state", Node.of("sync", nodes))
-                .thenApplyAsync(this::parseSyncRequest)
-                .thenApplyAsync(records -> decodeSyncs(jid, tempStates, records))
+                .thenComposeAsync(this::parseSyncRequest)
+                .thenComposeAsync(records -> decodeSyncs(jid, tempStates, records))
                 .thenComposeAsync(remaining -> handlePullResult(jid, remaining))
                 .orTimeout(TIMEOUT, TimeUnit.SECONDS);
     }
@@ -292,48 +288,85 @@ class AppStateHandler {
                 .orElseGet(() -> new CompanionHashState(name));
     }
 
-    private Set<PatchType> decodeSyncs(Jid jid, Map<PatchType, CompanionHashState> tempStates, List<SnapshotSyncRecord> records) {
-        return records.stream()
-                .map(record -> {
-                    var chunk = decodeSync(jid, record, tempStates);
-                    chunk.records().forEach(this::processActions);
-                    return chunk;
-                })
-                .filter(PatchChunk::hasMore)
-                .map(PatchChunk::patchType)
-                .collect(Collectors.toUnmodifiableSet());
+    private CompletableFuture<Set<PatchType>> decodeSyncs(Jid jid, Map<PatchType, CompanionHashState> tempStates, List<SnapshotSyncRecord> records) {
+        var chunks = records.stream()
+                .map(record -> CompletableFuture.supplyAsync(() -> decodeSync(jid, record, tempStates.get(record.patchType()))))
+                .toList();
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .exceptionally(ignored -> null)
+                .thenApplyAsync(ignored -> applySyncs(jid, records, chunks), getOrCreateAppService());
+    }
+
+    private Set<PatchType> applySyncs(Jid jid, List<SnapshotSyncRecord> records, List<CompletableFuture<PatchChunk>> chunks) {
+        var remaining = new HashSet<PatchType>();
+        RuntimeException failure = null;
+        for (var index = 0; index < records.size(); index++) {
+            var patchType = records.get(index).patchType();
+            try {
+                var chunk = chunks.get(index).join();
+                applySync(jid, chunk);
+                if (chunk.hasMore()) {
+                    remaining.add(patchType);
+                }
+            } catch (CompletionException exception) {
+                socketHandler.keys().putState(jid, new CompanionHashState(patchType));
+                failure = addFailure(failure, exception);
+            } catch (RuntimeException exception) {
+                failure = addFailure(failure, exception);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return Collections.unmodifiableSet(remaining);
     }
 
-    private PatchChunk decodeSync(Jid jid, SnapshotSyncRecord record, Map<PatchType, CompanionHashState> tempStates) {
+    private RuntimeException addFailure(RuntimeException failure, RuntimeException exception) {
+        if (failure == null) {
+            return exception;
+        }
+
+        failure.addSuppressed(exception);
+        return failure;
+    }
+
+    private void applySync(Jid jid, PatchChunk chunk) {
+        chunk.records().forEach(this::processActions);
+        chunk.states().forEach(state -> socketHandler.keys().putState(jid, state));
+    }
+
+    private PatchChunk decodeSync(Jid jid, SnapshotSyncRecord record, CompanionHashState state) {
         try {
             var results = new ArrayList<ActionDataSync>();
+            var states = new ArrayList<CompanionHashState>();
+            var latestState = state;
             if (record.hasSnapshot()) {
-                var snapshot = decodeSnapshot(jid, record.patchType(), record.snapshot());
-                snapshot.ifPresent(decodedSnapshot -> {
-                    results.addAll(decodedSnapshot.records());
-                    tempStates.put(record.patchType(), decodedSnapshot.state());
-                    socketHandler.keys().putState(jid, decodedSnapshot.state());
-                });
+                var snapshot = decodeSnapshot(jid, record.patchType(), record.snapshot()).orElse(null);
+                if (snapshot != null) {
+                    results.addAll(snapshot.records());
+                    states.add(snapshot.state());
+                    latestState = snapshot.state();
+                }
             }
             if (record.hasPatches()) {
-                var decodedPatches = decodePatches(jid, record.patchType(), record.patches(), tempStates.get(record.patchType()));
+                var decodedPatches = decodePatches(jid, record.patchType(), record.patches(), latestState);
                 results.addAll(decodedPatches.records());
-                socketHandler.keys().putState(jid, decodedPatches.state());
+                states.add(decodedPatches.state());
             }
-            return new PatchChunk(record.patchType(), results, record.hasMore());
+            return new PatchChunk(record.patchType(), results, states, record.hasMore());
         } catch (Throwable throwable) {
-            var hashState = new CompanionHashState(record.patchType());
-            socketHandler.keys().putState(jid, hashState);
-            attempts.put(record.patchType(), attempts.getOrDefault(record.patchType(), 0) + 1);
-            if (attempts.get(record.patchType()) >= PULL_ATTEMPTS) {
+            var attempt = attempts.merge(record.patchType(), 1, Integer::sum);
+            if (attempt >= PULL_ATTEMPTS) {
                 throw new RuntimeException("Cannot parse patch(%s tries)".formatted(PULL_ATTEMPTS), throwable);
             }
-            return decodeSync(jid, record, tempStates);
+            return decodeSync(jid, record, state);
         }
     }
 
-    private List<SnapshotSyncRecord> parseSyncRequest(Node node) {
-        return Stream.ofNullable(node)
+    private CompletableFuture<List<SnapshotSyncRecord>> parseSyncRequest(Node node) {
+        var records = Stream.ofNullable(node)
                 .map(sync -> sync.findNodes("sync"))
                 .flatMap(Collection::stream)
                 .map(sync -> sync.findNodes("collection"))
@@ -341,9 +374,11 @@ class AppStateHandler {
                 .map(this::parseSync)
                 .flatMap(Optional::stream)
                 .toList();
+        return CompletableFuture.allOf(records.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> records.stream().map(CompletableFuture::join).toList());
     }
 
-    private Optional<SnapshotSyncRecord> parseSync(Node sync) {
+    private Optional<CompletableFuture<SnapshotSyncRecord>> parseSync(Node sync) {
         var name = PatchType.of(sync.attributes().getString("name"));
         var type = sync.attributes().getString("type");
         if (Objects.equals(type, "error")) {
@@ -351,8 +386,8 @@ class AppStateHandler {
         }
         var more = sync.attributes().getBoolean("has_more_patches");
         var snapshotSync = sync.findNode("snapshot")
-                .flatMap(this::decodeSnapshot)
-                .orElse(null);
+                .map(this::decodeSnapshot)
+                .orElseGet(() -> CompletableFuture.completedFuture(null));
         var versionCode = sync.attributes().getInt("version");
         var patches = sync.findNode("patches")
                 .orElse(sync)
@@ -361,18 +396,21 @@ class AppStateHandler {
                 .map(patch -> decodePatch(patch, versionCode))
                 .flatMap(Optional::stream)
                 .toList();
-        return Optional.of(new SnapshotSyncRecord(name, snapshotSync, patches, more));
+        var patchesSync = CompletableFuture.allOf(patches.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> patches.stream().map(CompletableFuture::join).toList());
+        var result = snapshotSync.thenCombine(patchesSync, (snapshot, decodedPatches) -> new SnapshotSyncRecord(name, snapshot, decodedPatches, more));
+        return Optional.of(result);
     }
 
-    private Optional<SnapshotSync> decodeSnapshot(Node snapshot) {
-        return snapshot == null ? Optional.empty() : snapshot.contentAsBytes()
+    private CompletableFuture<SnapshotSync> decodeSnapshot(Node snapshot) {
+        return snapshot.contentAsBytes()
                 .map(ExternalBlobReferenceSpec::decode)
-                .map(Medias::downloadAsync)
-                .flatMap(CompletableFuture::join)
-                .map(SnapshotSyncSpec::decode);
+                .map(reference -> Medias.downloadAsync(reference)
+                        .thenApply(result -> result.map(SnapshotSyncSpec::decode).orElse(null)))
+                .orElseGet(() -> CompletableFuture.completedFuture(null));
     }
 
-    private Optional<PatchSync> decodePatch(Node patch, long versionCode) {
+    private Optional<CompletableFuture<PatchSync>> decodePatch(Node patch, long versionCode) {
         if (!patch.hasContent()) {
             return Optional.empty();
         }
@@ -381,7 +419,15 @@ class AppStateHandler {
             var version = new VersionSync(versionCode + 1);
             patchSync.setVersion(version);
         }
-        return Optional.of(patchSync);
+        if (!patchSync.hasExternalMutations()) {
+            return Optional.of(CompletableFuture.completedFuture(patchSync));
+        }
+
+        var result = Medias.downloadAsync(patchSync.externalMutations()).thenApply(blob -> {
+            blob.ifPresent(data -> handleExternalMutation(patchSync, data));
+            return patchSync;
+        });
+        return Optional.of(result);
     }
 
     private void processActions(ActionDataSync mutation) {
@@ -445,6 +491,7 @@ class AppStateHandler {
             case DeleteMessageForMeAction ignored -> {
                 targetChatMessage.ifPresent(message -> {
                     targetChat.ifPresent(chat -> chat.removeMessage(message));
+                    socketHandler.store().removeIndexedMessage(message.chatJid(), message.id());
                     socketHandler.onMessageDeleted(message, false);
                 });
                 targetNewsletterMessage.ifPresent(message -> {
@@ -476,7 +523,10 @@ class AppStateHandler {
                 var format = timeFormatAction.twentyFourHourFormatEnabled();
                 socketHandler.store().setTwentyFourHourFormat(format);
             }
-            case DeleteChatAction deleteChatAction -> targetChat.ifPresent(Chat::removeMessages);
+            case DeleteChatAction deleteChatAction -> targetChat.ifPresent(chat -> {
+                socketHandler.store().removeIndexedMessages(chat);
+                chat.removeMessages();
+            });
             default -> {}
         }
         socketHandler.onAction(action, messageIndex);
@@ -500,6 +550,7 @@ class AppStateHandler {
         }
 
         if (clearChatAction.messageRange().isEmpty()) {
+            socketHandler.store().removeIndexedMessages(targetChat);
             targetChat.removeMessages();
             return;
         }
@@ -510,7 +561,10 @@ class AppStateHandler {
                 .flatMap(Collection::stream)
                 .map(SyncActionMessage::key)
                 .filter(Objects::nonNull)
-                .forEach(key -> targetChat.removeMessage(entry -> Objects.equals(entry.id(), key.id())));
+                .forEach(key -> {
+                    targetChat.removeMessage(entry -> Objects.equals(entry.id(), key.id()));
+                    socketHandler.store().removeIndexedMessage(targetChat.jid(), key.id());
+                });
     }
 
     private void updateName(Contact contact, Chat chat, ContactAction contactAction) {
@@ -530,12 +584,6 @@ class AppStateHandler {
     }
 
     private MutationsRecord decodePatch(Jid jid, PatchType patchType, CompanionHashState newState, PatchSync patch) {
-        if (patch.hasExternalMutations()) {
-            Medias.downloadAsync(patch.externalMutations())
-                    .join()
-                    .ifPresent(blob -> handleExternalMutation(patch, blob));
-        }
-
         newState.setVersion(patch.encodedVersion());
         var syncMac = calculatePatchMac(jid, patch, patchType);
         Validate.isTrue(!socketHandler.store().checkPatchMacs() || syncMac.isEmpty() || Arrays.equals(syncMac.get(), patch.patchMac()), "sync_mac", HmacValidationException.class);
@@ -647,8 +695,9 @@ class AppStateHandler {
         return Hmac.calculateSha256(total, key);
     }
 
-    protected void dispose() {
+    protected synchronized void dispose() {
         attempts.clear();
+        this.lastPush = CompletableFuture.completedFuture(null);
         if (executor != null && !executor.isShutdown()) {
             executor.shutdownNow();
         }
@@ -673,7 +722,7 @@ class AppStateHandler {
 
     }
 
-    private record PatchChunk(PatchType patchType, List<ActionDataSync> records, boolean hasMore) {
+    private record PatchChunk(PatchType patchType, List<ActionDataSync> records, List<CompanionHashState> states, boolean hasMore) {
 
     }
 
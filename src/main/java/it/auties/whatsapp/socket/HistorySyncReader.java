@@ -0,0 +1,178 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.chat.ChatSpec;
+import it.auties.whatsapp.model.sync.HistorySync;
+import it.auties.whatsapp.model.sync.HistorySync.Type;
+import it.auties.whatsapp.model.sync.HistorySyncSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * An incremental reader for history syncs.
+ * Conversations are decoded and emitted one at a time as they are read from the stream, while every other field is buffered and decoded at the end.
+ * This way the memory needed to process a sync is bounded by its largest conversation instead of by the whole sync.
+ */
+final class HistorySyncReader {
+    private static final int SYNC_TYPE_INDEX = 1;
+    private static final int CONVERSATIONS_INDEX = 2;
+    private static final int VAR_INT = 0;
+    private static final int FIXED_64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED_32 = 5;
+
+    private final InputStream input;
+    private final BiConsumer<Type, Chat> onChat;
+    private final ByteArrayOutputStream remaining;
+    private final List<Chat> pendingChats;
+    private Type syncType;
+
+    private HistorySyncReader(InputStream input, BiConsumer<Type, Chat> onChat) {
+        this.input = input;
+        this.onChat = onChat;
+        this.remaining = new ByteArrayOutputStream();
+        this.pendingChats = new ArrayList<>();
+    }
+
+    /**
+     * Reads a history sync from a decompressed stream
+     *
+     * @param input  the stream to read
+     * @param onChat the consumer that is invoked for every conversation along with the type of the sync
+     * @return the history sync, without conversations
+     * @throws IOException if the stream cannot be read or is malformed
+     */
+    static HistorySync read(InputStream input, BiConsumer<Type, Chat> onChat) throws IOException {
+        return new HistorySyncReader(input, onChat).read();
+    }
+
+    private HistorySync read() throws IOException {
+        long tag;
+        while ((tag = readVarInt(true)) != -1) {
+            var index = (int) (tag >>> 3);
+            var wireType = (int) (tag & 7);
+            switch (index) {
+                case SYNC_TYPE_INDEX -> readSyncType(tag, wireType);
+                case CONVERSATIONS_INDEX -> readConversation(tag, wireType);
+                default -> copyField(tag, wireType);
+            }
+        }
+
+        var history = HistorySyncSpec.decode(remaining.toByteArray());
+        if (syncType == null) {
+            syncType = history.syncType();
+            flushPendingChats();
+        }
+
+        return history;
+    }
+
+    private void readSyncType(long tag, int wireType) throws IOException {
+        if (wireType != VAR_INT) {
+            copyField(tag, wireType);
+            return;
+        }
+
+        var value = readVarInt(false);
+        writeVarInt(tag);
+        writeVarInt(value);
+        syncType = Arrays.stream(Type.values())
+                .filter(entry -> entry.index() == value)
+                .findFirst()
+                .orElse(null);
+        flushPendingChats();
+    }
+
+    private void readConversation(long tag, int wireType) throws IOException {
+        if (wireType != LENGTH_DELIMITED) {
+            copyField(tag, wireType);
+            return;
+        }
+
+        var chat = ChatSpec.decode(readBytes(readLength()));
+        if (syncType == null) {
+            pendingChats.add(chat);
+            return;
+        }
+
+        onChat.accept(syncType, chat);
+    }
+
+    private void flushPendingChats() {
+        if (syncType == null) {
+            return;
+        }
+
+        pendingChats.forEach(chat -> onChat.accept(syncType, chat));
+        pendingChats.clear();
+    }
+
+    private void copyField(long tag, int wireType) throws IOException {
+        writeVarInt(tag);
+        switch (wireType) {
+            case VAR_INT -> writeVarInt(readVarInt(false));
+            case FIXED_64 -> remaining.write(readBytes(Long.BYTES));
+            case FIXED_32 -> remaining.write(readBytes(Integer.BYTES));
+            case LENGTH_DELIMITED -> {
+                var length = readLength();
+                writeVarInt(length);
+                remaining.write(readBytes(length));
+            }
+            default -> throw new IOException("Unsupported wire type: " + wireType);
+        }
+    }
+
+    private int readLength() throws IOException {
+        var length = readVarInt(false);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid field length: " + length);
+        }
+
+        return (int) length;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        var result = input.readNBytes(length);
+        if (result.length != length) {
+            throw new EOFException("Truncated history sync");
+        }
+
+        return result;
+    }
+
+    private long readVarInt(boolean allowEnd) throws IOException {
+        var result = 0L;
+        for (var shift = 0; shift < 64; shift += 7) {
+            var read = input.read();
+            if (read == -1) {
+                if (allowEnd && shift == 0) {
+                    return -1;
+                }
+
+                throw new EOFException("Truncated history sync");
+            }
+
+            result |= (long) (read & 0x7F) << shift;
+            if ((read & 0x80) == 0) {
+                return result;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    private void writeVarInt(long value) {
+        while ((value & ~0x7FL) != 0) {
+            remaining.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        remaining.write((int) value);
+    }
+}
@@ -0,0 +1,194 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.api.InboundPipelineStats;
+import it.auties.whatsapp.api.InboundPipelineStats.FrameStage;
+import it.auties.whatsapp.api.InboundPipelineStats.Stage;
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.model.node.Node;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static it.auties.whatsapp.api.ErrorHandler.Location.MESSAGE;
+
+/**
+ * The staged pipeline used to process incoming nodes.
+ * Frames are deciphered and decoded on the socket thread, then messages are sharded by chat onto a fixed number of lanes.
+ * Each lane is backed by a single thread, so messages belonging to the same chat are always processed in the order they were received,
+ * while messages belonging to different chats can be decrypted concurrently.
+ */
+final class InboundPipeline {
+    private static final String LANE_STAGE = "lane-%s";
+    private static final String LANE_THREAD = "cobalt-inbound-lane-%s";
+    private static final Duration LANE_KEEP_ALIVE = Duration.ofSeconds(60);
+
+    private final SocketHandler socketHandler;
+    private final Metrics frames;
+    private final Lane[] lanes;
+
+    InboundPipeline(SocketHandler socketHandler) {
+        this(socketHandler, Runtime.getRuntime().availableProcessors());
+    }
+
+    InboundPipeline(SocketHandler socketHandler, int lanes) {
+        this.socketHandler = socketHandler;
+        this.frames = new Metrics();
+        this.lanes = new Lane[Math.max(lanes, 1)];
+        for (var index = 0; index < this.lanes.length; index++) {
+            this.lanes[index] = new Lane(index);
+        }
+    }
+
+    /**
+     * Records the time spent on the socket thread to decipher and decode a frame
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the frame was received
+     */
+    void onFrameProcessed(long startNanos) {
+        frames.record(0, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Schedules a message node on the lane assigned to its chat
+     *
+     * @param node the non-null message node
+     */
+    void submitMessage(Node node) {
+        var lane = lanes[Math.floorMod(getChatKey(node).hashCode(), lanes.length)];
+        var enqueuedNanos = System.nanoTime();
+        lane.executor().execute(() -> {
+            var startNanos = System.nanoTime();
+            try {
+                socketHandler.decodeMessage(node, null, true);
+            } catch (Throwable throwable) {
+                socketHandler.handleFailure(MESSAGE, throwable);
+            } finally {
+                lane.metrics().record(startNanos - enqueuedNanos, System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    // Messages sent by a companion device have the chat in the recipient attribute, otherwise the chat is the sender
+    // The device is dropped so that every device of a contact is assigned to the same lane
+    private String getChatKey(Node node) {
+        var attributes = node.attributes();
+        return attributes.getOptionalJid("recipient")
+                .or(() -> attributes.getOptionalJid("from"))
+                .map(Jid::withoutDevice)
+                .map(Jid::toString)
+                .orElse("");
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the pipeline
+     *
+     * @return a non-null snapshot
+     */
+    InboundPipelineStats stats() {
+        var laneStats = new Stage[lanes.length];
+        for (var index = 0; index < lanes.length; index++) {
+            laneStats[index] = lanes[index].metrics().toStage(LANE_STAGE.formatted(index), lanes[index].queueDepth());
+        }
+
+        return new InboundPipelineStats(frames.toFrameStage(), Arrays.asList(laneStats));
+    }
+
+    /**
+     * Stops the lanes, the messages that were already scheduled are still processed
+     */
+    void dispose() {
+        for (var lane : lanes) {
+            lane.dispose();
+        }
+    }
+
+    private static final class Lane {
+        private final Metrics metrics;
+        private final ThreadFactory threadFactory;
+        private ThreadPoolExecutor executor;
+
+        private Lane(int index) {
+            this.metrics = new Metrics();
+            this.threadFactory = Thread.ofPlatform()
+                    .name(LANE_THREAD.formatted(index))
+                    .daemon(true)
+                    .factory();
+        }
+
+        // Idle lanes release their thread, so a pipeline with many lanes doesn't keep them alive between bursts
+        private synchronized ThreadPoolExecutor executor() {
+            if (executor == null || executor.isShutdown()) {
+                executor = new ThreadPoolExecutor(1, 1, LANE_KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+                executor.allowCoreThreadTimeOut(true);
+            }
+
+            return executor;
+        }
+
+        private synchronized int queueDepth() {
+            return executor == null ? 0 : executor.getQueue().size();
+        }
+
+        private Metrics metrics() {
+            return metrics;
+        }
+
+        private synchronized void dispose() {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static final class Metrics {
+        private final LongAdder processed;
+        private final LongAdder waitNanos;
+        private final LongAdder latencyNanos;
+        private final AtomicLong maxWaitNanos;
+        private final AtomicLong maxLatencyNanos;
+
+        private Metrics() {
+            this.processed = new LongAdder();
+            this.waitNanos = new LongAdder();
+            this.latencyNanos = new LongAdder();
+            this.maxWaitNanos = new AtomicLong();
+            this.maxLatencyNanos = new AtomicLong();
+        }
+
+        private void record(long wait, long latency) {
+            processed.increment();
+            waitNanos.add(wait);
+            latencyNanos.add(latency);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+
+        private FrameStage toFrameStage() {
+            var count = processed.sum();
+            return new FrameStage(
+                    count,
+                    Duration.ofNanos(count == 0 ? 0 : latencyNanos.sum() / count),
+                    Duration.ofNanos(maxLatencyNanos.get())
+            );
+        }
+
+        private Stage toStage(String name, int queueDepth) {
+            var count = processed.sum();
+            return new Stage(
+                    name,
+                    queueDepth,
+                    count,
+                    Duration.ofNanos(count == 0 ? 0 : waitNanos.sum() / count),
+                    Duration.ofNanos(maxWaitNanos.get()),
+                    Duration.ofNanos(count == 0 ? 0 : latencyNanos.sum() / count),
+                    Duration.ofNanos(maxLatencyNanos.get())
+            );
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.message.standard.TextMessage.PreviewType;
+import it.auties.whatsapp.util.Clock;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the previews of the links sent in text messages by their normalized url,
+ * so that sending the same link to many chats only fetches the page and its thumbnail once.
+ * Lookups of the same link that are running at the same time share the same request, a failed lookup is never cached,
+ * and entries expire after {@link #MAX_AGE} so that pages that changed are eventually fetched again.
+ * The least recently used entries are evicted once {@link #MAX_ENTRIES} is reached.
+ */
+final class LinkPreviewCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final Duration MAX_AGE = Duration.ofHours(1);
+    private static final Pattern URL_PATTERN = Pattern.compile("(?i)(?:https?://|www\\.)[^\\s<>\"]+");
+    private static final String TRAILING_PUNCTUATION = ".,;:!?'\")]}";
+
+    private final Map<String, Entry> entries;
+
+    LinkPreviewCache() {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns the first link in a text that has an explicit scheme or starts with www
+     *
+     * @param text the text to search
+     * @return a non-null optional
+     */
+    static Optional<String> findUrl(String text) {
+        if (text == null) {
+            return Optional.empty();
+        }
+
+        var matcher = URL_PATTERN.matcher(text);
+        if (!matcher.find()) {
+            return Optional.empty();
+        }
+
+        var url = matcher.group();
+        var end = url.length();
+        while (end > 0 && TRAILING_PUNCTUATION.indexOf(url.charAt(end - 1)) != -1) {
+            end--;
+        }
+
+        return end == 0 ? Optional.empty() : Optional.of(url.substring(0, end));
+    }
+
+    /**
+     * Returns the preview of a link, fetching it only if it's not cached
+     *
+     * @param url    the link, as it appears in the text
+     * @param loader the function that fetches the preview of the link
+     * @return a future that can be completed or cancelled without affecting other callers
+     */
+    CompletableFuture<Optional<Preview>> get(String url, Function<String, CompletableFuture<Optional<Preview>>> loader) {
+        var key = normalize(url);
+        var now = Clock.nowSeconds();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                return entry.preview().copy();
+            }
+
+            entry = new Entry(new CompletableFuture<>(), now);
+            entries.put(key, entry);
+        }
+
+        var newEntry = entry;
+        try {
+            loader.apply(url).whenComplete((result, error) -> {
+                if (error != null) {
+                    remove(key, newEntry);
+                    newEntry.preview().completeExceptionally(error);
+                    return;
+                }
+
+                newEntry.preview().complete(result);
+            });
+        } catch (Throwable throwable) {
+            remove(key, newEntry);
+            newEntry.preview().completeExceptionally(throwable);
+        }
+
+        return newEntry.preview().copy();
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private static String normalize(String url) {
+        try {
+            var uri = URI.create(url.regionMatches(true, 0, "www.", 0, 4) ? "https://" + url : url);
+            var scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            var host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+            var port = uri.getPort() == -1 ? "" : ":" + uri.getPort();
+            var path = uri.getRawPath() == null || uri.getRawPath().equals("/") ? "" : uri.getRawPath();
+            var query = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+            return scheme + "://" + host + port + path + query;
+        } catch (IllegalArgumentException exception) {
+            return url;
+        }
+    }
+
+    /**
+     * The preview of a link, which doesn't depend on how the link was written in the text that referenced it
+     *
+     * @param uri             the resolved link
+     * @param canonicalUrl    the canonical url of the page, or of its video if it has one
+     * @param title           the title of the page
+     * @param description     the description of the page
+     * @param thumbnailWidth  the width of the thumbnail, if any
+     * @param thumbnailHeight the height of the thumbnail, if any
+     * @param thumbnail       the thumbnail, if any
+     * @param previewType     the type of the preview
+     */
+    record Preview(String uri, String canonicalUrl, String title, String description,
+                   Integer thumbnailWidth, Integer thumbnailHeight, byte[] thumbnail, PreviewType previewType) {
+
+    }
+
+    private record Entry(CompletableFuture<Optional<Preview>> preview, long timestampSeconds) {
+        private boolean isExpired(long nowSeconds) {
+            return nowSeconds - timestampSeconds >= MAX_AGE.toSeconds();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.listener.Listener;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The events that are dispatched to listeners.
+ * {@link Listener} provides a no-op default for every event, so a listener only handles the events whose methods it overrides, with or without the {@link it.auties.whatsapp.api.Whatsapp} parameter.
+ * The methods of each event are resolved when this class is initialized, which fails if one is missing, and the events handled by a listener class are computed once.
+ */
+enum ListenerEvent {
+    SOCKET_EVENT("onSocketEvent"),
+    NODE_RECEIVED("onNodeReceived"),
+    NODE_SENT("onNodeSent"),
+    REGISTRATION_CODE("onRegistrationCode"),
+    METADATA("onMetadata"),
+    MESSAGE_STATUS("onMessageStatus"),
+    CONTACT_PRESENCE("onContactPresence"),
+    NEW_MESSAGE("onNewMessage"),
+    NEW_STATUS("onNewStatus"),
+    CHAT_MESSAGES_SYNC("onChatMessagesSync"),
+    FEATURES("onFeatures"),
+    SETTING("onSetting"),
+    MESSAGE_DELETED("onMessageDeleted"),
+    ACTION("onAction"),
+    LOGGED_IN("onLoggedIn"),
+    CHATS("onChats"),
+    NEWSLETTERS("onNewsletters"),
+    STATUS("onStatus"),
+    CONTACTS("onContacts"),
+    HISTORY_SYNC_PROGRESS("onHistorySyncProgress"),
+    MESSAGE_REPLY("onMessageReply"),
+    GROUP_PICTURE_CHANGED("onGroupPictureChanged"),
+    PROFILE_PICTURE_CHANGED("onProfilePictureChanged"),
+    ABOUT_CHANGED("onAboutChanged"),
+    NAME_CHANGED("onNameChanged"),
+    LOCALE_CHANGED("onLocaleChanged"),
+    CONTACT_BLOCKED("onContactBlocked"),
+    NEW_CONTACT("onNewContact"),
+    LINKED_DEVICES("onLinkedDevices"),
+    CALL("onCall"),
+    PRIVACY_SETTING_CHANGED("onPrivacySettingChanged");
+
+    private static final ClassValue<Set<ListenerEvent>> HANDLED_EVENTS = new ClassValue<>() {
+        @Override
+        protected Set<ListenerEvent> computeValue(Class<?> type) {
+            var result = EnumSet.noneOf(ListenerEvent.class);
+            for (var event : values()) {
+                if (event.isOverriddenBy(type)) {
+                    result.add(event);
+                }
+            }
+
+            return Collections.unmodifiableSet(result);
+        }
+    };
+
+    private final Method[] methods;
+
+    ListenerEvent(String methodName) {
+        this.methods = findMethods(methodName);
+    }
+
+    private static Method[] findMethods(String methodName) {
+        var methods = Arrays.stream(Listener.class.getMethods())
+                .filter(method -> method.getDeclaringClass() == Listener.class && method.getName().equals(methodName))
+                .toArray(Method[]::new);
+        if (methods.length == 0) {
+            throw new IllegalStateException("Missing listener method: " + methodName);
+        }
+
+        return methods;
+    }
+
+    private boolean isOverriddenBy(Class<?> type) {
+        for (var method : methods) {
+            try {
+                if (type.getMethod(method.getName(), method.getParameterTypes()).getDeclaringClass() != Listener.class) {
+                    return true;
+                }
+            } catch (NoSuchMethodException ignored) {
+
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether a listener handles this event
+     *
+     * @param listener the non-null listener
+     * @return a boolean
+     */
+    boolean isHandledBy(Listener listener) {
+        return HANDLED_EVENTS.get(listener.getClass()).contains(this);
+    }
+}
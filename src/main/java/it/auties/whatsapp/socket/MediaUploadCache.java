@@ -0,0 +1,117 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.crypto.Sha256;
+import it.auties.whatsapp.model.media.AttachmentType;
+import it.auties.whatsapp.model.media.MediaFile;
+import it.auties.whatsapp.util.Clock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Caches the result of media uploads by the SHA-256 of the plaintext and the attachment type,
+ * so that sending the same file to many chats only uploads it once.
+ * Uploads of the same file that are running at the same time share the same request, a failed upload is never cached,
+ * and entries expire after {@link #MAX_AGE} so that a direct path that the server may have dropped isn't reused.
+ * The least recently used entries are evicted once {@link #MAX_ENTRIES} is reached.
+ */
+final class MediaUploadCache {
+    private static final int MAX_ENTRIES = 1024;
+    private static final Duration MAX_AGE = Duration.ofDays(7);
+
+    private final Map<Key, Entry> entries;
+
+    MediaUploadCache() {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns the upload of a file, uploading it only if it's not cached
+     *
+     * @param media    the plaintext of the file
+     * @param type     the attachment type of the file
+     * @param uploader the function that uploads the file
+     * @return a future
+     */
+    CompletableFuture<MediaFile> upload(byte[] media, AttachmentType type, Supplier<CompletableFuture<MediaFile>> uploader) {
+        return upload(new Key(HexFormat.of().formatHex(Sha256.calculate(media)), type), uploader);
+    }
+
+    /**
+     * Returns the upload of a file, uploading it only if it's not cached
+     *
+     * @param media    the file that holds the plaintext
+     * @param type     the attachment type of the file
+     * @param uploader the function that uploads the file
+     * @return a future
+     */
+    CompletableFuture<MediaFile> upload(Path media, AttachmentType type, Supplier<CompletableFuture<MediaFile>> uploader) {
+        try (var input = Files.newInputStream(media)) {
+            return upload(new Key(HexFormat.of().formatHex(Sha256.calculate(input)), type), uploader);
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(new UncheckedIOException("Cannot read media", exception));
+        }
+    }
+
+    private CompletableFuture<MediaFile> upload(Key key, Supplier<CompletableFuture<MediaFile>> uploader) {
+        var now = Clock.nowSeconds();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                return entry.upload().copy();
+            }
+
+            entry = new Entry(new CompletableFuture<>(), now);
+            entries.put(key, entry);
+        }
+
+        var newEntry = entry;
+        try {
+            uploader.get().whenComplete((result, error) -> {
+                if (error != null) {
+                    remove(key, newEntry);
+                    newEntry.upload().completeExceptionally(error);
+                    return;
+                }
+
+                // The encrypted file isn't needed to send the media again, so it's not kept in memory
+                newEntry.upload().complete(new MediaFile(null, result.fileSha256(), result.fileEncSha256(), result.mediaKey(), result.fileLength(), result.directPath(), result.url(), result.handle(), result.timestamp()));
+            });
+        } catch (Throwable throwable) {
+            remove(key, newEntry);
+            newEntry.upload().completeExceptionally(throwable);
+        }
+
+        return newEntry.upload().copy();
+    }
+
+    private void remove(Key key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private record Key(String sha256, AttachmentType type) {
+
+    }
+
+    private record Entry(CompletableFuture<MediaFile> upload, long timestampSeconds) {
+        private boolean isExpired(long nowSeconds) {
+            return nowSeconds - timestampSeconds >= MAX_AGE.toSeconds();
+        }
+    }
+}
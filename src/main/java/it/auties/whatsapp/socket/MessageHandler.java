@@ -43,22 +43,32 @@ import it.auties.whatsapp.model.signal.sender.SenderKeyName;
 import it.auties.whatsapp.model.sync.HistorySync;
 import it.auties.whatsapp.model.sync.HistorySync.Type;
 import it.auties.whatsapp.model.sync.HistorySyncNotification;
-import it.auties.whatsapp.model.sync.HistorySyncSpec;
 import it.auties.whatsapp.model.sync.PushName;
 import it.auties.whatsapp.util.*;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.InflaterInputStream;
 
 import static it.auties.whatsapp.api.ErrorHandler.Location.*;
 import static it.auties.whatsapp.util.Specification.Signal.*;
@@ -73,7 +83,11 @@ class MessageHandler {
     private final Logger logger;
     private final EnumSet<Type> historySyncTypes;
     private final ReentrantLock lock;
+    private final MediaUploadCache mediaUploadCache;
+    private final LinkPreviewCache linkPreviewCache;
+    private final PollCache pollCache;
     private CompletableFuture<?> historySyncTask;
+    private ExecutorService historyService;
 
     protected MessageHandler(SocketHandler socketHandler) {
         this.socketHandler = socketHandler;
@@ -83,6 +97,17 @@ class MessageHandler {
         this.logger = System.getLogger("MessageHandler");
         this.historySyncTypes = EnumSet.noneOf(Type.class);
         this.lock = new ReentrantLock(true);
+        this.mediaUploadCache = new MediaUploadCache();
+        this.linkPreviewCache = new LinkPreviewCache();
+        this.pollCache = new PollCache();
+    }
+
+    private synchronized ExecutorService getOrCreateHistoryService() {
+        if (historyService == null || historyService.isShutdown()) {
+            historyService = Executors.newSingleThreadExecutor();
+        }
+
+        return historyService;
     }
 
     protected CompletableFuture<Void> encode(MessageSendRequest request) {
@@ -169,25 +194,38 @@ class MessageHandler {
             return CompletableFuture.completedFuture(null);
         }
 
-        try {
-            return LinkPreview.createPreviewAsync(textMessage.text())
-                    .thenComposeAsync(result -> attributeTextMessage(textMessage, result.orElse(null)));
-        }catch (NoClassDefFoundError error) { // Optional dependency
-            return CompletableFuture.completedFuture(null);
-        }
+        var timeout = socketHandler.store().textPreviewTimeout();
+        return findTextPreview(textMessage.text())
+                .completeOnTimeout(Optional.empty(), timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(ignored -> Optional.empty())
+                .thenAccept(preview -> preview.ifPresent(entry -> attributeTextMessage(textMessage, entry)));
     }
 
-    private CompletableFuture<Void> attributeTextMessage(TextMessage textMessage, LinkPreviewMatch match) {
-        if (match == null) {
-            return CompletableFuture.completedFuture(null);
+    // The cached preview is shared by every message that links the same page, so the matched text is always the one of this message
+    private CompletableFuture<Optional<TextPreview>> findTextPreview(String text) {
+        var url = LinkPreviewCache.findUrl(text);
+        if (url.isPresent()) {
+            return linkPreviewCache.get(url.get(), this::fetchTextPreview)
+                    .thenApply(result -> result.map(preview -> new TextPreview(url.get(), preview)));
         }
 
-        var uri = match.result().uri().toString();
-        if (socketHandler.store().textPreviewSetting() == TextPreviewSetting.ENABLED_WITH_INFERENCE
-                && !Objects.equals(match.text(), uri)) {
-            textMessage.setText(textMessage.text().replace(match.text(), uri));
+        try {
+            return LinkPreview.createPreviewAsync(text)
+                    .thenComposeAsync(result -> result.map(match -> createTextPreview(match).thenApply(preview -> preview.map(entry -> new TextPreview(match.text(), entry))))
+                            .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())));
+        } catch (NoClassDefFoundError error) { // Optional dependency
+            return CompletableFuture.completedFuture(Optional.empty());
         }
+    }
 
+    private CompletableFuture<Optional<LinkPreviewCache.Preview>> fetchTextPreview(String text) {
+        return LinkPreview.createPreviewAsync(text)
+                .thenComposeAsync(result -> result.map(this::createTextPreview)
+                        .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())));
+    }
+
+    private CompletableFuture<Optional<LinkPreviewCache.Preview>> createTextPreview(LinkPreviewMatch match) {
+        var uri = match.result().uri().toString();
         var imageThumbnail = match.result()
                 .images()
                 .stream()
@@ -196,15 +234,39 @@ class MessageHandler {
                 .videos()
                 .stream()
                 .reduce(this::compareDimensions);
-        textMessage.setMatchedText(uri);
-        textMessage.setCanonicalUrl(videoUri.map(LinkPreviewMedia::uri).orElse(match.result().uri()).toString());
-        textMessage.setThumbnailWidth(imageThumbnail.map(LinkPreviewMedia::width).orElse(null));
-        textMessage.setThumbnailHeight(imageThumbnail.map(LinkPreviewMedia::height).orElse(null));
-        textMessage.setDescription(match.result().siteDescription());
-        textMessage.setTitle(match.result().title());
-        textMessage.setPreviewType(videoUri.isPresent() ? TextMessage.PreviewType.VIDEO : TextMessage.PreviewType.NONE);
-        return imageThumbnail.map(data -> Medias.downloadAsync(data.uri()).thenAccept(textMessage::setThumbnail))
+        var canonicalUrl = videoUri.map(LinkPreviewMedia::uri).orElse(match.result().uri()).toString();
+        var previewType = videoUri.isPresent() ? TextMessage.PreviewType.VIDEO : TextMessage.PreviewType.NONE;
+        var thumbnail = imageThumbnail.map(data -> Medias.downloadAsync(data.uri()))
                 .orElseGet(() -> CompletableFuture.completedFuture(null));
+        return thumbnail.thenApply(result -> Optional.of(new LinkPreviewCache.Preview(
+                uri,
+                canonicalUrl,
+                match.result().title(),
+                match.result().siteDescription(),
+                imageThumbnail.map(LinkPreviewMedia::width).orElse(null),
+                imageThumbnail.map(LinkPreviewMedia::height).orElse(null),
+                result,
+                previewType
+        )));
+    }
+
+    private void attributeTextMessage(TextMessage textMessage, TextPreview textPreview) {
+        var preview = textPreview.preview();
+        if (socketHandler.store().textPreviewSetting() == TextPreviewSetting.ENABLED_WITH_INFERENCE
+                && !Objects.equals(textPreview.matchedText(), preview.uri())) {
+            textMessage.setText(textMessage.text().replace(textPreview.matchedText(), preview.uri()));
+        }
+
+        textMessage.setMatchedText(preview.uri());
+        textMessage.setCanonicalUrl(preview.canonicalUrl());
+        textMessage.setThumbnailWidth(preview.thumbnailWidth());
+        textMessage.setThumbnailHeight(preview.thumbnailHeight());
+        textMessage.setDescription(preview.description());
+        textMessage.setTitle(preview.title());
+        textMessage.setPreviewType(preview.previewType());
+        if (preview.thumbnail() != null) {
+            textMessage.setThumbnail(preview.thumbnail());
+        }
     }
 
     private LinkPreviewMedia compareDimensions(LinkPreviewMedia first, LinkPreviewMedia second) {
@@ -212,14 +274,23 @@ class MessageHandler {
     }
 
     private CompletableFuture<Void> attributeMediaMessage(Jid chatJid, ExtendedMediaMessage<?> mediaMessage) {
-        var media = mediaMessage.decodedMedia()
-                .orElseThrow(() -> new IllegalArgumentException("Missing media to upload"));
         var attachmentType = getAttachmentType(chatJid, mediaMessage);
-        var mediaConnection = socketHandler.store().mediaConnection();
-        return Medias.upload(media, attachmentType, mediaConnection)
+        return uploadMedia(mediaMessage, attachmentType)
                 .thenAccept(upload -> attributeMediaMessage(mediaMessage, upload));
     }
 
+    private CompletableFuture<MediaFile> uploadMedia(ExtendedMediaMessage<?> mediaMessage, AttachmentType attachmentType) {
+        var mediaFile = mediaMessage.decodedMediaFile();
+        if (mediaFile.isPresent()) {
+            var file = mediaFile.get();
+            return mediaUploadCache.upload(file, attachmentType, () -> Medias.upload(file, attachmentType, socketHandler.store().mediaConnection()));
+        }
+
+        var media = mediaMessage.decodedMedia()
+                .orElseThrow(() -> new IllegalArgumentException("Missing media to upload"));
+        return mediaUploadCache.upload(media, attachmentType, () -> Medias.upload(media, attachmentType, socketHandler.store().mediaConnection()));
+    }
+
     private AttachmentType getAttachmentType(Jid chatJid, ExtendedMediaMessage<?> mediaMessage) {
         if (!chatJid.hasServer(JidServer.NEWSLETTER)) {
             return mediaMessage.attachmentType();
@@ -281,24 +352,11 @@ class MessageHandler {
         var additionalData = "%s\0%s".formatted(pollUpdateMessage.pollCreationMessageKey().id(), me.get().withoutDevice());
         var encryptedOptions = pollUpdateMessage.votes().stream().map(entry -> Sha256.calculate(entry.name())).toList();
         var pollUpdateEncryptedOptions = PollUpdateEncryptedOptionsSpec.encode(new PollUpdateEncryptedOptions(encryptedOptions));
-        var originalPollInfo = socketHandler.store()
-                .findMessageByKey(pollUpdateMessage.pollCreationMessageKey())
+        var originalPoll = pollCache.find(pollUpdateMessage.pollCreationMessageKey(), socketHandler.store())
                 .orElseThrow(() -> new NoSuchElementException("Missing original poll message"));
-        var originalPollMessage = (PollCreationMessage) originalPollInfo.message().content();
-        var originalPollSender = originalPollInfo.senderJid().withoutDevice().toString().getBytes(StandardCharsets.UTF_8);
         var modificationSenderJid = info.senderJid().withoutDevice();
         pollUpdateMessage.setVoter(modificationSenderJid);
-        var modificationSender = modificationSenderJid.toString().getBytes(StandardCharsets.UTF_8);
-        var secretName = pollUpdateMessage.secretName().getBytes(StandardCharsets.UTF_8);
-        var useSecretPayload = BytesHelper.concat(
-                pollUpdateMessage.pollCreationMessageKey().id().getBytes(StandardCharsets.UTF_8),
-                originalPollSender,
-                modificationSender,
-                secretName
-        );
-        var encryptionKey = originalPollMessage.encryptionKey()
-                .orElseThrow(() -> new NoSuchElementException("Missing encryption key"));
-        var useCaseSecret = Hkdf.extractAndExpand(encryptionKey, useSecretPayload, 32);
+        var useCaseSecret = originalPoll.useCaseSecret(modificationSenderJid, pollUpdateMessage.secretName());
         var iv = BytesHelper.random(12);
         var pollUpdateEncryptedPayload = AesGcm.encrypt(iv, pollUpdateEncryptedOptions, useCaseSecret, additionalData.getBytes(StandardCharsets.UTF_8));
         var pollUpdateEncryptedMetadata = new PollUpdateEncryptedMetadata(pollUpdateEncryptedPayload, iv);
@@ -340,8 +398,7 @@ class MessageHandler {
                     .put("id", request.info().id())
                     .put("to", request.info().parentJid())
                     .put("type", type)
-                    .put("media_id", getPlainMessageHandle(request), Objects::nonNull)
-                    .toMap();
+                    .put("media_id", getPlainMessageHandle(request), Objects::nonNull);
             return socketHandler.send(Node.of("message", attributes, messageNode))
                     .thenRunAsync(() -> {
                         var newsletter = request.info().newsletter();
@@ -378,8 +435,7 @@ class MessageHandler {
         }
 
         var messageAttributes = Attributes.of()
-                .put("mediatype", getMediaType(message), Objects::nonNull)
-                .toMap();
+                .put("mediatype", getMediaType(message), Objects::nonNull);
         return Node.of("plaintext", messageAttributes, message.isEmpty() ? null : MessageContainerSpec.encode(message));
     }
 
@@ -501,8 +557,7 @@ class MessageHandler {
                 .put("category", "peer", request.peer())
                 .put("duration", "900", request.info().message().type() == MessageType.LIVE_LOCATION)
                 .put("device_fanout", false, request.info().message().type() == MessageType.BUTTONS)
-                .put("push_priority", "high", isAppStateKeyShare(request))
-                .toMap();
+                .put("push_priority", "high", isAppStateKeyShare(request));
         return Node.of("message", attributes, body);
     }
 
@@ -709,7 +764,7 @@ class MessageHandler {
         builder.createOutgoing(registrationId, identity, signedKey, key);
     }
 
-    // TODO: Make this async and move the lock as far as possible into the cipher chain for better performance
+    // Called from the lane of the inbound pipeline that owns the chat of the node: sessions and sender keys are guarded by their own locks
     public void decode(Node node, JidProvider chatOverride, boolean notify) {
         try {
             var businessName = getBusinessName(node);
@@ -798,9 +853,9 @@ class MessageHandler {
             var messageId = messageNode.attributes()
                     .getRequiredString("id");
             if (notify) {
-                socketHandler.sendMessageAck(newsletterJid, messageNode);
+                socketHandler.queueMessageAck(newsletterJid, messageNode);
                 var receiptType = getReceiptType("newsletter", false);
-                socketHandler.sendReceipt(newsletterJid, null, List.of(messageId), receiptType);
+                socketHandler.queueReceipt(newsletterJid, null, messageId, receiptType);
             }
 
             var newsletter = socketHandler.store()
@@ -868,9 +923,9 @@ class MessageHandler {
             var isSender = messageNode.attributes()
                     .getBoolean("is_sender");
             if(notify) {
-                socketHandler.sendMessageAck(newsletterJid, messageNode);
+                socketHandler.queueMessageAck(newsletterJid, messageNode);
                 var receiptType = getReceiptType("newsletter", false);
-                socketHandler.sendReceipt(newsletterJid, null, List.of(messageId), receiptType);
+                socketHandler.queueReceipt(newsletterJid, null, messageId, receiptType);
             }
 
             var newsletter = socketHandler.store()
@@ -909,7 +964,6 @@ class MessageHandler {
 
     private void decodeChatMessage(Node infoNode, Node messageNode, String businessName, boolean notify) {
         try {
-            lock.lock();
             var pushName = infoNode.attributes().getNullableString("notify");
             var timestamp = infoNode.attributes().getLong("t");
             var id = infoNode.attributes().getRequiredString("id");
@@ -981,8 +1035,6 @@ class MessageHandler {
             sendEncMessageReceipt(infoNode, id, key.chatJid(), key.senderJid().orElse(null), key.fromMe());
         } catch (Throwable throwable) {
             socketHandler.handleFailure(MESSAGE, throwable);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -990,8 +1042,8 @@ class MessageHandler {
         var participant = fromMe && senderJid == null ? chatJid : senderJid;
         var category = infoNode.attributes().getString("category");
         var receiptType = getReceiptType(category, fromMe);
-        socketHandler.sendMessageAck(chatJid, infoNode)
-                .thenComposeAsync(ignored -> socketHandler.sendReceipt(chatJid, participant, List.of(id), receiptType));
+        socketHandler.queueMessageAck(chatJid, infoNode);
+        socketHandler.queueReceipt(chatJid, participant, id, receiptType);
     }
 
     private String getReceiptType(String category, boolean fromMe) {
@@ -1011,10 +1063,11 @@ class MessageHandler {
     }
 
     private MessageDecodeResult decodeMessageBytes(String type, byte[] encodedMessage, Jid from, Jid participant) {
+        if (encodedMessage == null) {
+            return new MessageDecodeResult(null, new IllegalArgumentException("Missing encoded message"));
+        }
+
         try {
-            if (encodedMessage == null) {
-                return new MessageDecodeResult(null, new IllegalArgumentException("Missing encoded message"));
-            }
             var result = switch (type) {
                 case SKMSG -> {
                     Objects.requireNonNull(participant, "Cannot decipher skmsg without participant");
@@ -1027,7 +1080,7 @@ class MessageHandler {
                     Objects.requireNonNull(user, "Cannot decipher pkmsg without user");
                     var session = new SessionCipher(user.toSignalAddress(), socketHandler.keys());
                     var preKey = SignalPreKeyMessage.ofSerialized(encodedMessage);
-                    yield session.decrypt(preKey);
+                    yield decodePreKeyMessage(session, preKey);
                 }
                 case MSG -> {
                     var user = from.hasServer(JidServer.WHATSAPP) ? from : participant;
@@ -1044,6 +1097,16 @@ class MessageHandler {
         }
     }
 
+    // Pre key messages may create the session and consume one of our pre keys, which are shared by every lane
+    private byte[] decodePreKeyMessage(SessionCipher session, SignalPreKeyMessage message) {
+        try {
+            lock.lock();
+            return session.decrypt(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void attributeMessageReceipt(ChatMessageInfo info) {
         var self = socketHandler.store()
                 .jid()
@@ -1077,6 +1140,9 @@ class MessageHandler {
         var chat = info.chat()
                 .orElseGet(() -> socketHandler.store().addNewChat(info.chatJid()));
         var result = chat.addNewMessage(info);
+        if (result) {
+            socketHandler.store().indexMessage(info);
+        }
         if (!result || info.timestampSeconds().orElse(0L) <= socketHandler.store().initializationTimeStamp()) {
             return;
         }
@@ -1099,7 +1165,12 @@ class MessageHandler {
         var groupName = new SenderKeyName(distributionMessage.groupId(), from.toSignalAddress());
         var builder = new GroupBuilder(socketHandler.keys());
         var message = SignalDistributionMessage.ofSerialized(distributionMessage.data());
-        builder.createIncoming(groupName, message);
+        try {
+            lock.lock();
+            builder.createIncoming(groupName, message);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void handleProtocolMessage(ChatMessageInfo info, ProtocolMessage protocolMessage) {
@@ -1147,7 +1218,7 @@ class MessageHandler {
         }
 
         downloadHistorySync(protocolMessage)
-                .thenAcceptAsync(this::onHistoryNotification)
+                .thenAcceptAsync(this::onHistoryNotification, getOrCreateHistoryService())
                 .exceptionallyAsync(throwable -> socketHandler.handleFailure(HISTORY_SYNC, throwable))
                 .thenRunAsync(() -> socketHandler.sendReceipt(info.chatJid(), null, List.of(info.id()), "hist_sync"));
     }
@@ -1165,23 +1236,65 @@ class MessageHandler {
                 || sender.lastKnownPresence() == ContactStatus.RECORDING;
     }
 
-    private CompletableFuture<HistorySync> downloadHistorySync(ProtocolMessage protocolMessage) {
+    private CompletableFuture<InputStream> downloadHistorySync(ProtocolMessage protocolMessage) {
         return protocolMessage.historySyncNotification()
                 .map(this::downloadHistorySyncNotification)
                 .orElseGet(() -> CompletableFuture.completedFuture(null));
 
     }
 
-    private CompletableFuture<HistorySync> downloadHistorySyncNotification(HistorySyncNotification notification) {
+    private CompletableFuture<InputStream> downloadHistorySyncNotification(HistorySyncNotification notification) {
         return notification.initialHistBootstrapInlinePayload()
-                .map(result -> CompletableFuture.completedFuture(HistorySyncSpec.decode(BytesHelper.decompress(result))))
-                .orElseGet(() -> Medias.downloadAsync(notification)
-                        .thenApplyAsync(entry -> entry.orElseThrow(() -> new NoSuchElementException("Cannot download history sync")))
-                        .thenApplyAsync(result -> HistorySyncSpec.decode(BytesHelper.decompress(result))));
+                .map(result -> CompletableFuture.<InputStream>completedFuture(new ByteArrayInputStream(result)))
+                .orElseGet(() -> downloadHistorySyncFile(notification));
+    }
+
+    // The hmac and sha256 of a sync are only verified at the end of the download, so it's spooled to a file that is read once authenticated
+    private CompletableFuture<InputStream> downloadHistorySyncFile(HistorySyncNotification notification) {
+        Path file;
+        try {
+            file = Files.createTempFile("history", ".sync");
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(new UncheckedIOException("Cannot create history sync file", exception));
+        }
+
+        return Medias.downloadAsync(notification, file)
+                .thenApply(found -> openHistorySyncFile(file, found))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        deleteHistorySyncFile(file);
+                    }
+                });
     }
 
-    private void onHistoryNotification(HistorySync history) {
-        handleHistorySync(history);
+    private InputStream openHistorySyncFile(Path file, boolean found) {
+        if (!found) {
+            throw new NoSuchElementException("Cannot download history sync");
+        }
+
+        try {
+            return Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot open history sync file", exception);
+        }
+    }
+
+    private void deleteHistorySyncFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+
+        }
+    }
+
+    private void onHistoryNotification(InputStream compressed) {
+        if (compressed == null) {
+            return;
+        }
+
+        var conversations = new HashSet<Jid>();
+        var history = readHistorySync(compressed, conversations);
+        handleHistorySync(history, conversations);
         if (history.progress() == null) {
             return;
         }
@@ -1189,19 +1302,49 @@ class MessageHandler {
         socketHandler.onHistorySyncProgress(history.progress(), history.syncType() == Type.RECENT);
     }
 
+    private HistorySync readHistorySync(InputStream compressed, Set<Jid> conversations) {
+        try (var input = new BufferedInputStream(new InflaterInputStream(compressed))) {
+            return HistorySyncReader.read(input, (type, chat) -> {
+                if (isConversationHandled(type)) {
+                    handleConversation(type, chat, conversations);
+                }
+            });
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot read history sync", exception);
+        }
+    }
+
+    private boolean isConversationHandled(Type type) {
+        return switch (type) {
+            case INITIAL_BOOTSTRAP -> true;
+            case RECENT, FULL -> !socketHandler.store().historyLength().isZero();
+            default -> false;
+        };
+    }
+
+    private void handleConversation(Type type, Chat chat, Set<Jid> conversations) {
+        if (type == Type.INITIAL_BOOTSTRAP && !socketHandler.store().historyLength().isZero()) {
+            historyCache.add(chat.jid());
+        }
+
+        conversations.add(chat.jid());
+        handleConversation(chat);
+    }
+
     private void onMessageDeleted(ChatMessageInfo info, ChatMessageInfo message) {
         info.chat().ifPresent(chat -> chat.removeMessage(message));
+        socketHandler.store().removeIndexedMessage(message.chatJid(), message.id());
         message.setRevokeTimestampSeconds(Clock.nowSeconds());
         socketHandler.onMessageDeleted(message, true);
     }
 
-    private void handleHistorySync(HistorySync history) {
+    private void handleHistorySync(HistorySync history, Set<Jid> conversations) {
         try {
             switch (history.syncType()) {
                 case INITIAL_STATUS_V3 -> handleInitialStatus(history);
                 case PUSH_NAME -> handlePushNames(history);
-                case INITIAL_BOOTSTRAP -> handleInitialBootstrap(history);
-                case RECENT, FULL -> handleChatsSync(history);
+                case INITIAL_BOOTSTRAP -> socketHandler.onChats();
+                case RECENT, FULL -> handleChatsSync(conversations);
                 case NON_BLOCKING_DATA -> handleNonBlockingData(history);
             }
         } finally {
@@ -1239,30 +1382,16 @@ class MessageHandler {
         return contact;
     }
 
-    private void handleInitialBootstrap(HistorySync history) {
-        if (!socketHandler.store().historyLength().isZero()) {
-            var jids = history.conversations()
-                    .stream()
-                    .map(Chat::jid)
-                    .toList();
-            historyCache.addAll(jids);
-        }
-
-        handleConversations(history);
-        socketHandler.onChats();
-    }
-
-    private void handleChatsSync(HistorySync history) {
+    private void handleChatsSync(Set<Jid> conversations) {
         if (socketHandler.store().historyLength().isZero()) {
             return;
         }
 
-        handleConversations(history);
-        handleConversationsNotifications(history);
+        handleConversationsNotifications(conversations);
         scheduleHistorySyncTimeout();
     }
 
-    private void handleConversationsNotifications(HistorySync history) {
+    private void handleConversationsNotifications(Set<Jid> conversations) {
         var toRemove = new HashSet<Jid>();
         for (var cachedJid : historyCache) {
             var chat = socketHandler.store()
@@ -1272,7 +1401,7 @@ class MessageHandler {
                 continue;
             }
 
-            var done = !history.conversations().contains(chat);
+            var done = !conversations.contains(cachedJid);
             if (done) {
                 chat.setEndOfHistoryTransfer(true);
                 chat.setEndOfHistoryTransferType(Chat.EndOfHistoryTransferType.COMPLETE_AND_NO_MORE_MESSAGE_REMAIN_ON_PRIMARY);
@@ -1310,19 +1439,17 @@ class MessageHandler {
     }
 
 
-    private void handleConversations(HistorySync history) {
-        for (var chat : history.conversations()) {
-            for (var message : chat.messages()) {
-                attributeChatMessage(message.messageInfo());
-            }
-
-            var pastParticipants = pastParticipantsQueue.remove(chat.jid());
-            if (pastParticipants != null) {
-                chat.addPastParticipants(pastParticipants);
-            }
+    private void handleConversation(Chat chat) {
+        for (var message : chat.messages()) {
+            attributeChatMessage(message.messageInfo());
+        }
 
-            socketHandler.store().addChat(chat);
+        var pastParticipants = pastParticipantsQueue.remove(chat.jid());
+        if (pastParticipants != null) {
+            chat.addPastParticipants(pastParticipants);
         }
+
+        socketHandler.store().addChat(chat);
     }
 
     private void handleNonBlockingData(HistorySync history) {
@@ -1416,36 +1543,18 @@ class MessageHandler {
     }
 
     private void handlePollUpdate(ChatMessageInfo info, PollUpdateMessage pollUpdateMessage) {
-        var originalPollInfo = socketHandler.store().findMessageByKey(pollUpdateMessage.pollCreationMessageKey());
-        if(originalPollInfo.isEmpty()) {
-            return;
-        }
-
-        if(!(originalPollInfo.get().message().content() instanceof  PollCreationMessage originalPollMessage)) {
+        var originalPoll = pollCache.find(pollUpdateMessage.pollCreationMessageKey(), socketHandler.store());
+        if(originalPoll.isEmpty()) {
             return;
         }
 
+        var originalPollMessage = originalPoll.get().message();
         pollUpdateMessage.setPollCreationMessage(originalPollMessage);
-        var originalPollSender = originalPollInfo.get()
-                .senderJid()
-                .withoutDevice()
-                .toString()
-                .getBytes(StandardCharsets.UTF_8);
         var modificationSenderJid = info.senderJid().withoutDevice();
         pollUpdateMessage.setVoter(modificationSenderJid);
-        var modificationSender = modificationSenderJid.toString().getBytes(StandardCharsets.UTF_8);
-        var secretName = pollUpdateMessage.secretName().getBytes(StandardCharsets.UTF_8);
-        var useSecretPayload = BytesHelper.concat(
-                originalPollInfo.get().id().getBytes(StandardCharsets.UTF_8),
-                originalPollSender,
-                modificationSender,
-                secretName
-        );
-        var encryptionKey = originalPollMessage.encryptionKey()
-                .orElseThrow(() -> new NoSuchElementException("Missing encryption key"));
-        var useCaseSecret = Hkdf.extractAndExpand(encryptionKey, useSecretPayload, 32);
+        var useCaseSecret = originalPoll.get().useCaseSecret(modificationSenderJid, pollUpdateMessage.secretName());
         var additionalData = "%s\0%s".formatted(
-                originalPollInfo.get().id(),
+                originalPoll.get().info().id(),
                 modificationSenderJid
         );
         var metadata = pollUpdateMessage.encryptedMetadata()
@@ -1454,7 +1563,7 @@ class MessageHandler {
         var pollVoteMessage = PollUpdateEncryptedOptionsSpec.decode(decrypted);
         var selectedOptions = pollVoteMessage.selectedOptions()
                 .stream()
-                .map(sha256 -> originalPollMessage.getSelectableOption(HexFormat.of().formatHex(sha256)))
+                .map(originalPollMessage::getSelectableOption)
                 .flatMap(Optional::stream)
                 .toList();
         originalPollMessage.addSelectedOptions(modificationSenderJid, selectedOptions);
@@ -1465,14 +1574,20 @@ class MessageHandler {
 
     private void handleReactionMessage(ChatMessageInfo info, ReactionMessage reactionMessage) {
         info.setIgnore(true);
+        // The reaction is stored with the key of the message that holds it, so that its sender is known
+        var reactionKey = new ChatMessageKey(info.chatJid(), info.fromMe(), info.id(), info.senderJid().withoutDevice());
+        var reaction = new ReactionMessage(reactionKey, reactionMessage.content(), reactionMessage.groupingKey(), reactionMessage.timestampSeconds());
         socketHandler.store().findMessageByKey(reactionMessage.key())
-                .ifPresent(message -> message.reactions().add(reactionMessage));
+                .ifPresent(message -> message.addReaction(reaction));
     }
 
-    protected void dispose() {
+    protected synchronized void dispose() {
         historyCache.clear();
         historySyncTask = null;
         historySyncTypes.clear();
+        if (historyService != null && !historyService.isShutdown()) {
+            historyService.shutdownNow();
+        }
     }
 
     private record MessageDecodeResult(byte[] message, Throwable error) {
@@ -1480,4 +1595,8 @@ class MessageHandler {
             return error != null;
         }
     }
+
+    private record TextPreview(String matchedText, LinkPreviewCache.Preview preview) {
+
+    }
 }
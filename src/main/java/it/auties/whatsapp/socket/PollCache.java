@@ -0,0 +1,128 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.controller.Store;
+import it.auties.whatsapp.crypto.Hkdf;
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.info.ChatMessageInfo;
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.model.message.model.ChatMessageKey;
+import it.auties.whatsapp.model.message.standard.PollCreationMessage;
+import it.auties.whatsapp.model.sync.HistorySyncMessage;
+import it.auties.whatsapp.util.BytesHelper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Caches the polls that received votes, together with the key material that doesn't depend on the voter,
+ * so that a vote doesn't have to look up the poll in its chat and derive the whole use case secret from scratch.
+ * A cached poll is only used while its chat is still the one in the store and still contains it, otherwise it's looked up again.
+ * The least recently used entries are evicted once {@link #MAX_ENTRIES} is reached.
+ */
+final class PollCache {
+    private static final int MAX_ENTRIES = 1024;
+    private static final int USE_CASE_SECRET_LENGTH = 32;
+
+    private final Map<Key, Entry> entries;
+
+    PollCache() {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns the poll that matches a key, looking it up in the store only if it's not cached or the cached one was removed
+     *
+     * @param key   the non-null key of the poll
+     * @param store the store that holds the poll
+     * @return a non-null optional, empty if the message doesn't exist or isn't a poll
+     * @throws NoSuchElementException if the poll doesn't have an encryption key
+     */
+    Optional<Poll> find(ChatMessageKey key, Store store) {
+        var cacheKey = new Key(key.chatJid(), key.id());
+        var chat = store.findChatByJid(key.chatJid());
+        if (chat.isEmpty()) {
+            invalidate(cacheKey);
+            return Optional.empty();
+        }
+
+        synchronized (entries) {
+            var cached = entries.get(cacheKey);
+            if (cached != null && cached.isStoredIn(chat.get())) {
+                return Optional.of(cached.poll());
+            }
+
+            entries.remove(cacheKey);
+        }
+
+        var result = store.findMessageById(chat.get(), key.id())
+                .filter(info -> info.message().content() instanceof PollCreationMessage)
+                .map(Poll::of);
+        result.ifPresent(poll -> {
+            synchronized (entries) {
+                entries.put(cacheKey, new Entry(chat.get(), poll));
+            }
+        });
+        return result;
+    }
+
+    private void invalidate(Key key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    private record Key(Jid chatJid, String id) {
+
+    }
+
+    private record Entry(Chat chat, Poll poll) {
+        private boolean isStoredIn(Chat storedChat) {
+            return chat == storedChat && chat.messages().contains(new HistorySyncMessage(poll.info(), 0));
+        }
+    }
+
+    /**
+     * A poll and its key material
+     *
+     * @param info            the message that holds the poll
+     * @param message         the poll
+     * @param pseudoRandomKey the key extracted from the encryption key of the poll
+     * @param secretPrefix    the part of the use case secret info that depends only on the poll
+     */
+    record Poll(ChatMessageInfo info, PollCreationMessage message, byte[] pseudoRandomKey, byte[] secretPrefix) {
+        private static Poll of(ChatMessageInfo info) {
+            var message = (PollCreationMessage) info.message().content();
+            var encryptionKey = message.encryptionKey()
+                    .orElseThrow(() -> new NoSuchElementException("Missing encryption key"));
+            var secretPrefix = BytesHelper.concat(
+                    info.id().getBytes(StandardCharsets.UTF_8),
+                    info.senderJid().withoutDevice().toString().getBytes(StandardCharsets.UTF_8)
+            );
+            return new Poll(info, message, Hkdf.extract(encryptionKey), secretPrefix);
+        }
+
+        /**
+         * Derives the secret used to encrypt or decrypt the vote of a voter
+         *
+         * @param voter      the non-null voter, without a device
+         * @param secretName the non-null name of the use case
+         * @return a non-null secret
+         */
+        byte[] useCaseSecret(Jid voter, String secretName) {
+            var secretInfo = BytesHelper.concat(
+                    secretPrefix,
+                    voter.toString().getBytes(StandardCharsets.UTF_8),
+                    secretName.getBytes(StandardCharsets.UTF_8)
+            );
+            return Hkdf.expand(pseudoRandomKey, secretInfo, USE_CASE_SECRET_LENGTH);
+        }
+    }
+}
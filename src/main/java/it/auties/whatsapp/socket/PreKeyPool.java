@@ -0,0 +1,90 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * A pool of key pairs that are generated in the background, so that uploading pre keys doesn't have to generate them on demand.
+ * Key pairs are generated in parallel and only get an id once they are taken from the pool, as ids must be assigned in the order in which pre keys are uploaded.
+ * The pool isn't persisted: key pairs that were never uploaded are simply discarded.
+ */
+final class PreKeyPool {
+    private final ConcurrentLinkedQueue<SignalKeyPair> keyPairs;
+    private final AtomicInteger size;
+    private final AtomicBoolean filling;
+
+    PreKeyPool() {
+        this.keyPairs = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+        this.filling = new AtomicBoolean();
+    }
+
+    /**
+     * Fills the pool in the background until it holds {@code capacity} key pairs
+     *
+     * @param capacity the number of key pairs that the pool should hold
+     * @return a future that completes when the pool is full
+     */
+    CompletableFuture<Void> fill(int capacity) {
+        if (size.get() >= capacity || !filling.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                var missing = capacity - size.get();
+                if (missing > 0) {
+                    generate(missing).forEach(this::offer);
+                }
+            } finally {
+                filling.set(false);
+            }
+        });
+    }
+
+    /**
+     * Takes {@code count} pre keys from the pool, generating the ones that are missing
+     *
+     * @param startId the id of the first pre key
+     * @param count   the number of pre keys
+     * @return a non-null list of pre keys with consecutive ids
+     */
+    List<SignalPreKeyPair> take(int startId, int count) {
+        var results = new ArrayList<SignalPreKeyPair>(count);
+        while (results.size() < count) {
+            var keyPair = keyPairs.poll();
+            if (keyPair == null) {
+                break;
+            }
+
+            size.decrementAndGet();
+            results.add(new SignalPreKeyPair(startId + results.size(), keyPair.publicKey(), keyPair.privateKey()));
+        }
+
+        for (var keyPair : generate(count - results.size())) {
+            results.add(new SignalPreKeyPair(startId + results.size(), keyPair.publicKey(), keyPair.privateKey()));
+        }
+
+        return results;
+    }
+
+    private void offer(SignalKeyPair keyPair) {
+        keyPairs.offer(keyPair);
+        size.incrementAndGet();
+    }
+
+    private List<SignalKeyPair> generate(int count) {
+        return IntStream.range(0, count)
+                .parallel()
+                .mapToObj(ignored -> SignalKeyPair.random())
+                .toList();
+    }
+}
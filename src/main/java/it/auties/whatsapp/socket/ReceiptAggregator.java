@@ -0,0 +1,146 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.model.node.Node;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Aggregates the acks and the receipts sent for incoming messages.
+ * Receipts are grouped by chat, participant and type so that a single receipt node can carry many message ids,
+ * and everything that is pending is written in a single batch once the window expires or the batch is full.
+ * Acks are always written before receipts.
+ */
+final class ReceiptAggregator {
+    private static final int WINDOW = 100;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final Executor FLUSH_EXECUTOR = delayedExecutor(WINDOW, MILLISECONDS);
+
+    private final SocketHandler socketHandler;
+    private List<Node> acks;
+    private Map<ReceiptKey, List<String>> receipts;
+    private int size;
+    private CompletableFuture<Void> batch;
+
+    ReceiptAggregator(SocketHandler socketHandler) {
+        this.socketHandler = socketHandler;
+        this.acks = new ArrayList<>();
+        this.receipts = new LinkedHashMap<>();
+    }
+
+    /**
+     * Queues an ack
+     *
+     * @param ack the non-null ack node
+     * @return a future that completes when the batch containing the ack is sent
+     */
+    CompletableFuture<Void> addAck(Node ack) {
+        return add(() -> acks.add(ack));
+    }
+
+    /**
+     * Queues a receipt
+     *
+     * @param jid         the non-null chat
+     * @param participant the nullable participant
+     * @param message     the non-null id of the message
+     * @param type        the nullable type of the receipt
+     * @return a future that completes when the batch containing the receipt is sent
+     */
+    CompletableFuture<Void> addReceipt(Jid jid, Jid participant, String message, String type) {
+        return add(() -> receipts.computeIfAbsent(new ReceiptKey(jid, participant, type), ignored -> new ArrayList<>()).add(message));
+    }
+
+    // A full batch is taken while holding the lock, but it's sent only after the lock is released
+    private CompletableFuture<Void> add(Runnable entry) {
+        CompletableFuture<Void> result;
+        Batch full = null;
+        synchronized (this) {
+            entry.run();
+            if (batch == null) {
+                batch = new CompletableFuture<>();
+                FLUSH_EXECUTOR.execute(this::flush);
+            }
+
+            result = batch;
+            if (++size >= MAX_BATCH_SIZE) {
+                full = takeBatch();
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sends everything that is pending
+     */
+    void flush() {
+        Batch pending;
+        synchronized (this) {
+            pending = takeBatch();
+        }
+
+        if (pending != null) {
+            send(pending);
+        }
+    }
+
+    private Batch takeBatch() {
+        if (batch == null) {
+            return null;
+        }
+
+        var result = new Batch(acks, receipts, batch);
+        this.acks = new ArrayList<>();
+        this.receipts = new LinkedHashMap<>();
+        this.batch = null;
+        this.size = 0;
+        return result;
+    }
+
+    private void send(Batch pending) {
+        var nodes = new ArrayList<>(pending.acks());
+        pending.receipts().forEach((key, messages) -> nodes.add(socketHandler.createReceipt(key.jid(), key.participant(), messages, key.type())));
+        socketHandler.sendWithNoResponse(nodes)
+                .whenCompleteAsync((result, throwable) -> {
+                    if (throwable != null) {
+                        pending.future().completeExceptionally(throwable);
+                    } else {
+                        pending.future().complete(null);
+                    }
+                });
+    }
+
+    /**
+     * Discards everything that is pending, the server will redeliver the messages that weren't acknowledged
+     */
+    synchronized void dispose() {
+        acks.clear();
+        receipts.clear();
+        size = 0;
+        if (batch != null) {
+            batch.complete(null);
+            batch = null;
+        }
+    }
+
+    private record ReceiptKey(Jid jid, Jid participant, String type) {
+
+    }
+
+    private record Batch(List<Node> acks, Map<ReceiptKey, List<String>> receipts, CompletableFuture<Void> future) {
+
+    }
+}
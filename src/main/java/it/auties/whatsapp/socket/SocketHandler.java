@@ -5,7 +5,7 @@ import it.auties.whatsapp.api.ErrorHandler.Location;
 import it.auties.whatsapp.binary.BinaryDecoder;
 import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.controller.Store;
-import it.auties.whatsapp.crypto.AesGcm;
+import it.auties.whatsapp.crypto.NoiseTransport;
 import it.auties.whatsapp.listener.Listener;
 import it.auties.whatsapp.model.action.Action;
 import it.auties.whatsapp.model.business.BusinessCategory;
@@ -41,6 +41,7 @@ import it.auties.whatsapp.util.Clock;
 
 import java.net.SocketException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.*;
@@ -71,6 +72,10 @@ public class SocketHandler implements SocketListener {
 
     private final AppStateHandler appStateHandler;
 
+    private final InboundPipeline inboundPipeline;
+
+    private final ReceiptAggregator receiptAggregator;
+
     private final ErrorHandler errorHandler;
 
     private final ExecutorService socketExecutor;
@@ -106,6 +111,8 @@ public class SocketHandler implements SocketListener {
         this.streamHandler = new StreamHandler(this, webVerificationHandler);
         this.messageHandler = new MessageHandler(this);
         this.appStateHandler = new AppStateHandler(this);
+        this.inboundPipeline = new InboundPipeline(this);
+        this.receiptAggregator = new ReceiptAggregator(this);
         this.errorHandler = Objects.requireNonNullElse(errorHandler, ErrorHandler.toTerminal());
         this.socketExecutor = Objects.requireNonNullElse(socketExecutor, DEFAULT_EXECUTOR);
     }
@@ -121,16 +128,19 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onSocketEvent(SocketEvent event) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.SOCKET_EVENT, listener -> {
             listener.onSocketEvent(whatsapp, event);
             listener.onSocketEvent(event);
         });
     }
 
-    private void callListenersAsync(Consumer<Listener> consumer) {
+    private void callListenersAsync(ListenerEvent event, Consumer<Listener> consumer) {
         var service = getOrCreateListenersService();
-        store.listeners()
-                .forEach(listener -> service.execute(() -> invokeListenerSafe(consumer, listener)));
+        for (var listener : store.listeners()) {
+            if (event.isHandledBy(listener)) {
+                service.execute(() -> invokeListenerSafe(consumer, listener));
+            }
+        }
     }
 
     @Override
@@ -176,18 +186,20 @@ public class SocketHandler implements SocketListener {
             return;
         }
 
-        var readKey = keys.readKey();
-        if (readKey.isEmpty()) {
+        var transport = keys.transport();
+        if (transport.isEmpty()) {
             return;
         }
 
-        var decipheredMessage = decipherMessage(message, readKey.get());
+        var startNanos = System.nanoTime();
+        var decipheredMessage = decipherMessage(message, transport.get());
         if(decipheredMessage == null) {
             return;
         }
 
-        try(var decoder = new BinaryDecoder(decipheredMessage)) {
+        try(var decoder = new BinaryDecoder(decipheredMessage.array(), decipheredMessage.limit())) {
             var node = decoder.decode();
+            inboundPipeline.onFrameProcessed(startNanos);
             onNodeReceived(node);
             store.resolvePendingRequest(node, false);
             streamHandler.digest(node);
@@ -196,9 +208,9 @@ public class SocketHandler implements SocketListener {
         }
     }
 
-    private byte[] decipherMessage(byte[] message, byte[] readKey) {
+    private ByteBuffer decipherMessage(byte[] message, NoiseTransport transport) {
         try {
-            return AesGcm.decrypt(keys.readCounter(true), message, readKey);
+            return transport.decrypt(message);
         }  catch (Throwable throwable) {
             return handleFailure(CRYPTOGRAPHY, throwable);
         }
@@ -206,7 +218,7 @@ public class SocketHandler implements SocketListener {
 
 
     private void onNodeReceived(Node deciphered) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NODE_RECEIVED, listener -> {
             listener.onNodeReceived(whatsapp, deciphered);
             listener.onNodeReceived(deciphered);
         });
@@ -317,6 +329,14 @@ public class SocketHandler implements SocketListener {
         messageHandler.decode(node, chatOverride, notify);
     }
 
+    protected void submitMessage(Node node) {
+        inboundPipeline.submitMessage(node);
+    }
+
+    public InboundPipelineStats inboundStats() {
+        return inboundPipeline.stats();
+    }
+
     public CompletableFuture<Void> sendPeerMessage(Jid companion, ProtocolMessage message) {
         if (message == null) {
             return CompletableFuture.completedFuture(null);
@@ -355,8 +375,7 @@ public class SocketHandler implements SocketListener {
                 .put("id", id, Objects::nonNull)
                 .put("type", method)
                 .put("to", to)
-                .put("xmlns", category, Objects::nonNull)
-                .toMap();
+                .put("xmlns", category, Objects::nonNull);
         return sendWithNoResponse(Node.of("iq", attributes, body));
     }
 
@@ -371,8 +390,21 @@ public class SocketHandler implements SocketListener {
                 .thenRunAsync(() -> onNodeSent(node));
     }
 
+    public CompletableFuture<Void> sendWithNoResponse(List<Node> nodes) {
+        if (state() == SocketState.RESTORE || nodes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var requests = nodes.stream()
+                .map(node -> node.toRequest(null, false))
+                .toList();
+        return SocketRequest.sendWithNoResponse(requests, session, keys, store)
+                .exceptionallyAsync(throwable -> handleFailure(STREAM, throwable))
+                .thenRunAsync(() -> nodes.forEach(this::onNodeSent));
+    }
+
     private void onNodeSent(Node node) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NODE_SENT, listener -> {
             listener.onNodeSent(whatsapp, node);
             listener.onNodeSent(node);
         });
@@ -428,8 +460,7 @@ public class SocketHandler implements SocketListener {
                 .put("xmlns", category, Objects::nonNull)
                 .put("id", id, Objects::nonNull)
                 .put("to", to)
-                .put("type", method)
-                .toMap();
+                .put("type", method);
         return send(Node.of("iq", attributes, body));
     }
 
@@ -610,6 +641,14 @@ public class SocketHandler implements SocketListener {
             return CompletableFuture.completedFuture(null);
         }
 
+        return sendWithNoResponse(createReceipt(jid, participant, messages, type));
+    }
+
+    protected CompletableFuture<Void> queueReceipt(Jid jid, Jid participant, String message, String type) {
+        return receiptAggregator.addReceipt(jid, participant, message, type);
+    }
+
+    protected Node createReceipt(Jid jid, Jid participant, List<String> messages, String type) {
         var attributes = Attributes.of()
                 .put("id", messages.getFirst())
                 .put("t", Clock.nowMilliseconds(), () -> Objects.equals(type, "read") || Objects.equals(type, "read-self"))
@@ -620,8 +659,7 @@ public class SocketHandler implements SocketListener {
             attributes.put("to", participant);
         }
 
-        var receipt = Node.of("receipt", attributes.toMap(), toMessagesNode(messages));
-        return sendWithNoResponse(receipt);
+        return Node.of("receipt", attributes, toMessagesNode(messages));
     }
 
     private List<Node> toMessagesNode(List<String> messages) {
@@ -635,6 +673,14 @@ public class SocketHandler implements SocketListener {
     }
 
     protected CompletableFuture<Void> sendMessageAck(Jid from, Node node) {
+        return sendWithNoResponse(createMessageAck(from, node));
+    }
+
+    protected CompletableFuture<Void> queueMessageAck(Jid from, Node node) {
+        return receiptAggregator.addAck(createMessageAck(from, node));
+    }
+
+    private Node createMessageAck(Jid from, Node node) {
         var attrs = node.attributes();
         var type = attrs.getOptionalString("type")
                 .filter(entry -> !Objects.equals(entry, "message"))
@@ -645,20 +691,19 @@ public class SocketHandler implements SocketListener {
                 .put("class", node.description())
                 .put("participant", attrs.getNullableString("participant"), Objects::nonNull)
                 .put("recipient", attrs.getNullableString("recipient"), Objects::nonNull)
-                .put("type", type, Objects::nonNull)
-                .toMap();
-        return sendWithNoResponse(Node.of("ack", attributes));
+                .put("type", type, Objects::nonNull);
+        return Node.of("ack", attributes);
     }
 
     protected void onRegistrationCode(long code) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.REGISTRATION_CODE, listener -> {
             listener.onRegistrationCode(whatsapp, code);
             listener.onRegistrationCode(code);
         });
     }
 
     protected void onMetadata(Map<String, String> properties) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.METADATA, listener -> {
             listener.onMetadata(whatsapp, properties);
             listener.onMetadata(properties);
         });
@@ -666,7 +711,7 @@ public class SocketHandler implements SocketListener {
 
 
     protected void onMessageStatus(MessageInfo message) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.MESSAGE_STATUS, listener -> {
             listener.onMessageStatus(whatsapp, message);
             listener.onMessageStatus(message);
         });
@@ -680,56 +725,56 @@ public class SocketHandler implements SocketListener {
         }
 
         chat.presences().put(jid, status);
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.CONTACT_PRESENCE, listener -> {
             listener.onContactPresence(whatsapp, chat, jid, status);
             listener.onContactPresence(chat, jid, status);
         });
     }
 
     protected void onNewMessage(ChatMessageInfo info) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NEW_MESSAGE, listener -> {
             listener.onNewMessage(whatsapp, info);
             listener.onNewMessage(info);
         });
     }
 
     protected void onNewStatus(ChatMessageInfo info) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NEW_STATUS, listener -> {
             listener.onNewStatus(whatsapp, info);
             listener.onNewStatus(info);
         });
     }
 
     protected void onChatRecentMessages(Chat chat, boolean last) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.CHAT_MESSAGES_SYNC, listener -> {
             listener.onChatMessagesSync(whatsapp, chat, last);
             listener.onChatMessagesSync(chat, last);
         });
     }
 
     protected void onFeatures(PrimaryFeature features) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.FEATURES, listener -> {
             listener.onFeatures(whatsapp, features.flags());
             listener.onFeatures(features.flags());
         });
     }
 
     protected void onSetting(Setting setting) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.SETTING, listener -> {
             listener.onSetting(whatsapp, setting);
             listener.onSetting(setting);
         });
     }
 
     protected void onMessageDeleted(MessageInfo message, boolean everyone) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.MESSAGE_DELETED, listener -> {
             listener.onMessageDeleted(whatsapp, message, everyone);
             listener.onMessageDeleted(message, everyone);
         });
     }
 
     protected void onAction(Action action, MessageIndexInfo indexInfo) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.ACTION, listener -> {
             listener.onAction(whatsapp, action, indexInfo);
             listener.onAction(action, indexInfo);
         });
@@ -752,7 +797,7 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onLoggedIn() {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.LOGGED_IN, listener -> {
             listener.onLoggedIn(whatsapp);
             listener.onLoggedIn();
         });
@@ -776,42 +821,42 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onChats() {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.CHATS, listener -> {
             listener.onChats(whatsapp, store().chats());
             listener.onChats(store().chats());
         });
     }
 
     protected void onNewsletters() {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NEWSLETTERS, listener -> {
             listener.onNewsletters(whatsapp, store().newsletters());
             listener.onNewsletters(store().newsletters());
         });
     }
 
     protected void onNewsletterMessage(NewsletterMessageInfo messageInfo) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NEW_MESSAGE, listener -> {
             listener.onNewMessage(whatsapp, messageInfo);
             listener.onNewMessage(messageInfo);
         });
     }
 
     protected void onStatus() {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.STATUS, listener -> {
             listener.onStatus(whatsapp, store().status());
             listener.onStatus(store().status());
         });
     }
 
     protected void onContacts() {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.CONTACTS, listener -> {
             listener.onContacts(whatsapp, store().contacts());
             listener.onContacts(store().contacts());
         });
     }
 
     protected void onHistorySyncProgress(Integer progress, boolean recent) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.HISTORY_SYNC_PROGRESS, listener -> {
             listener.onHistorySyncProgress(whatsapp, progress, recent);
             listener.onHistorySyncProgress(progress, recent);
         });
@@ -823,35 +868,35 @@ public class SocketHandler implements SocketListener {
             return;
         }
         store.resolvePendingReply(info);
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.MESSAGE_REPLY, listener -> {
             listener.onMessageReply(whatsapp, info, quoted);
             listener.onMessageReply(info, quoted);
         });
     }
 
     protected void onGroupPictureChanged(Chat fromChat) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.GROUP_PICTURE_CHANGED, listener -> {
             listener.onGroupPictureChanged(whatsapp, fromChat);
             listener.onGroupPictureChanged(fromChat);
         });
     }
 
     protected void onContactPictureChanged(Contact fromContact) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.PROFILE_PICTURE_CHANGED, listener -> {
             listener.onProfilePictureChanged(whatsapp, fromContact);
             listener.onProfilePictureChanged(fromContact);
         });
     }
 
     protected void onUserAboutChanged(String newAbout, String oldAbout) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.ABOUT_CHANGED, listener -> {
             listener.onAboutChanged(whatsapp, oldAbout, newAbout);
             listener.onAboutChanged(oldAbout, newAbout);
         });
     }
 
     public void onUserPictureChanged(URI newPicture, URI oldPicture) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.PROFILE_PICTURE_CHANGED, listener -> {
             listener.onProfilePictureChanged(whatsapp, oldPicture, newPicture);
             listener.onProfilePictureChanged(oldPicture, newPicture);
         });
@@ -877,7 +922,7 @@ public class SocketHandler implements SocketListener {
     }
 
     private void onUserNameChanged(String newName, String oldName) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NAME_CHANGED, listener -> {
             listener.onNameChanged(whatsapp, oldName, newName);
             listener.onNameChanged(oldName, newName);
         });
@@ -894,42 +939,42 @@ public class SocketHandler implements SocketListener {
     }
 
     private void onUserLocaleChanged(CountryLocale newLocale, CountryLocale oldLocale) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.LOCALE_CHANGED, listener -> {
             listener.onLocaleChanged(whatsapp, oldLocale, newLocale);
             listener.onLocaleChanged(oldLocale, newLocale);
         });
     }
 
     protected void onContactBlocked(Contact contact) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.CONTACT_BLOCKED, listener -> {
             listener.onContactBlocked(whatsapp, contact);
             listener.onContactBlocked(contact);
         });
     }
 
     protected void onNewContact(Contact contact) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.NEW_CONTACT, listener -> {
             listener.onNewContact(whatsapp, contact);
             listener.onNewContact(contact);
         });
     }
 
     protected void onDevices(LinkedHashMap<Jid, Integer> devices) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.LINKED_DEVICES, listener -> {
             listener.onLinkedDevices(whatsapp, devices.keySet());
             listener.onLinkedDevices(devices.keySet());
         });
     }
 
     public void onCall(Call call) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.CALL, listener -> {
             listener.onCall(whatsapp, call);
             listener.onCall(call);
         });
     }
 
     public void onPrivacySettingChanged(PrivacySettingEntry oldEntry, PrivacySettingEntry newEntry) {
-        callListenersAsync(listener -> {
+        callListenersAsync(ListenerEvent.PRIVACY_SETTING_CHANGED, listener -> {
             listener.onPrivacySettingChanged(whatsapp, oldEntry, newEntry);
             listener.onPrivacySettingChanged(oldEntry, newEntry);
         });
@@ -944,6 +989,8 @@ public class SocketHandler implements SocketListener {
         streamHandler.dispose();
         messageHandler.dispose();
         appStateHandler.dispose();
+        inboundPipeline.dispose();
+        receiptAggregator.dispose();
         if (listenersService != null) {
             listenersService.shutdown();
         }
@@ -3,14 +3,18 @@ package it.auties.whatsapp.socket;
 import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.crypto.AesGcm;
 import it.auties.whatsapp.crypto.Hkdf;
-import it.auties.whatsapp.crypto.Sha256;
-import it.auties.whatsapp.util.BytesHelper;
+import it.auties.whatsapp.crypto.NoiseTransport;
 import it.auties.whatsapp.util.Specification;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
 class SocketHandshake {
+    private static final String SHA_256 = "SHA-256";
+
     private final Keys keys;
+    private final MessageDigest digest;
     private byte[] hash;
     private byte[] salt;
     private byte[] cryptoKey;
@@ -18,6 +22,7 @@ class SocketHandshake {
 
     SocketHandshake(Keys keys, byte[] prologue) {
         this.keys = keys;
+        this.digest = newDigest();
         this.hash = Specification.Whatsapp.NOISE_PROTOCOL;
         this.salt = Specification.Whatsapp.NOISE_PROTOCOL;
         this.cryptoKey = Specification.Whatsapp.NOISE_PROTOCOL;
@@ -25,9 +30,18 @@ class SocketHandshake {
         updateHash(prologue);
     }
 
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new UnsupportedOperationException("Missing sha256 implementation");
+        }
+    }
+
     void updateHash(byte[] data) {
-        var input = BytesHelper.concat(hash, data);
-        this.hash = Sha256.calculate(input);
+        digest.update(hash);
+        digest.update(data);
+        this.hash = digest.digest();
     }
 
     byte[] cipher(byte[] bytes, boolean encrypt) {
@@ -42,8 +56,7 @@ class SocketHandshake {
 
     void finish() {
         var expanded = Hkdf.extractAndExpand(new byte[0], salt, null, 64);
-        keys.setWriteKey(Arrays.copyOfRange(expanded, 0, 32));
-        keys.setReadKey(Arrays.copyOfRange(expanded, 32, 64));
+        keys.setTransport(new NoiseTransport(Arrays.copyOfRange(expanded, 0, 32), Arrays.copyOfRange(expanded, 32, 64)));
         dispose();
     }
 
@@ -3,17 +3,16 @@ package it.auties.whatsapp.socket;
 import it.auties.whatsapp.binary.BinaryEncoder;
 import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.controller.Store;
-import it.auties.whatsapp.crypto.AesGcm;
 import it.auties.whatsapp.exception.RequestException;
 import it.auties.whatsapp.model.node.Node;
 import it.auties.whatsapp.util.Exceptions;
 import it.auties.whatsapp.util.Specification;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
@@ -25,6 +24,8 @@ public record SocketRequest(String id, Object body, CompletableFuture<Node> futu
                             Function<Node, Boolean> filter, Throwable caller) {
     private static final int TIMEOUT = 60;
     private static final Executor EXECUTOR = delayedExecutor(TIMEOUT, SECONDS);
+    private static final int FRAME_HEADER_LENGTH = Integer.BYTES + Short.BYTES;
+    private static final byte[] EMPTY_PROLOGUE = new byte[0];
 
     private SocketRequest(String id, Function<Node, Boolean> filter, Object body) {
         this(id, body, new CompletableFuture<>(), filter, trace(body));
@@ -64,22 +65,10 @@ public record SocketRequest(String id, Object body, CompletableFuture<Node> futu
     }
 
     public CompletableFuture<Node> send(SocketSession session, Keys keys, Store store, boolean prologue, boolean response) {
-        var ciphered = encryptMessage(keys);
-        var byteArrayOutputStream = new ByteArrayOutputStream();
-        try(var dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
-            if(prologue) {
-                dataOutputStream.write(getPrologueData(store));
-            }
-            dataOutputStream.writeInt(ciphered.length >> 16);
-            dataOutputStream.writeShort(65535 & ciphered.length);
-            dataOutputStream.write(ciphered);
-            session.sendBinary(byteArrayOutputStream.toByteArray())
-                    .thenRunAsync(() -> onSendSuccess(store, response))
-                    .exceptionallyAsync(this::onSendError);
-            return future;
-        }catch (IOException exception) {
-            throw new RequestException(exception);
-        }
+        session.sendBinary(toFrame(keys, store, prologue))
+                .thenRunAsync(() -> onSendSuccess(store, response))
+                .exceptionallyAsync(this::onSendError);
+        return future;
     }
 
     public CompletableFuture<Void> sendWithNoResponse(SocketSession session, Keys keys, Store store) {
@@ -87,6 +76,39 @@ public record SocketRequest(String id, Object body, CompletableFuture<Node> futu
                 .thenRun(() -> {});
     }
 
+    public static CompletableFuture<Void> sendWithNoResponse(List<SocketRequest> requests, SocketSession session, Keys keys, Store store) {
+        session.sendBinary(() -> requests.stream()
+                        .map(request -> request.toFrame(keys, store, false))
+                        .toList())
+                .thenRunAsync(() -> requests.forEach(request -> request.onSendSuccess(store, false)))
+                .exceptionallyAsync(throwable -> {
+                    requests.forEach(request -> request.onSendError(throwable));
+                    return null;
+                });
+        var futures = requests.stream()
+                .map(SocketRequest::future)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+    private byte[] toFrame(Keys keys, Store store, boolean prologue) {
+        var body = getBody(body());
+        var transport = keys.transport().orElse(null);
+        var bodyLength = transport == null ? body.length : transport.encryptedLength(body.length);
+        var prologueData = prologue ? getPrologueData(store) : EMPTY_PROLOGUE;
+        var frame = ByteBuffer.allocate(prologueData.length + FRAME_HEADER_LENGTH + bodyLength)
+                .put(prologueData)
+                .putInt(bodyLength >> 16)
+                .putShort((short) (65535 & bodyLength));
+        if (transport == null) {
+            frame.put(body);
+        } else {
+            transport.encrypt(body, frame.array(), frame.position());
+        }
+
+        return frame.array();
+    }
+
     private byte[] getPrologueData(Store store) {
         return switch (store.clientType()) {
             case WEB -> Specification.Whatsapp.WEB_PROLOGUE;
@@ -94,15 +116,6 @@ public record SocketRequest(String id, Object body, CompletableFuture<Node> futu
         };
     }
 
-
-    private byte[] encryptMessage(Keys keys) {
-        var encodedBody = body();
-        var body = getBody(encodedBody);
-        return keys.writeKey()
-                .map(bytes -> AesGcm.encrypt(keys.writeCounter(true), body, bytes))
-                .orElse(body);
-    }
-
     private byte[] getBody(Object encodedBody) {
         return switch (encodedBody) {
             case byte[] bytes -> bytes;
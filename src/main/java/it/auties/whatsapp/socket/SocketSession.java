@@ -10,10 +10,12 @@ import java.net.*;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import static it.auties.whatsapp.util.Specification.Whatsapp.SOCKET_ENDPOINT;
 import static it.auties.whatsapp.util.Specification.Whatsapp.SOCKET_PORT;
@@ -38,6 +40,15 @@ public abstract sealed class SocketSession permits SocketSession.WebSocketSessio
 
     public abstract CompletableFuture<Void> sendBinary(byte[] bytes);
 
+    /**
+     * Sends a batch of frames.
+     * The frames are created while holding the output lock, so frames that are encrypted with a counter are written in the same order.
+     *
+     * @param frames the supplier of the frames to write
+     * @return a future
+     */
+    public abstract CompletableFuture<Void> sendBinary(Supplier<List<byte[]>> frames);
+
     static SocketSession of(URI proxy, ExecutorService executor, boolean webSocket) {
         if (webSocket) {
             return new WebSocketSession(proxy, executor);
@@ -100,6 +111,34 @@ public abstract sealed class SocketSession permits SocketSession.WebSocketSessio
                     });
         }
 
+        // Every frame is sent as its own binary message, but the whole batch is written while holding the output lock
+        @Override
+        public CompletableFuture<Void> sendBinary(Supplier<List<byte[]>> frames) {
+            if (session == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            outputLock.lock();
+            List<byte[]> encoded;
+            try {
+                encoded = frames.get();
+            } catch (Throwable throwable) {
+                outputLock.unlock();
+                return CompletableFuture.failedFuture(new RequestException(throwable));
+            }
+
+            var result = CompletableFuture.completedFuture(session);
+            for (var frame : encoded) {
+                result = result.thenCompose(webSocket -> webSocket.sendBinary(ByteBuffer.wrap(frame), true));
+            }
+
+            return result.thenRun(outputLock::unlock)
+                    .exceptionally(exception -> {
+                        outputLock.unlock();
+                        throw new RequestException(exception);
+                    });
+        }
+
         @Override
         public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
             message = null;
@@ -262,5 +301,30 @@ public abstract sealed class SocketSession permits SocketSession.WebSocketSessio
                 }
             });
         }
+
+        // The frames are length prefixed, so the whole batch can be written at once
+        @Override
+        public CompletableFuture<Void> sendBinary(Supplier<List<byte[]>> frames) {
+            if (socket == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    outputLock.lock();
+                    var encoded = frames.get();
+                    var length = encoded.stream()
+                            .mapToInt(frame -> frame.length)
+                            .sum();
+                    var buffer = ByteBuffer.allocate(length);
+                    encoded.forEach(buffer::put);
+                    socket.getOutputStream().write(buffer.array());
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                } finally {
+                    outputLock.unlock();
+                }
+            });
+        }
     }
 }
\ No newline at end of file
@@ -61,7 +61,6 @@ import java.util.Map.Entry;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static it.auties.whatsapp.api.ErrorHandler.Location.*;
@@ -74,6 +73,7 @@ class StreamHandler {
     private static final int WEB_PRE_KEYS_UPLOAD_CHUNK = 30;
     private static final int MOBILE_PRE_KEYS_UPLOAD_CHUNK = 811;
     private static final int PING_INTERVAL = 30;
+    private static final int STATUS_EXPIRATION_INTERVAL = 10;
     private static final int MEDIA_CONNECTION_DEFAULT_INTERVAL = 60;
     private static final int MAX_ATTEMPTS = 5;
     private static final int DEFAULT_NEWSLETTER_MESSAGES = 100;
@@ -82,6 +82,7 @@ class StreamHandler {
     private final WebVerificationHandler webVerificationHandler;
     private final Map<String, Integer> retries;
     private final AtomicReference<String> lastLinkCodeKey;
+    private final PreKeyPool preKeyPool;
     private ScheduledExecutorService service;
     private CompletableFuture<Void> mediaConnectionFuture;
 
@@ -90,6 +91,7 @@ class StreamHandler {
         this.webVerificationHandler = webVerificationHandler;
         this.retries = new ConcurrentHashMap<>();
         this.lastLinkCodeKey = new AtomicReference<>();
+        this.preKeyPool = new PreKeyPool();
     }
 
     protected void digest(Node node) {
@@ -102,7 +104,7 @@ class StreamHandler {
             case "receipt" -> digestReceipt(node);
             case "stream:error" -> digestError(node);
             case "success" -> digestSuccess(node);
-            case "message" -> socketHandler.decodeMessage(node, null, true);
+            case "message" -> socketHandler.submitMessage(node);
             case "notification" -> digestNotification(node);
             case "presence", "chatstate" -> digestChatState(node);
         }
@@ -166,7 +168,7 @@ class StreamHandler {
             }
         }
 
-        socketHandler.sendMessageAck(senderJid, node);
+        socketHandler.queueMessageAck(senderJid, node);
     }
 
     private void onNewsletterReceipt(Node node, NewsletterMessageInfo message) {
@@ -263,7 +265,7 @@ class StreamHandler {
         var from = node.attributes()
                 .getRequiredJid("from");
         socketHandler.sendMessageAck(from, node);
-        var callNode = node.children().peekFirst();
+        var callNode = node.findNode().orElse(null);
         if (callNode == null) {
             return;
         }
@@ -358,7 +360,7 @@ class StreamHandler {
                 case "mex" -> handleMexNamespace(node);
             }
         } finally {
-            socketHandler.sendMessageAck(from, node);
+            socketHandler.queueMessageAck(from, node);
         }
     }
 
@@ -859,6 +861,8 @@ class StreamHandler {
         socketHandler.sendQuery("set", "passive", Node.of("active"));
         if (!socketHandler.keys().hasPreKeys()) {
             sendPreKeys();
+        } else {
+            fillPreKeyPool();
         }
 
         createMediaConnection(0, null);
@@ -948,8 +952,7 @@ class StreamHandler {
                 .put("reg_push", 1)
                 .put("version", 2)
                 .put("voip", "35e178c41d2bd90b8db50c7a2684a38bf802e760cd1f2d7ff803d663412a9320")
-                .put("voip_payload_type", 2)
-                .toMap();
+                .put("voip_payload_type", 2);
         return socketHandler.sendQuery("set", "urn:xmpp:whatsapp:push", Node.of("config", configAttributes))
                 .thenAccept(result -> socketHandler.keys().setInitialAppSync(true));
     }
@@ -1111,18 +1114,27 @@ class StreamHandler {
                         .thenApplyAsync(entries -> Node.of("category", Map.of("id", entries.getFirst().id()))));
     }
 
-    private void schedulePing() {
+    private void scheduleTasks() {
         if (service != null && !service.isShutdown()) {
             return;
         }
 
         service = Executors.newSingleThreadScheduledExecutor();
         service.scheduleAtFixedRate(this::sendPing, 0, PING_INTERVAL, TimeUnit.SECONDS);
+        service.scheduleAtFixedRate(this::removeExpiredStatus, 0, STATUS_EXPIRATION_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    private void removeExpiredStatus() {
+        try {
+            socketHandler.store().removeExpiredStatus();
+        } catch (Throwable throwable) {
+            socketHandler.handleFailure(UNKNOWN, throwable);
+        }
     }
 
     private void onInitialInfo() {
         socketHandler.keys().setRegistered(true);
-        schedulePing();
+        scheduleTasks();
         socketHandler.onLoggedIn();
         if (!socketHandler.keys().initialAppSync()) {
             return;
@@ -1366,11 +1378,15 @@ class StreamHandler {
         }
     }
 
+    private void fillPreKeyPool() {
+        preKeyPool.fill(getPreKeysUploadChunk())
+                .exceptionallyAsync(throwable -> socketHandler.handleFailure(STREAM, throwable));
+    }
+
     private void sendPreKeys() {
         var startId = socketHandler.keys().lastPreKeyId() + 1;
-        var toUpload = socketHandler.store().clientType() == ClientType.MOBILE ? MOBILE_PRE_KEYS_UPLOAD_CHUNK : WEB_PRE_KEYS_UPLOAD_CHUNK;
-        var preKeys = IntStream.range(startId, startId + toUpload)
-                .mapToObj(SignalPreKeyPair::random)
+        var preKeys = preKeyPool.take(startId, getPreKeysUploadChunk())
+                .stream()
                 .peek(socketHandler.keys()::addPreKey)
                 .map(SignalPreKeyPair::toNode)
                 .toList();
@@ -1382,6 +1398,11 @@ class StreamHandler {
                 Node.of("identity", socketHandler.keys().identityKeyPair().publicKey()),
                 Node.of("list", preKeys), socketHandler.keys().signedKeyPair().toNode()
         );
+        fillPreKeyPool();
+    }
+
+    private int getPreKeysUploadChunk() {
+        return socketHandler.store().clientType() == ClientType.MOBILE ? MOBILE_PRE_KEYS_UPLOAD_CHUNK : WEB_PRE_KEYS_UPLOAD_CHUNK;
     }
 
     private void startPairing(Node node, Node container) {
@@ -1509,8 +1530,7 @@ class StreamHandler {
         var attributes = Attributes.of()
                 .put("id", node.id())
                 .put("type", "result")
-                .put("to", JidServer.WHATSAPP.toJid())
-                .toMap();
+                .put("to", JidServer.WHATSAPP.toJid());
         var request = Node.of("iq", attributes, content);
         socketHandler.sendWithNoResponse(request);
     }
@@ -11,7 +11,6 @@ import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -20,11 +19,14 @@ import static it.auties.whatsapp.util.Specification.Signal.CURRENT_VERSION;
 
 public final class BytesHelper {
     private static final String CROCKFORD_CHARACTERS = "123456789ABCDEFGHJKLMNPQRSTVWXYZ";
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int DEFAULT_COMPRESSION_RATIO = 4;
+    private static final int MAX_BUFFER_HINT = 1024 * 1024;
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
 
     public static byte[] random(int length) {
-        var bytes = new byte[length];
-        ThreadLocalRandom.current().nextBytes(bytes);
-        return bytes;
+        return SecureRandoms.random(length);
     }
 
     public static byte[] concat(byte[]... entries) {
@@ -68,17 +70,46 @@ public final class BytesHelper {
     }
 
     public static byte[] compress(byte[] uncompressed) {
-        var deflater = new Deflater();
-        deflater.setInput(uncompressed);
-        deflater.finish();
-        var result = new ByteArrayOutputStream();
-        var buffer = new byte[1024];
-        while (!deflater.finished()) {
-            var count = deflater.deflate(buffer);
-            result.write(buffer, 0, count);
+        return compress(uncompressed, 0, uncompressed.length);
+    }
+
+    public static byte[] compress(byte[] uncompressed, int offset, int length) {
+        var deflater = DEFLATER.get();
+        try {
+            deflater.setInput(uncompressed, offset, length);
+            deflater.finish();
+            var result = new byte[Math.max(length / 2, MIN_BUFFER_SIZE)];
+            var count = 0;
+            while (!deflater.finished()) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+
+                count += deflater.deflate(result, count, result.length - count);
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    public static ByteBuffer compress(ByteBuffer uncompressed) {
+        var deflater = DEFLATER.get();
+        try {
+            deflater.setInput(uncompressed);
+            deflater.finish();
+            var result = allocate(Math.max(uncompressed.remaining() / 2, MIN_BUFFER_SIZE), uncompressed.isDirect());
+            while (!deflater.finished()) {
+                if (!result.hasRemaining()) {
+                    result = grow(result);
+                }
+
+                deflater.deflate(result);
+            }
+            return result.flip();
+        } finally {
+            deflater.reset();
         }
-        deflater.end();
-        return result.toByteArray();
     }
 
     public static byte[] decompress(byte[] compressed) {
@@ -86,22 +117,72 @@ public final class BytesHelper {
     }
 
     public static byte[] decompress(byte[] compressed, int offset, int length) {
+        var inflater = INFLATER.get();
         try {
-            var decompressor = new Inflater();
-            decompressor.setInput(compressed, offset, length);
-            var result = new ByteArrayOutputStream();
-            var buffer = new byte[1024];
-            while (!decompressor.finished()) {
-                var count = decompressor.inflate(buffer);
-                result.write(buffer, 0, count);
+            inflater.setInput(compressed, offset, length);
+            var result = new byte[Math.max(estimateDecompressedSize(length), MIN_BUFFER_SIZE)];
+            var count = 0;
+            while (!inflater.finished()) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+
+                var read = inflater.inflate(result, count, result.length - count);
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Malformed data: truncated input");
+                }
+
+                count += read;
             }
-            decompressor.end();
-            return result.toByteArray();
+            return count == result.length ? result : Arrays.copyOf(result, count);
         } catch (DataFormatException exception) {
             throw new IllegalArgumentException("Malformed data", exception);
+        } finally {
+            inflater.reset();
         }
     }
 
+    public static ByteBuffer decompress(ByteBuffer compressed) {
+        return decompress(compressed, estimateDecompressedSize(compressed.remaining()));
+    }
+
+    public static ByteBuffer decompress(ByteBuffer compressed, int sizeHint) {
+        var inflater = INFLATER.get();
+        try {
+            inflater.setInput(compressed);
+            // The hint only pre-sizes the output, which grows as needed, so it's bounded to avoid large allocations for small inputs
+            var result = allocate(Math.clamp(sizeHint, MIN_BUFFER_SIZE, MAX_BUFFER_HINT), compressed.isDirect());
+            while (!inflater.finished()) {
+                if (!result.hasRemaining()) {
+                    result = grow(result);
+                }
+
+                var read = inflater.inflate(result);
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Malformed data: truncated input");
+                }
+            }
+            return result.flip();
+        } catch (DataFormatException exception) {
+            throw new IllegalArgumentException("Malformed data", exception);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private static int estimateDecompressedSize(int length) {
+        return (int) Math.min((long) length * DEFAULT_COMPRESSION_RATIO, MAX_BUFFER_HINT);
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        return allocate(buffer.capacity() * 2, buffer.isDirect())
+                .put(buffer.flip());
+    }
+
     public static byte[] messageToBytes(Message message) {
         return messageToBytes(MessageContainer.of(message));
     }
@@ -1,15 +1,11 @@
 package it.auties.whatsapp.util;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.HexFormat;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
 public final class KeyHelper {
-    private static final String SHA_PRNG = "SHA1PRNG";
-
     public static byte[] withHeader(byte[] key) {
         if (key == null) {
             return null;
@@ -41,23 +37,12 @@ public final class KeyHelper {
     }
 
     public static int header() {
-        try {
-            var key = new byte[1];
-            var secureRandom = SecureRandom.getInstance(SHA_PRNG);
-            secureRandom.nextBytes(key);
-            return 1 + (15 & key[0]);
-        } catch (NoSuchAlgorithmException exception) {
-            throw new UnsupportedOperationException("Missing ShaPRNG implementation");
-        }
+        var key = SecureRandoms.random(1);
+        return 1 + (15 & key[0]);
     }
 
     public static int registrationId() {
-        try {
-            var secureRandom = SecureRandom.getInstance(SHA_PRNG);
-            return secureRandom.nextInt(16380) + 1;
-        } catch (NoSuchAlgorithmException exception) {
-            throw new UnsupportedOperationException("Missing ShaPRNG implementation");
-        }
+        return SecureRandoms.nextInt(16380) + 1;
     }
 
     public static byte[] identityId() {
@@ -73,23 +58,11 @@ public final class KeyHelper {
     }
 
     public static byte[] senderKey() {
-        try {
-            var key = new byte[32];
-            var secureRandom = SecureRandom.getInstance(SHA_PRNG);
-            secureRandom.nextBytes(key);
-            return key;
-        } catch (NoSuchAlgorithmException exception) {
-            throw new UnsupportedOperationException("Missing ShaPRNG implementation");
-        }
+        return SecureRandoms.random(32);
     }
 
     public static int senderKeyId() {
-        try {
-            var secureRandom = SecureRandom.getInstance(SHA_PRNG);
-            return secureRandom.nextInt(0, 2147483647);
-        } catch (NoSuchAlgorithmException exception) {
-            throw new UnsupportedOperationException("Missing ShaPRNG implementation");
-        }
+        return SecureRandoms.nextInt(0, 2147483647);
     }
 
     public static int agent() {
@@ -4,27 +4,46 @@ import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ScanResult;
 import it.auties.whatsapp.api.Whatsapp;
 import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerRegistry;
 import it.auties.whatsapp.listener.RegisterListener;
+import it.auties.whatsapp.listener.RegisterListenerProcessor;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.ServiceLoader;
 
+/**
+ * A utility class used to find the listeners annotated with {@link RegisterListener}.
+ * The registries generated at compile time by {@link RegisterListenerProcessor} are used if available,
+ * otherwise the classpath is scanned using ClassGraph.
+ */
 public final class ListenerScanner {
-    private static final List<Class<?>> cache;
+    private static List<Class<?>> loadListeners() {
+        var registries = ServiceLoader.load(ListenerRegistry.class)
+                .stream()
+                .map(ServiceLoader.Provider::get)
+                .toList();
+        if (registries.isEmpty()) {
+            return scanListeners();
+        }
 
-    static {
-        cache = loadListeners();
+        return registries.stream()
+                .map(ListenerRegistry::listeners)
+                .flatMap(Collection::stream)
+                .distinct()
+                .toList();
     }
 
-    private static List<Class<?>> loadListeners() {
+    private static List<Class<?>> scanListeners() {
         try (var scanner = createScanner()) {
             return scanner.getClassesWithAnnotation(RegisterListener.class).loadClasses();
         }
     }
 
     public static List<Listener> scan(Whatsapp whatsapp, boolean useCache) {
-        var listeners = useCache ? cache : loadListeners();
+        var listeners = useCache ? CacheHolder.cache : loadListeners();
         return listeners.stream()
                 .map(listener -> initialize(listener, whatsapp))
                 .toList();
@@ -56,4 +75,9 @@ public final class ListenerScanner {
             throw new IllegalArgumentException("Cannot initialize listener at %s: an error occurred while initializing the class(check its constructor)".formatted(listener.getName()), instantiationException);
         }
     }
+
+    // The listeners are only loaded the first time the cache is needed, not when this class is initialized
+    private static final class CacheHolder {
+        private static final List<Class<?>> cache = loadListeners();
+    }
 }
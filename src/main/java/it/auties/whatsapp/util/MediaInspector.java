@@ -0,0 +1,286 @@
+package it.auties.whatsapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Reads the dimensions and the duration of MP4/MOV, OGG and MP3 files from their headers in place, without copying the file or running external tools
+ */
+final class MediaInspector {
+    private static final int[][] MP3_BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448, 0}, // MPEG 1, layer I
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, 0}, // MPEG 1, layer II
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 0}, // MPEG 1, layer III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256, 0}, // MPEG 2 and 2.5, layer I
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, 0} // MPEG 2 and 2.5, layers II and III
+    };
+    private static final int[] MP3_SAMPLE_RATES = {44100, 48000, 32000, 0};
+    private static final int OPUS_SAMPLE_RATE = 48000;
+
+    private MediaInspector() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * The result of the inspection of a file
+     *
+     * @param width           the width of the video track, or 0 if unknown
+     * @param height          the height of the video track, or 0 if unknown
+     * @param durationSeconds the duration in seconds, or 0 if unknown
+     * @param streamable      whether the file can be read sequentially, that is whether its index comes before its data
+     */
+    record Result(int width, int height, double durationSeconds, boolean streamable) {
+
+    }
+
+    /**
+     * Inspects a file
+     *
+     * @param file the file to inspect
+     * @return the result, or an empty optional if the container isn't supported or is malformed
+     */
+    static Optional<Result> inspect(byte[] file) {
+        if (file == null || file.length < 12) {
+            return Optional.empty();
+        }
+
+        try {
+            if (isMp4(file)) {
+                return inspectMp4(file);
+            }
+
+            if (hasAscii(file, 0, "OggS")) {
+                return inspectOgg(file);
+            }
+
+            return inspectMp3(file);
+        } catch (IndexOutOfBoundsException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isMp4(byte[] file) {
+        return hasAscii(file, 4, "ftyp")
+                || hasAscii(file, 4, "moov")
+                || hasAscii(file, 4, "mdat")
+                || hasAscii(file, 4, "wide")
+                || hasAscii(file, 4, "free");
+    }
+
+    private static Optional<Result> inspectMp4(byte[] file) {
+        var state = new Mp4State();
+        readBoxes(file, 0, file.length, state, null);
+        if (state.timescale <= 0 && state.width == 0) {
+            return Optional.empty();
+        }
+
+        var duration = state.timescale > 0 ? (double) state.duration / state.timescale : 0;
+        var streamable = state.moovOffset >= 0 && (state.mdatOffset < 0 || state.moovOffset < state.mdatOffset);
+        return Optional.of(new Result(state.width, state.height, duration, streamable));
+    }
+
+    private static void readBoxes(byte[] file, int start, int end, Mp4State state, Mp4Track track) {
+        var offset = start;
+        while (offset + 8 <= end) {
+            var size = readInt(file, offset) & 0xFFFFFFFFL;
+            var type = new String(file, offset + 4, 4, StandardCharsets.US_ASCII);
+            var header = 8;
+            if (size == 1) {
+                size = readLong(file, offset + 8);
+                header = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+
+            if (size < header || offset + size > end) {
+                // Truncated box: only the boxes that were fully read can be trusted
+                if (type.equals("mdat") && state.mdatOffset < 0) {
+                    state.mdatOffset = offset;
+                }
+                return;
+            }
+
+            var payload = offset + header;
+            var boxEnd = (int) (offset + size);
+            switch (type) {
+                case "moov" -> {
+                    state.moovOffset = offset;
+                    readBoxes(file, payload, boxEnd, state, null);
+                }
+                case "mdat" -> {
+                    if (state.mdatOffset < 0) {
+                        state.mdatOffset = offset;
+                    }
+                }
+                case "trak" -> {
+                    var newTrack = new Mp4Track();
+                    readBoxes(file, payload, boxEnd, state, newTrack);
+                    if (newTrack.video && state.width == 0) {
+                        state.width = newTrack.width;
+                        state.height = newTrack.height;
+                    }
+                }
+                case "mdia" -> readBoxes(file, payload, boxEnd, state, track);
+                case "mvhd" -> readMovieHeader(file, payload, state);
+                case "tkhd" -> {
+                    if (track != null) {
+                        readTrackHeader(file, payload, track);
+                    }
+                }
+                case "hdlr" -> {
+                    if (track != null) {
+                        track.video = hasAscii(file, payload + 8, "vide");
+                    }
+                }
+                default -> {}
+            }
+
+            offset = boxEnd;
+        }
+    }
+
+    private static void readMovieHeader(byte[] file, int payload, Mp4State state) {
+        if (file[payload] == 1) {
+            state.timescale = readInt(file, payload + 20);
+            state.duration = readLong(file, payload + 24);
+        } else {
+            state.timescale = readInt(file, payload + 12);
+            state.duration = readInt(file, payload + 16) & 0xFFFFFFFFL;
+        }
+    }
+
+    private static void readTrackHeader(byte[] file, int payload, Mp4Track track) {
+        var dimensionsOffset = payload + (file[payload] == 1 ? 88 : 76);
+        // Dimensions are 16.16 fixed point numbers
+        track.width = readInt(file, dimensionsOffset) >>> 16;
+        track.height = readInt(file, dimensionsOffset + 4) >>> 16;
+    }
+
+    private static Optional<Result> inspectOgg(byte[] file) {
+        // The first packet of the first page identifies the codec
+        var segments = file[26] & 0xFF;
+        var packet = 27 + segments;
+        long sampleRate;
+        long preSkip = 0;
+        if (hasAscii(file, packet, "OpusHead")) {
+            sampleRate = OPUS_SAMPLE_RATE;
+            preSkip = readShortLittleEndian(file, packet + 10);
+        } else if (file[packet] == 1 && hasAscii(file, packet + 1, "vorbis")) {
+            sampleRate = readIntLittleEndian(file, packet + 12) & 0xFFFFFFFFL;
+        } else {
+            return Optional.empty();
+        }
+
+        // The granule position of the last page is the number of samples in the stream
+        for (var offset = file.length - 27; offset >= 0; offset--) {
+            if (hasAscii(file, offset, "OggS")) {
+                var granule = readLongLittleEndian(file, offset + 6);
+                if (granule < 0 || sampleRate <= 0) {
+                    return Optional.empty();
+                }
+
+                return Optional.of(new Result(0, 0, (double) Math.max(granule - preSkip, 0) / sampleRate, true));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static Optional<Result> inspectMp3(byte[] file) {
+        var offset = 0;
+        if (hasAscii(file, 0, "ID3")) {
+            var tagSize = ((file[6] & 0x7F) << 21) | ((file[7] & 0x7F) << 14) | ((file[8] & 0x7F) << 7) | (file[9] & 0x7F);
+            var hasFooter = (file[5] & 0x10) != 0;
+            offset = 10 + tagSize + (hasFooter ? 10 : 0);
+        }
+
+        if (offset + 4 > file.length || (file[offset] & 0xFF) != 0xFF || (file[offset + 1] & 0xE0) != 0xE0) {
+            return Optional.empty();
+        }
+
+        var header = readInt(file, offset);
+        var version = (header >>> 19) & 0x3; // 0: MPEG 2.5, 2: MPEG 2, 3: MPEG 1
+        var layer = (header >>> 17) & 0x3; // 1: layer III, 2: layer II, 3: layer I
+        var bitrateIndex = (header >>> 12) & 0xF;
+        var sampleRateIndex = (header >>> 10) & 0x3;
+        var mono = ((header >>> 6) & 0x3) == 3;
+        if (version == 1 || layer == 0 || sampleRateIndex == 3) {
+            return Optional.empty();
+        }
+
+        var mpeg1 = version == 3;
+        var sampleRate = MP3_SAMPLE_RATES[sampleRateIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+        var samplesPerFrame = layer == 3 ? 384 : layer == 1 && !mpeg1 ? 576 : 1152;
+        var bitrateTable = mpeg1 ? 3 - layer : layer == 3 ? 3 : 4;
+        var bitrate = MP3_BITRATES[bitrateTable][bitrateIndex] * 1000;
+
+        // Variable bitrate files store the number of frames in a Xing, Info or VBRI header in the first frame
+        var sideInfoLength = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        var xingOffset = offset + 4 + sideInfoLength;
+        if ((hasAscii(file, xingOffset, "Xing") || hasAscii(file, xingOffset, "Info")) && (readInt(file, xingOffset + 4) & 0x1) != 0) {
+            var frames = readInt(file, xingOffset + 8) & 0xFFFFFFFFL;
+            return Optional.of(new Result(0, 0, (double) frames * samplesPerFrame / sampleRate, true));
+        }
+
+        var vbriOffset = offset + 4 + 32;
+        if (hasAscii(file, vbriOffset, "VBRI")) {
+            var frames = readInt(file, vbriOffset + 14) & 0xFFFFFFFFL;
+            return Optional.of(new Result(0, 0, (double) frames * samplesPerFrame / sampleRate, true));
+        }
+
+        if (bitrate == 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new Result(0, 0, (file.length - offset) * 8.0 / bitrate, true));
+    }
+
+    private static boolean hasAscii(byte[] file, int offset, String value) {
+        if (offset < 0 || offset + value.length() > file.length) {
+            return false;
+        }
+
+        for (var i = 0; i < value.length(); i++) {
+            if (file[offset + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int readInt(byte[] file, int offset) {
+        return ((file[offset] & 0xFF) << 24) | ((file[offset + 1] & 0xFF) << 16) | ((file[offset + 2] & 0xFF) << 8) | (file[offset + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] file, int offset) {
+        return ((long) readInt(file, offset) << 32) | (readInt(file, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    private static int readShortLittleEndian(byte[] file, int offset) {
+        return (file[offset] & 0xFF) | ((file[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int readIntLittleEndian(byte[] file, int offset) {
+        return (file[offset] & 0xFF) | ((file[offset + 1] & 0xFF) << 8) | ((file[offset + 2] & 0xFF) << 16) | ((file[offset + 3] & 0xFF) << 24);
+    }
+
+    private static long readLongLittleEndian(byte[] file, int offset) {
+        return (readIntLittleEndian(file, offset) & 0xFFFFFFFFL) | ((long) readIntLittleEndian(file, offset + 4) << 32);
+    }
+
+    private static final class Mp4State {
+        private long moovOffset = -1;
+        private long mdatOffset = -1;
+        private int timescale;
+        private long duration;
+        private int width;
+        private int height;
+    }
+
+    private static final class Mp4Track {
+        private boolean video;
+        private int width;
+        private int height;
+    }
+}
@@ -1,9 +1,8 @@
 package it.auties.whatsapp.util;
 
-import it.auties.whatsapp.crypto.AesCbc;
-import it.auties.whatsapp.crypto.Hmac;
-import it.auties.whatsapp.crypto.Sha256;
-import it.auties.whatsapp.exception.HmacValidationException;
+import it.auties.whatsapp.crypto.MediaCipher;
+import it.auties.whatsapp.crypto.MediaDecipher;
+import it.auties.whatsapp.crypto.MediaEncipher;
 import it.auties.whatsapp.model.media.*;
 import it.auties.whatsapp.util.Specification.Whatsapp;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -14,11 +13,17 @@ import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
@@ -28,16 +33,29 @@ import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
 import java.net.http.HttpClient.Version;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
 import java.util.stream.IntStream;
+import java.util.zip.DeflaterInputStream;
 
 import static java.net.http.HttpRequest.BodyPublishers.ofByteArray;
 import static java.net.http.HttpResponse.BodyHandlers.ofString;
@@ -51,21 +69,23 @@ public final class Medias {
     private static final int PROFILE_PIC_SIZE = 640;
     private static final String DEFAULT_HOST = "mmg.whatsapp.net";
     private static final int THUMBNAIL_SIZE = 32;
+    private static final int MAX_BUFFER_HINT = 1024 * 1024;
     private static final String USER_AGENT = "Mozilla/5.0 (Linux; Android 13) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/114.0.5735.57 Mobile Safari/537.36";
 
     public static byte[] getProfilePic(byte[] file) {
-        try {
-            try (var inputStream = new ByteArrayInputStream(file)) {
-                var inputImage = ImageIO.read(inputStream);
-                var scaledImage = inputImage.getScaledInstance(PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, Image.SCALE_SMOOTH);
-                var outputImage = new BufferedImage(PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, BufferedImage.TYPE_INT_RGB);
-                var graphics2D = outputImage.createGraphics();
-                graphics2D.drawImage(scaledImage, 0, 0, null);
-                graphics2D.dispose();
-                try (var outputStream = new ByteArrayOutputStream()) {
-                    ImageIO.write(outputImage, "jpg", outputStream);
-                    return outputStream.toByteArray();
-                }
+        try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+            var reader = createImageReader(input);
+            if (reader == null) {
+                return file;
+            }
+
+            try {
+                // Only the centered square of the image is decoded, subsampled near the size of the profile picture
+                var region = getCenteredSquare(reader.getWidth(0), reader.getHeight(0));
+                var image = readSubsampledImage(reader, region, PROFILE_PIC_SIZE);
+                return writeScaledImage(image, PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, BufferedImage.TYPE_INT_RGB, "jpg");
+            } finally {
+                reader.dispose();
             }
         } catch (Throwable exception) {
             return file;
@@ -106,9 +126,53 @@ public final class Medias {
     }
 
     public static CompletableFuture<MediaFile> upload(byte[] file, AttachmentType type, MediaConnection mediaConnection) {
-        var auth = URLEncoder.encode(mediaConnection.auth(), StandardCharsets.UTF_8);
         var uploadData = type.inflatable() ? BytesHelper.compress(file) : file;
-        var mediaFile = prepareMediaFile(type, uploadData);
+        var keys = createMediaKeys(type);
+        var encipher = new MediaEncipher(keys);
+        var body = BytesHelper.concat(encipher.update(uploadData, 0, uploadData.length), encipher.finish());
+        var mediaFile = createMediaFile(keys == null ? null : body, encipher, keys);
+        return upload(mediaFile, ofByteArray(body), type, mediaConnection);
+    }
+
+    public static CompletableFuture<MediaFile> upload(Path file, AttachmentType type, MediaConnection mediaConnection) {
+        try {
+            var keys = createMediaKeys(type);
+            var encipher = new MediaEncipher(keys);
+            try (var input = new MediaCipherInputStream(openUploadStream(file, type), encipher)) {
+                input.transferTo(OutputStream.nullOutputStream());
+            }
+
+            var mediaFile = createMediaFile(null, encipher, keys);
+            var length = MediaEncipher.outputLength(encipher.fileLength(), keys != null);
+            var body = length == 0 ? BodyPublishers.noBody() : BodyPublishers.fromPublisher(BodyPublishers.ofInputStream(() -> openEncryptedStream(file, type, keys)), length);
+            return upload(mediaFile, body, type, mediaConnection);
+        } catch (Throwable error) {
+            return CompletableFuture.failedFuture(new RuntimeException("Cannot upload media", error));
+        }
+    }
+
+    public static CompletableFuture<MediaFile> upload(InputStream file, AttachmentType type, MediaConnection mediaConnection) {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile(UUID.randomUUID().toString(), "");
+            var keys = createMediaKeys(type);
+            var encipher = new MediaEncipher(keys);
+            try (var input = new MediaCipherInputStream(type.inflatable() ? new DeflaterInputStream(file) : file, encipher)) {
+                Files.copy(input, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            var mediaFile = createMediaFile(null, encipher, keys);
+            var spooled = spool;
+            return upload(mediaFile, BodyPublishers.ofFile(spool), type, mediaConnection)
+                    .whenComplete((result, error) -> deleteTempFile(spooled));
+        } catch (Throwable error) {
+            deleteTempFile(spool);
+            return CompletableFuture.failedFuture(new RuntimeException("Cannot upload media", error));
+        }
+    }
+
+    private static CompletableFuture<MediaFile> upload(MediaFile mediaFile, BodyPublisher body, AttachmentType type, MediaConnection mediaConnection) {
+        var auth = URLEncoder.encode(mediaConnection.auth(), StandardCharsets.UTF_8);
         var path = type.path()
                 .orElseThrow(() -> new UnsupportedOperationException(type + " cannot be uploaded"));
         var token = Base64.getUrlEncoder()
@@ -116,7 +180,7 @@ public final class Medias {
                 .encodeToString(Objects.requireNonNullElse(mediaFile.fileEncSha256(), mediaFile.fileSha256()));
         var uri = URI.create("https://%s/%s/%s?auth=%s&token=%s".formatted(DEFAULT_HOST, path, token, auth, token));
         var request = HttpRequest.newBuilder()
-                .POST(ofByteArray(Objects.requireNonNullElse(mediaFile.encryptedFile(), file)))
+                .POST(body)
                 .uri(uri)
                 .header("Content-Type", "application/octet-stream")
                 .header("Accept", "application/json")
@@ -139,72 +203,167 @@ public final class Medias {
         });
     }
 
-    private static MediaFile prepareMediaFile(AttachmentType type, byte[] uploadData) {
-        var fileSha256 = Sha256.calculate(uploadData);
-        if (type.keyName().isEmpty()) {
-            return new MediaFile(null, fileSha256, null, null, uploadData.length, null, null, null, null);
+    private static MediaKeys createMediaKeys(AttachmentType type) {
+        return type.keyName()
+                .map(MediaKeys::random)
+                .orElse(null);
+    }
+
+    private static MediaFile createMediaFile(byte[] encrypted, MediaEncipher encipher, MediaKeys keys) {
+        if (keys == null) {
+            return new MediaFile(null, encipher.fileSha256(), null, null, encipher.fileLength(), null, null, null, null);
         }
 
-        var keys = MediaKeys.random(type.keyName().orElseThrow());
-        var encryptedMedia = AesCbc.encrypt(keys.iv(), uploadData, keys.cipherKey());
-        var hmac = calculateMac(encryptedMedia, keys);
-        var encrypted = BytesHelper.concat(encryptedMedia, hmac);
-        var fileEncSha256 = Sha256.calculate(encrypted);
-        return new MediaFile(encrypted, fileSha256, fileEncSha256, keys.mediaKey(), uploadData.length, null, null, null, Clock.nowSeconds());
+        return new MediaFile(encrypted, encipher.fileSha256(), encipher.fileEncSha256(), keys.mediaKey(), encipher.fileLength(), null, null, null, Clock.nowSeconds());
+    }
+
+    private static InputStream openUploadStream(Path file, AttachmentType type) throws IOException {
+        var input = new BufferedInputStream(Files.newInputStream(file));
+        return type.inflatable() ? new DeflaterInputStream(input) : input;
     }
 
-    private static byte[] calculateMac(byte[] encryptedMedia, MediaKeys keys) {
-        var hmacInput = BytesHelper.concat(keys.iv(), encryptedMedia);
-        var hmac = Hmac.calculateSha256(hmacInput, keys.macKey());
-        return Arrays.copyOf(hmac, 10);
+    private static InputStream openEncryptedStream(Path file, AttachmentType type, MediaKeys keys) {
+        try {
+            return new MediaCipherInputStream(openUploadStream(file, type), new MediaEncipher(keys));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot open media", exception);
+        }
+    }
+
+    private static void deleteTempFile(Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+
+        }
     }
 
     public static CompletableFuture<Optional<byte[]>> downloadAsync(MutableAttachmentProvider<?> provider) {
+        var output = new ByteArrayOutputStream((int) Math.min(provider.mediaSize().orElse(0L), MAX_BUFFER_HINT));
+        return downloadAsync(provider, Channels.newChannel(output))
+                .thenApply(found -> found ? Optional.of(output.toByteArray()) : Optional.empty());
+    }
+
+    // The media is decrypted into a temporary file next to the target, which replaces the target only once the media was authenticated
+    public static CompletableFuture<Boolean> downloadAsync(MutableAttachmentProvider<?> provider, Path path) {
+        Path tempFile = null;
         try {
-            var url = provider.mediaUrl()
-                    .or(() -> provider.mediaDirectPath().map(Medias::createMediaUrl))
-                    .orElseThrow(() -> new NoSuchElementException("Missing url and path from media"));
-            var request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-            return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
-                    .thenApplyAsync(response -> handleResponse(provider, response));
+            var target = path.toAbsolutePath();
+            tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            var channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+            var downloadFile = tempFile;
+            return downloadAsync(provider, channel)
+                    .thenApply(found -> commitDownload(channel, downloadFile, target, found))
+                    .whenComplete((result, error) -> {
+                        closeChannel(channel);
+                        deleteTempFile(downloadFile);
+                    });
         } catch (Throwable error) {
+            deleteTempFile(tempFile);
             return CompletableFuture.failedFuture(new RuntimeException("Cannot download media", error));
         }
     }
 
-    public static String createMediaUrl(String directPath) {
-        return "https://%s%s".formatted(DEFAULT_HOST, directPath);
+    private static boolean commitDownload(FileChannel channel, Path tempFile, Path target, boolean found) {
+        if (!found) {
+            return false;
+        }
+
+        try {
+            channel.close();
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot save media", exception);
+        }
     }
 
-    private static Optional<byte[]> handleResponse(MutableAttachmentProvider<?> provider, HttpResponse<byte[]> response) {
-        if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND || response.statusCode() == HttpURLConnection.HTTP_GONE) {
-            return Optional.empty();
+    private static void closeChannel(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+
         }
+    }
 
-        var body = response.body();
-        var sha256 = Sha256.calculate(body);
-        Validate.isTrue(provider.mediaEncryptedSha256().isEmpty() || Arrays.equals(sha256, provider.mediaEncryptedSha256().get()),
-                "Cannot decode media: Invalid sha256 signature", SecurityException.class);
-        var encryptedMedia = Arrays.copyOf(body, body.length - 10);
-        var mediaMac = Arrays.copyOfRange(body, body.length - 10, body.length);
-        var keyName = provider.attachmentType().keyName();
-        if (keyName.isEmpty()) {
-            return Optional.of(encryptedMedia);
+    public static CompletableFuture<Boolean> downloadAsync(MutableAttachmentProvider<?> provider, WritableByteChannel channel) {
+        try {
+            var request = createDownloadRequest(provider);
+            return CLIENT.sendAsync(request, responseInfo -> createDownloadSubscriber(provider, responseInfo, channel))
+                    .thenApply(HttpResponse::body);
+        } catch (Throwable error) {
+            return CompletableFuture.failedFuture(new RuntimeException("Cannot download media", error));
         }
+    }
+
+    private static BodySubscriber<Boolean> createDownloadSubscriber(MutableAttachmentProvider<?> provider, ResponseInfo responseInfo, WritableByteChannel channel) {
+        if (responseInfo.statusCode() == HttpURLConnection.HTTP_NOT_FOUND || responseInfo.statusCode() == HttpURLConnection.HTTP_GONE) {
+            return BodySubscribers.replacing(false);
+        }
+
+        if (!isSuccessful(responseInfo.statusCode())) {
+            return BodySubscribers.mapping(BodySubscribers.discarding(), ignored -> {
+                throw new IllegalArgumentException("Erroneous status code: " + responseInfo.statusCode());
+            });
+        }
+
+        return new DecryptingBodySubscriber(createDecipher(provider), channel);
+    }
+
+    public static CompletableFuture<Optional<InputStream>> downloadStreamAsync(MutableAttachmentProvider<?> provider) {
+        try {
+            var request = createDownloadRequest(provider);
+            return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                    .thenApply(response -> handleStreamResponse(provider, response));
+        } catch (Throwable error) {
+            return CompletableFuture.failedFuture(new RuntimeException("Cannot download media", error));
+        }
+    }
+
+    private static boolean isSuccessful(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    private static HttpRequest createDownloadRequest(MutableAttachmentProvider<?> provider) {
+        var url = provider.mediaUrl()
+                .or(() -> provider.mediaDirectPath().map(Medias::createMediaUrl))
+                .orElseThrow(() -> new NoSuchElementException("Missing url and path from media"));
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .GET()
+                .build();
+    }
 
-        var mediaKey = provider.mediaKey();
-        if (mediaKey.isEmpty()) {
-            return Optional.of(encryptedMedia);
+    private static Optional<InputStream> handleStreamResponse(MutableAttachmentProvider<?> provider, HttpResponse<InputStream> response) {
+        if (!isSuccessful(response.statusCode())) {
+            try {
+                response.body().close();
+            } catch (IOException ignored) {
+
+            }
+            Validate.isTrue(response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND || response.statusCode() == HttpURLConnection.HTTP_GONE,
+                    "Erroneous status code: %s", response.statusCode());
+            return Optional.empty();
         }
 
-        var keys = MediaKeys.of(mediaKey.get(), keyName.get());
-        var hmac = calculateMac(encryptedMedia, keys);
-        Validate.isTrue(Arrays.equals(hmac, mediaMac), "media_decryption", HmacValidationException.class);
-        var decrypted = AesCbc.decrypt(keys.iv(), encryptedMedia, keys.cipherKey());
-        return Optional.of(decrypted);
+        var decipher = createDecipher(provider);
+        return Optional.of(new MediaCipherInputStream(response.body(), decipher));
+    }
+
+    private static MediaDecipher createDecipher(MutableAttachmentProvider<?> provider) {
+        var keys = provider.attachmentType()
+                .keyName()
+                .flatMap(keyName -> provider.mediaKey().map(mediaKey -> MediaKeys.of(mediaKey, keyName)))
+                .orElse(null);
+        return new MediaDecipher(keys, provider.mediaEncryptedSha256().orElse(null));
+    }
+
+    public static String createMediaUrl(String directPath) {
+        return "https://%s%s".formatted(DEFAULT_HOST, directPath);
     }
 
     public static Optional<String> getMimeType(String name) {
@@ -275,52 +434,23 @@ public final class Medias {
     }
 
     public static int getDuration(byte[] file) {
-        var input = createTempFile(file);
-        try {
-            var process = Runtime.getRuntime()
-                    .exec(new String[]{"ffprobe", "-v", "error", "-show_entries", "format=duration", "-of", "default=noprint_wrappers=1:nokey=1", input.toString()});
-            if (process.waitFor() != 0) {
-                return 0;
-            }
-            var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            return (int) Float.parseFloat(result);
-        } catch (Throwable throwable) {
-            return 0;
-        } finally {
-            try {
-                Files.deleteIfExists(input);
-            } catch (IOException ignored) {
-
-            }
-        }
+        return getMetadata(file).duration();
     }
 
     public static MediaDimensions getDimensions(byte[] file, boolean video) {
-        try {
-            if (!video) {
-                var originalImage = ImageIO.read(new ByteArrayInputStream(file));
-                return new MediaDimensions(originalImage.getWidth(), originalImage.getHeight());
-            }
+        return video ? getMetadata(file).dimensions() : getImageMetadata(file, null).dimensions();
+    }
 
-            var input = createTempFile(file);
-            try {
-                var process = Runtime.getRuntime()
-                        .exec(new String[]{"ffprobe", "-v", "error", "-select_streams", "v", "-show_entries", "stream=width,height", "-of", "json", input.toString()});
-                if (process.waitFor() != 0) {
-                    return MediaDimensions.defaultDimensions();
-                }
-                var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                var ffprobe = Json.readValue(result, FfprobeResult.class);
-                if (ffprobe.streams() == null || ffprobe.streams().isEmpty()) {
-                    return MediaDimensions.defaultDimensions();
-                }
-                return ffprobe.streams().getFirst();
-            } finally {
-                Files.deleteIfExists(input);
-            }
-        } catch (Exception throwable) {
-            return MediaDimensions.defaultDimensions();
-        }
+    /**
+     * Reads the dimensions and the duration of an MP4, MOV, OGG or MP3 file from its headers
+     *
+     * @param file the file to inspect
+     * @return the metadata, or empty metadata if the container isn't supported
+     */
+    public static MediaMetadata getMetadata(byte[] file) {
+        return MediaInspector.inspect(file)
+                .map(result -> new MediaMetadata(result.width(), result.height(), (int) result.durationSeconds()))
+                .orElseGet(MediaMetadata::empty);
     }
 
     private static Path createTempFile(byte[] data) {
@@ -350,50 +480,159 @@ public final class Medias {
     }
 
     private static Optional<byte[]> getImageThumbnail(byte[] file, Format format) {
-        try {
-            var image = ImageIO.read(new ByteArrayInputStream(file));
-            if (image == null) {
-                return Optional.empty();
+        return Optional.ofNullable(getImageMetadata(file, format).thumbnail());
+    }
+
+    /**
+     * Reads the dimensions of an image from its header and, if requested, generates its thumbnail.
+     * The image is never decoded at full resolution: the thumbnail is decoded using source subsampling near its size.
+     *
+     * @param file            the image
+     * @param thumbnailFormat the format of the thumbnail, or null if no thumbnail should be generated
+     * @return non-null metadata
+     */
+    public static ImageMetadata getImageMetadata(byte[] file, Format thumbnailFormat) {
+        try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+            var reader = createImageReader(input);
+            if (reader == null) {
+                return new ImageMetadata(MediaDimensions.defaultDimensions(), null);
             }
-            var type = image.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : image.getType();
-            var resizedImage = new BufferedImage(THUMBNAIL_SIZE, THUMBNAIL_SIZE, type);
-            var graphics = resizedImage.createGraphics();
-            graphics.drawImage(image, 0, 0, THUMBNAIL_SIZE, THUMBNAIL_SIZE, null);
-            graphics.dispose();
+
+            try {
+                var dimensions = new MediaDimensions(reader.getWidth(0), reader.getHeight(0));
+                var thumbnail = thumbnailFormat == Format.JPG || thumbnailFormat == Format.PNG ? getImageThumbnail(reader, thumbnailFormat) : null;
+                return new ImageMetadata(dimensions, thumbnail);
+            } finally {
+                reader.dispose();
+            }
+        } catch (Throwable throwable) {
+            return new ImageMetadata(MediaDimensions.defaultDimensions(), null);
+        }
+    }
+
+    private static byte[] getImageThumbnail(ImageReader reader, Format format) {
+        try {
+            // Decoding at twice the size of the thumbnail keeps some detail for the final bilinear scaling
+            var image = readSubsampledImage(reader, null, THUMBNAIL_SIZE * 2);
+            var type = format == Format.PNG ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            return writeScaledImage(image, THUMBNAIL_SIZE, THUMBNAIL_SIZE, type, format.name().toLowerCase());
+        } catch (IOException exception) {
+            return null;
+        }
+    }
+
+    private static ImageReader createImageReader(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+
+        var readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+
+        var reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    private static BufferedImage readSubsampledImage(ImageReader reader, Rectangle region, int targetSize) throws IOException {
+        var param = reader.getDefaultReadParam();
+        var width = reader.getWidth(0);
+        var height = reader.getHeight(0);
+        if (region != null) {
+            param.setSourceRegion(region);
+            width = region.width;
+            height = region.height;
+        }
+
+        var step = getSubsamplingStep(width, height, targetSize);
+        param.setSourceSubsampling(step, step, 0, 0);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Returns the largest square centered in an image
+     *
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @return a non-null rectangle
+     */
+    static Rectangle getCenteredSquare(int width, int height) {
+        var side = Math.min(width, height);
+        return new Rectangle((width - side) / 2, (height - side) / 2, side, side);
+    }
+
+    /**
+     * Returns the largest source subsampling step that keeps the shorter side of an image at least as long as the target size
+     *
+     * @param width      the width of the image
+     * @param height     the height of the image
+     * @param targetSize the size the image will be scaled to
+     * @return a positive step
+     */
+    static int getSubsamplingStep(int width, int height, int targetSize) {
+        return Math.max(1, Math.min(width, height) / targetSize);
+    }
+
+    private static byte[] writeScaledImage(BufferedImage image, int width, int height, int type, String formatName) throws IOException {
+        var scaledImage = new BufferedImage(width, height, type);
+        var graphics = scaledImage.createGraphics();
+        try {
             graphics.setComposite(AlphaComposite.Src);
             graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
             graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
             graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            var outputStream = new ByteArrayOutputStream();
-            ImageIO.write(resizedImage, format.name().toLowerCase(), outputStream);
-            return Optional.of(outputStream.toByteArray());
-        } catch (IOException exception) {
-            return Optional.empty();
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
         }
+
+        var outputStream = new ByteArrayOutputStream();
+        ImageIO.write(scaledImage, formatName, outputStream);
+        return outputStream.toByteArray();
     }
 
     private static Optional<byte[]> getVideoThumbnail(byte[] file) {
-        var input = createTempFile(file);
-        var output = createTempFile(null);
+        // Files whose index comes after their data can't be read from a pipe, as ffmpeg needs to seek
+        var streamable = MediaInspector.inspect(file)
+                .map(MediaInspector.Result::streamable)
+                .orElse(true);
+        var input = streamable ? null : createTempFile(file);
         try {
-            var process = Runtime.getRuntime()
-                    .exec(new String[]{"ffmpeg", "-ss", "00:00:00", "-i", input.toString(), "-y", "-vf", "scale=%s:-1".formatted(THUMBNAIL_SIZE), "-vframes", "1", "-f", "image2", output.toString()});
-            if (process.waitFor() != 0) {
+            var process = new ProcessBuilder("ffmpeg", "-v", "error", "-i", input == null ? "pipe:0" : input.toString(), "-vf", "scale=%s:-1".formatted(THUMBNAIL_SIZE), "-frames:v", "1", "-f", "image2pipe", "-vcodec", "mjpeg", "pipe:1")
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            var writer = CompletableFuture.runAsync(() -> writeProcessInput(process, input == null ? file : null));
+            var result = process.getInputStream().readAllBytes();
+            writer.join();
+            if (process.waitFor() != 0 || result.length == 0) {
                 return Optional.empty();
             }
-            return Optional.of(Files.readAllBytes(output));
+            return Optional.of(result);
         } catch (Throwable throwable) {
             return Optional.empty();
         } finally {
             try {
-                Files.delete(input);
-                Files.delete(output);
+                if (input != null) {
+                    Files.delete(input);
+                }
             } catch (IOException ignored) {
 
             }
         }
     }
 
+    private static void writeProcessInput(Process process, byte[] data) {
+        try (var input = process.getOutputStream()) {
+            if (data != null) {
+                input.write(data);
+            }
+        } catch (IOException ignored) {
+            // The process can stop reading as soon as it has decoded the first frame
+        }
+    }
+
     private static Optional<byte[]> getPdfThumbnail(byte[] file) {
         try (var document = PDDocument.load(file); var outputStream = new ByteArrayOutputStream()) {
             var renderer = new PDFRenderer(document);
@@ -426,6 +665,148 @@ public final class Medias {
         }
     }
 
+    private static final class DecryptingBodySubscriber implements BodySubscriber<Boolean> {
+        private final MediaDecipher decipher;
+        private final WritableByteChannel channel;
+        private final CompletableFuture<Boolean> result;
+        private final byte[] buffer;
+        private Flow.Subscription subscription;
+
+        private DecryptingBodySubscriber(MediaDecipher decipher, WritableByteChannel channel) {
+            this.decipher = decipher;
+            this.channel = channel;
+            this.result = new CompletableFuture<>();
+            this.buffer = new byte[8192];
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) {
+                return;
+            }
+
+            try {
+                for (var item : items) {
+                    while (item.hasRemaining()) {
+                        var length = Math.min(item.remaining(), buffer.length);
+                        item.get(buffer, 0, length);
+                        write(decipher.update(buffer, 0, length));
+                    }
+                }
+                subscription.request(1);
+            } catch (Throwable throwable) {
+                subscription.cancel();
+                result.completeExceptionally(throwable);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) {
+                return;
+            }
+
+            try {
+                write(decipher.finish());
+                result.complete(true);
+            } catch (Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        }
+
+        private void write(byte[] data) throws IOException {
+            var wrapped = ByteBuffer.wrap(data);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        }
+
+        @Override
+        public CompletionStage<Boolean> getBody() {
+            return result;
+        }
+    }
+
+    private static final class MediaCipherInputStream extends FilterInputStream {
+        private final MediaCipher cipher;
+        private final byte[] buffer;
+        private byte[] pending;
+        private int position;
+        private boolean finished;
+
+        private MediaCipherInputStream(InputStream input, MediaCipher cipher) {
+            super(input);
+            this.cipher = cipher;
+            this.buffer = new byte[8192];
+            this.pending = new byte[0];
+        }
+
+        @Override
+        public int read() throws IOException {
+            var single = new byte[1];
+            var read = read(single, 0, 1);
+            return read == -1 ? -1 : Byte.toUnsignedInt(single[0]);
+        }
+
+        @Override
+        public int read(byte[] output, int offset, int length) throws IOException {
+            while (position >= pending.length) {
+                if (finished) {
+                    return -1;
+                }
+
+                fill();
+            }
+
+            var read = Math.min(length, pending.length - position);
+            System.arraycopy(pending, position, output, offset, read);
+            position += read;
+            return read;
+        }
+
+        private void fill() throws IOException {
+            var read = in.read(buffer);
+            position = 0;
+            if (read == -1) {
+                finished = true;
+                pending = cipher.finish();
+                return;
+            }
+
+            pending = cipher.update(buffer, 0, read);
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            var skipped = 0L;
+            while (skipped < length && read() != -1) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return pending.length - position;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
     public enum Format {
         UNKNOWN,
         PNG,
@@ -443,10 +824,6 @@ public final class Medias {
         }
     }
 
-    private record FfprobeResult(List<MediaDimensions> streams) {
-
-    }
-
     public static Optional<byte[]> getAudioWaveForm(byte[] audioData) {
         try {
             var rawData = toFloatArray(audioData);
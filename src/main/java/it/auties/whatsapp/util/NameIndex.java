@@ -0,0 +1,151 @@
+package it.auties.whatsapp.util;
+
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * A concurrent multimap from normalized names to the values that use them, sorted by name to support prefix searches.
+ * Names are normalized using NFKC, stripped, case folded and truncated to {@link #MAX_KEY_LENGTH} characters, so the memory used by a key is bounded.
+ * The values associated with a name are kept in small immutable sets that are replaced on every change, so that updates stay atomic.
+ *
+ * @param <T> the type of the indexed values
+ */
+public final class NameIndex<T> {
+    /**
+     * The maximum number of characters of a name that are indexed
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final ConcurrentSkipListMap<String, Set<T>> values;
+
+    public NameIndex() {
+        this.values = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Normalizes a name so that it can be used as a key
+     *
+     * @param name the name to normalize
+     * @return the normalized name, or null if the name is null or blank
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        var result = foldCase(Normalizer.normalize(name, Normalizer.Form.NFKC).strip());
+        if (result.isEmpty()) {
+            return null;
+        }
+
+        return result.length() <= MAX_KEY_LENGTH ? result : result.substring(0, MAX_KEY_LENGTH);
+    }
+
+    // Folds every code point like String#equalsIgnoreCase does, so that names match regardless of the locale (e.g. the Turkish dotted and dotless i)
+    private static String foldCase(String name) {
+        var result = new StringBuilder(name.length());
+        name.codePoints()
+                .map(codePoint -> Character.toLowerCase(Character.toUpperCase(codePoint)))
+                .forEach(result::appendCodePoint);
+        return result.toString();
+    }
+
+    /**
+     * Associates a value with a normalized name
+     *
+     * @param key   the normalized name, or null to do nothing
+     * @param value the non-null value
+     */
+    public void add(String key, T value) {
+        Objects.requireNonNull(value, "Missing value");
+        if (key == null) {
+            return;
+        }
+
+        values.compute(key, (ignored, oldValues) -> {
+            if (oldValues == null) {
+                return Set.of(value);
+            }
+
+            if (oldValues.contains(value)) {
+                return oldValues;
+            }
+
+            var newValues = new HashSet<>(oldValues);
+            newValues.add(value);
+            return Set.copyOf(newValues);
+        });
+    }
+
+    /**
+     * Removes the association between a value and a normalized name
+     *
+     * @param key   the normalized name, or null to do nothing
+     * @param value the non-null value
+     */
+    public void remove(String key, T value) {
+        Objects.requireNonNull(value, "Missing value");
+        if (key == null) {
+            return;
+        }
+
+        values.computeIfPresent(key, (ignored, oldValues) -> {
+            if (!oldValues.contains(value)) {
+                return oldValues;
+            }
+
+            var newValues = new HashSet<>(oldValues);
+            newValues.remove(value);
+            return newValues.isEmpty() ? null : Set.copyOf(newValues);
+        });
+    }
+
+    /**
+     * Returns the values associated with a name once normalized
+     *
+     * @param name the name to search
+     * @return a non-null stream
+     */
+    public Stream<T> find(String name) {
+        var key = normalize(name);
+        if (key == null) {
+            return Stream.empty();
+        }
+
+        var result = values.get(key);
+        return result == null ? Stream.empty() : result.stream();
+    }
+
+    /**
+     * Returns the values associated with a name that starts with a prefix once normalized, sorted by name
+     *
+     * @param prefix the prefix to search
+     * @return a non-null stream
+     */
+    public Stream<T> findByPrefix(String prefix) {
+        var key = normalize(prefix);
+        if (key == null) {
+            return Stream.empty();
+        }
+
+        return values.tailMap(key)
+                .entrySet()
+                .stream()
+                .takeWhile(entry -> entry.getKey().startsWith(key))
+                .flatMap(entry -> entry.getValue().stream())
+                .distinct();
+    }
+
+    /**
+     * Returns the number of distinct names in this index
+     *
+     * @return an int
+     */
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,121 @@
+package it.auties.whatsapp.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * A shared source of cryptographically secure randomness.
+ * Every thread gets its own DRBG, so generating keys and paddings doesn't contend on a single instance or seed a new generator from the OS entropy source every time.
+ * Each generator is reseeded after it has produced {@link #RESEED_BYTES} bytes or after {@link #RESEED_INTERVAL_NANOS} have passed, whichever comes first.
+ */
+public final class SecureRandoms {
+    private static final String DRBG = "DRBG";
+    private static final long RESEED_BYTES = 1024 * 1024;
+    private static final long RESEED_INTERVAL_NANOS = 60L * 60 * 1_000_000_000;
+    private static final ThreadLocal<Generator> GENERATOR = ThreadLocal.withInitial(Generator::new);
+
+    private SecureRandoms() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Returns the secure random instance of the calling thread.
+     * The instance must not be shared with other threads.
+     *
+     * @param length the number of bytes that the caller is going to consume, used to decide when to reseed
+     * @return a non-null secure random
+     */
+    public static SecureRandom current(int length) {
+        return GENERATOR.get().use(length);
+    }
+
+    /**
+     * Fills an array with random bytes
+     *
+     * @param bytes the non-null array to fill
+     */
+    public static void nextBytes(byte[] bytes) {
+        current(bytes.length).nextBytes(bytes);
+    }
+
+    /**
+     * Returns an array of random bytes
+     *
+     * @param length the length of the array
+     * @return a non-null array
+     */
+    public static byte[] random(int length) {
+        var bytes = new byte[length];
+        nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a random int between zero, inclusive, and the bound, exclusive
+     *
+     * @param bound the positive upper bound
+     * @return an int
+     */
+    public static int nextInt(int bound) {
+        return current(Integer.BYTES).nextInt(bound);
+    }
+
+    /**
+     * Returns a random int between the origin, inclusive, and the bound, exclusive
+     *
+     * @param origin the lower bound
+     * @param bound  the upper bound, must be greater than the origin
+     * @return an int
+     */
+    public static int nextInt(int origin, int bound) {
+        return current(Integer.BYTES).nextInt(origin, bound);
+    }
+
+    /**
+     * Returns a random long
+     *
+     * @return a long
+     */
+    public static long nextLong() {
+        return current(Long.BYTES).nextLong();
+    }
+
+    private static final class Generator {
+        private SecureRandom random;
+        private long generatedBytes;
+        private long seededAt;
+
+        private Generator() {
+            this.random = newInstance();
+            this.seededAt = System.nanoTime();
+        }
+
+        private SecureRandom use(int length) {
+            if (generatedBytes >= RESEED_BYTES || System.nanoTime() - seededAt >= RESEED_INTERVAL_NANOS) {
+                reseed();
+            }
+
+            generatedBytes += length;
+            return random;
+        }
+
+        private void reseed() {
+            try {
+                random.reseed();
+            } catch (UnsupportedOperationException exception) {
+                this.random = newInstance();
+            }
+
+            this.generatedBytes = 0;
+            this.seededAt = System.nanoTime();
+        }
+
+        private static SecureRandom newInstance() {
+            try {
+                return SecureRandom.getInstance(DRBG);
+            } catch (NoSuchAlgorithmException exception) {
+                return new SecureRandom();
+            }
+        }
+    }
+}
@@ -78,4 +78,8 @@ open module it.auties.cobalt {
     exports it.auties.whatsapp.model.jid;
     exports it.auties.whatsapp.model.newsletter;
     exports it.auties.whatsapp.registration;
+
+    // Listeners registered at compile time
+    uses it.auties.whatsapp.listener.ListenerRegistry;
+    provides javax.annotation.processing.Processor with it.auties.whatsapp.listener.RegisterListenerProcessor;
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package it.auties.whatsapp.crypto;
+
+import it.auties.whatsapp.util.BytesHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class NoiseTransportTest {
+    private static final int[] FRAME_SIZES = {0, 1, 15, 16, 17, 1024, 1025, 70_000, 3};
+
+    @Test
+    public void testEncryptMatchesAesGcm() {
+        var writeKey = BytesHelper.random(32);
+        var transport = new NoiseTransport(writeKey, BytesHelper.random(32));
+        for (var counter = 0; counter < FRAME_SIZES.length; counter++) {
+            var plaintext = BytesHelper.random(FRAME_SIZES[counter]);
+            var output = new byte[transport.encryptedLength(plaintext.length) + 5];
+            var written = transport.encrypt(plaintext, output, 5);
+            Assertions.assertEquals(transport.encryptedLength(plaintext.length), written);
+            Assertions.assertArrayEquals(AesGcm.encrypt(counter, plaintext, writeKey), Arrays.copyOfRange(output, 5, 5 + written), "Frame %s".formatted(counter));
+        }
+    }
+
+    @Test
+    public void testDecryptMatchesAesGcm() {
+        var readKey = BytesHelper.random(32);
+        var transport = new NoiseTransport(BytesHelper.random(32), readKey);
+        for (var counter = 0; counter < FRAME_SIZES.length; counter++) {
+            var plaintext = BytesHelper.random(FRAME_SIZES[counter]);
+            var result = transport.decrypt(AesGcm.encrypt(counter, plaintext, readKey));
+            var decrypted = new byte[result.remaining()];
+            result.get(decrypted);
+            Assertions.assertArrayEquals(plaintext, decrypted, "Frame %s".formatted(counter));
+        }
+    }
+
+    @Test
+    public void testDirectionsKeepSeparateCounters() {
+        var writeKey = BytesHelper.random(32);
+        var readKey = BytesHelper.random(32);
+        var transport = new NoiseTransport(writeKey, readKey);
+        for (var counter = 0; counter < 3; counter++) {
+            var incoming = BytesHelper.random(48);
+            var result = transport.decrypt(AesGcm.encrypt(counter, incoming, readKey));
+            var decrypted = new byte[result.remaining()];
+            result.get(decrypted);
+            Assertions.assertArrayEquals(incoming, decrypted);
+
+            var outgoing = BytesHelper.random(64);
+            var ciphertext = new byte[transport.encryptedLength(outgoing.length)];
+            transport.encrypt(outgoing, ciphertext, 0);
+            Assertions.assertArrayEquals(AesGcm.encrypt(counter, outgoing, writeKey), ciphertext);
+        }
+    }
+
+    @Test
+    public void testTamperedFrameIsRejected() {
+        var readKey = BytesHelper.random(32);
+        var transport = new NoiseTransport(BytesHelper.random(32), readKey);
+        var ciphertext = AesGcm.encrypt(0, BytesHelper.random(32), readKey);
+        ciphertext[0] ^= 1;
+        Assertions.assertThrows(RuntimeException.class, () -> transport.decrypt(ciphertext));
+    }
+}
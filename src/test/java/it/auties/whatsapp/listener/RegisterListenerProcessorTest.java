@@ -0,0 +1,35 @@
+package it.auties.whatsapp.listener;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// The tests are compiled with RegisterListenerProcessor, so the registry of this package is generated at build time
+public class RegisterListenerProcessorTest {
+    private static final String REGISTRY_NAME = "it.auties.whatsapp.listener.CobaltListenerRegistry";
+
+    @Test
+    public void testRegistryListsAnnotatedListeners() throws ReflectiveOperationException {
+        var registry = (ListenerRegistry) Class.forName(REGISTRY_NAME)
+                .getConstructor()
+                .newInstance();
+        Assertions.assertTrue(registry.listeners().contains(PublicListener.class), "Missing public listener");
+        Assertions.assertTrue(registry.listeners().contains(PackagePrivateListener.class), "Missing package private listener");
+        Assertions.assertFalse(registry.listeners().contains(UnregisteredListener.class), "Unexpected unregistered listener");
+    }
+
+    @RegisterListener
+    public static class PublicListener implements Listener {
+
+    }
+
+    @RegisterListener
+    static class PackagePrivateListener implements Listener {
+        public PackagePrivateListener() {
+
+        }
+    }
+
+    public static class UnregisteredListener implements Listener {
+
+    }
+}
@@ -0,0 +1,93 @@
+package it.auties.whatsapp.model.info;
+
+import it.auties.whatsapp.model.jid.Jid;
+import it.auties.whatsapp.model.message.model.ChatMessageKey;
+import it.auties.whatsapp.model.message.standard.ReactionMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class ReactionIndexTest {
+    private static final Jid GROUP = Jid.of("120363025246125486@g.us");
+    private static final Jid ALICE = Jid.of("393495089819@s.whatsapp.net");
+    private static final Jid BOB = Jid.of("393495089820@s.whatsapp.net");
+
+    @Test
+    public void testNewerReactionReplacesPrevious() {
+        var index = new ReactionIndex(new ArrayList<>());
+        var first = reaction(ALICE, false, "👍", 1);
+        var second = reaction(ALICE, false, "❤️", 2);
+        Assertions.assertTrue(index.add(first));
+        Assertions.assertTrue(index.add(second));
+        Assertions.assertEquals(List.of(second), index.reactions());
+        Assertions.assertEquals(Map.of("❤️", 1), index.counts());
+    }
+
+    @Test
+    public void testOlderReactionIsIgnored() {
+        var index = new ReactionIndex(new ArrayList<>());
+        var newer = reaction(ALICE, false, "👍", 5);
+        index.add(newer);
+        Assertions.assertFalse(index.add(reaction(ALICE, false, "❤️", 4)));
+        Assertions.assertEquals(List.of(newer), index.reactions());
+        Assertions.assertEquals(Map.of("👍", 1), index.counts());
+    }
+
+    @Test
+    public void testEmptyReactionRemovesPrevious() {
+        var index = new ReactionIndex(new ArrayList<>());
+        index.add(reaction(ALICE, false, "👍", 1));
+        index.add(reaction(BOB, false, "👍", 1));
+        Assertions.assertTrue(index.add(reaction(ALICE, false, "", 2)));
+        Assertions.assertEquals(1, index.reactions().size());
+        Assertions.assertEquals(Map.of("👍", 1), index.counts());
+
+        index.add(reaction(BOB, false, null, 3));
+        Assertions.assertEquals(List.of(), index.reactions());
+        Assertions.assertEquals(Map.of(), index.counts());
+    }
+
+    @Test
+    public void testSendersAreComparedWithoutDevice() {
+        var index = new ReactionIndex(new ArrayList<>());
+        index.add(reaction(Jid.of("393495089819:3@s.whatsapp.net"), false, "👍", 1));
+        var replacement = reaction(Jid.of("393495089819:7@s.whatsapp.net"), false, "😂", 2);
+        index.add(replacement);
+        Assertions.assertEquals(List.of(replacement), index.reactions());
+    }
+
+    @Test
+    public void testOwnReactionsShareOneSlot() {
+        var index = new ReactionIndex(new ArrayList<>());
+        index.add(reaction(ALICE, true, "👍", 1));
+        var replacement = reaction(BOB, true, "😂", 2);
+        index.add(replacement);
+        Assertions.assertEquals(List.of(replacement), index.reactions());
+    }
+
+    @Test
+    public void testLegacyListIsCompacted() {
+        var replaced = reaction(ALICE, false, "👍", 1);
+        var latest = reaction(ALICE, false, "❤️", 2);
+        var other = reaction(BOB, false, "👍", 1);
+        var removed = reaction(BOB, false, "", 3);
+        var persisted = new ArrayList<>(List.of(replaced, latest, other));
+        var index = new ReactionIndex(persisted);
+        Assertions.assertEquals(List.of(latest, other), persisted);
+        Assertions.assertEquals(Map.of("❤️", 1, "👍", 1), index.counts());
+
+        var withRemoval = new ArrayList<>(List.of(other, removed));
+        var compacted = new ReactionIndex(withRemoval);
+        Assertions.assertEquals(List.of(), withRemoval);
+        Assertions.assertEquals(Map.of(), compacted.counts());
+    }
+
+    private static ReactionMessage reaction(Jid sender, boolean fromMe, String content, long timestampSeconds) {
+        var key = new ChatMessageKey(GROUP, fromMe, ChatMessageKey.randomId(), sender);
+        return new ReactionMessage(key, content, Optional.empty(), timestampSeconds);
+    }
+}
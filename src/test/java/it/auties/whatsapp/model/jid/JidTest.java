@@ -0,0 +1,126 @@
+package it.auties.whatsapp.model.jid;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class JidTest {
+    private static final List<String> JIDS = List.of(
+            "393495089819@s.whatsapp.net",
+            "393495089819:12@s.whatsapp.net",
+            "393495089819_1@s.whatsapp.net",
+            "393495089819_1:5@s.whatsapp.net",
+            "393495089819_abc@s.whatsapp.net",
+            "+393495089819@s.whatsapp.net",
+            "120363025246125486@g.us",
+            "393495089819-1614171322@g.us",
+            "status@broadcast",
+            "1234567890@broadcast",
+            "123456789012345:3@lid",
+            "120363166526281733@newsletter",
+            "server@c.us",
+            "0@c.us",
+            "393495089819",
+            "393495089819:2"
+    );
+
+    @Test
+    public void testSinglePassParseMatchesSplitParse() {
+        for (var jid : JIDS) {
+            var expected = parseWithSplit(jid);
+            var actual = Jid.of(jid);
+            Assertions.assertEquals(expected.user(), actual.user(), jid);
+            Assertions.assertEquals(expected.server(), actual.server(), jid);
+            Assertions.assertEquals(expected.hasDevice(), actual.hasDevice(), jid);
+            Assertions.assertEquals(expected.device(), actual.device(), jid);
+            Assertions.assertEquals(expected.hasAgent(), actual.hasAgent(), jid);
+            Assertions.assertEquals(expected.agent(), actual.agent(), jid);
+        }
+    }
+
+    @Test
+    public void testParseComponents() {
+        var jid = Jid.of("393495089819_1:5@s.whatsapp.net");
+        Assertions.assertEquals("393495089819", jid.user());
+        Assertions.assertEquals(JidServer.WHATSAPP, jid.server());
+        Assertions.assertEquals(5, jid.device());
+        Assertions.assertEquals(1, jid.agent());
+        Assertions.assertEquals("393495089819_1:5@s.whatsapp.net", jid.toString());
+    }
+
+    @Test
+    public void testToStringRoundTrip() {
+        for (var jid : JIDS) {
+            var parsed = Jid.of(jid);
+            Assertions.assertEquals(parsed, Jid.of(parsed.toString()), jid);
+        }
+    }
+
+    @Test
+    public void testServerJid() {
+        var jid = Jid.ofServer(JidServer.GROUP);
+        Assertions.assertNull(jid.user());
+        Assertions.assertEquals("g.us", jid.toString());
+        Assertions.assertTrue(jid.isServerJid(JidServer.GROUP));
+    }
+
+    @Test
+    public void testInvalidDeviceIsRejected() {
+        Assertions.assertThrows(NumberFormatException.class, () -> Jid.of("393495089819:abc@s.whatsapp.net", JidServer.WHATSAPP));
+    }
+
+    @Test
+    public void testParsedJidsAreCanonical() {
+        var first = Jid.of("393495089819:3@s.whatsapp.net");
+        var second = Jid.of("393495089819:3@s.whatsapp.net");
+        Assertions.assertSame(first, second);
+        Assertions.assertSame(Jid.of("393495089819@s.whatsapp.net"), first.withoutDevice());
+        Assertions.assertSame(first, new Jid("393495089819", JidServer.WHATSAPP, 3, null).intern());
+    }
+
+    @Test
+    public void testEqualsAndHashCodeIgnoreIdentity() {
+        var parsed = Jid.of("120363025246125486@g.us");
+        var constructed = new Jid("120363025246125486", JidServer.GROUP, null, null);
+        Assertions.assertEquals(parsed, constructed);
+        Assertions.assertEquals(parsed.hashCode(), constructed.hashCode());
+        Assertions.assertNotEquals(parsed, new Jid("120363025246125486", JidServer.GROUP, 0, null));
+    }
+
+    // The parser used before jids were parsed in a single pass
+    private static Jid parseWithSplit(String jid) {
+        var server = JidServer.of(jid);
+        var complexUser = jid;
+        for (var entry : JidServer.values()) {
+            complexUser = complexUser.replace("@%s".formatted(entry), "");
+        }
+
+        if (complexUser.contains(":")) {
+            var simpleUser = complexUser.split(":", 2);
+            var user = simpleUser[0];
+            var device = Integer.parseUnsignedInt(simpleUser[1]);
+            if (user.contains("_")) {
+                var simpleUserAgent = user.split("_", 2);
+                return new Jid(simpleUserAgent[0], server, device, tryParseAgent(simpleUserAgent[1]));
+            }
+
+            return new Jid(user, server, device, null);
+        }
+
+        if (!complexUser.contains("_")) {
+            return new Jid(complexUser, server, null, null);
+        }
+
+        var simpleUserAgent = complexUser.split("_", 2);
+        return new Jid(simpleUserAgent[0], server, null, tryParseAgent(simpleUserAgent[1]));
+    }
+
+    private static Integer tryParseAgent(String string) {
+        try {
+            return Integer.parseUnsignedInt(string);
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+}
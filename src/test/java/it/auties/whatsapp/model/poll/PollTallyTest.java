@@ -0,0 +1,73 @@
+package it.auties.whatsapp.model.poll;
+
+import it.auties.whatsapp.crypto.Sha256;
+import it.auties.whatsapp.model.jid.Jid;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class PollTallyTest {
+    private static final PollOption FIRST = new PollOption("First");
+    private static final PollOption SECOND = new PollOption("Second");
+    private static final PollOption THIRD = new PollOption("Third");
+    private static final Jid ALICE = Jid.of("393495089819@s.whatsapp.net");
+    private static final Jid BOB = Jid.of("393495089820@s.whatsapp.net");
+
+    @Test
+    public void testLastVoteWins() {
+        var tally = new PollTally(List.of(FIRST, SECOND, THIRD), List.of());
+        Assertions.assertFalse(tally.vote(ALICE, List.of(FIRST)));
+        Assertions.assertTrue(tally.vote(ALICE, List.of(SECOND, THIRD)));
+        Assertions.assertEquals(List.of(SECOND, THIRD), tally.findVotes(ALICE));
+        Assertions.assertEquals(Map.of(FIRST, 0, SECOND, 1, THIRD, 1), tally.results());
+        Assertions.assertEquals(1, tally.votersCount());
+    }
+
+    @Test
+    public void testWithdrawnVoteIsRemoved() {
+        var tally = new PollTally(List.of(FIRST, SECOND), List.of());
+        tally.vote(ALICE, List.of(FIRST));
+        tally.vote(BOB, List.of(FIRST));
+        Assertions.assertTrue(tally.vote(ALICE, List.of()));
+        Assertions.assertEquals(List.of(), tally.findVotes(ALICE));
+        Assertions.assertEquals(Map.of(FIRST, 1, SECOND, 0), tally.results());
+        Assertions.assertEquals(1, tally.votersCount());
+    }
+
+    @Test
+    public void testExistingVotesAreCounted() {
+        var selectedOptions = List.of(new SelectedPollOption(ALICE, "First"), new SelectedPollOption(ALICE, "Second"), new SelectedPollOption(BOB, "Second"));
+        var tally = new PollTally(List.of(FIRST, SECOND), selectedOptions);
+        Assertions.assertEquals(Map.of(FIRST, 1, SECOND, 2), tally.results());
+        Assertions.assertEquals(2, tally.votersCount());
+
+        tally.vote(ALICE, List.of(FIRST));
+        Assertions.assertEquals(Map.of(FIRST, 1, SECOND, 1), tally.results());
+    }
+
+    @Test
+    public void testResultsKeepPollOrder() {
+        var tally = new PollTally(List.of(THIRD, FIRST, SECOND), List.of());
+        tally.vote(ALICE, List.of(SECOND));
+        Assertions.assertEquals(List.of(THIRD, FIRST, SECOND), List.copyOf(tally.results().keySet()));
+    }
+
+    @Test
+    public void testResultsAreSnapshots() {
+        var tally = new PollTally(List.of(FIRST), List.of());
+        var before = tally.results();
+        tally.vote(ALICE, List.of(FIRST));
+        Assertions.assertEquals(0, before.get(FIRST));
+        Assertions.assertEquals(1, tally.results().get(FIRST));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> tally.results().put(FIRST, 2));
+    }
+
+    @Test
+    public void testFindOptionByHash() {
+        var tally = new PollTally(List.of(FIRST, SECOND), List.of());
+        Assertions.assertEquals(SECOND, tally.findOptionByHash(Sha256.calculate("Second")).orElseThrow());
+        Assertions.assertTrue(tally.findOptionByHash(Sha256.calculate("Missing")).isEmpty());
+    }
+}
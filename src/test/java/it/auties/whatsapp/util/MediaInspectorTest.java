@@ -0,0 +1,163 @@
+package it.auties.whatsapp.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+public class MediaInspectorTest {
+    private static final double DELTA = 0.001;
+
+    @Test
+    public void testMp4ReadsDurationAndVideoDimensions() {
+        var moov = box("moov", movieHeader(1000, 12_500), track("soun", 0, 0), track("vide", 1280, 720));
+        var file = concat(box("ftyp", ascii("isom"), new byte[4]), moov, box("mdat", new byte[64]));
+        var result = MediaInspector.inspect(file).orElseThrow();
+        Assertions.assertEquals(1280, result.width());
+        Assertions.assertEquals(720, result.height());
+        Assertions.assertEquals(12.5, result.durationSeconds(), DELTA);
+        Assertions.assertTrue(result.streamable(), "The index comes before the data");
+    }
+
+    @Test
+    public void testMp4WithDataBeforeIndexIsNotStreamable() {
+        var moov = box("moov", movieHeader(600, 1200), track("vide", 640, 480));
+        var file = concat(box("ftyp", ascii("isom"), new byte[4]), box("mdat", new byte[64]), moov);
+        var result = MediaInspector.inspect(file).orElseThrow();
+        Assertions.assertEquals(2, result.durationSeconds(), DELTA);
+        Assertions.assertFalse(result.streamable(), "The data comes before the index");
+    }
+
+    @Test
+    public void testMp4WithTruncatedBoxKeepsCompleteBoxes() {
+        var moov = box("moov", movieHeader(1000, 3000), track("vide", 320, 240));
+        var truncatedData = ByteBuffer.allocate(16).putInt(1024).put(ascii("mdat")).array();
+        var file = concat(box("ftyp", ascii("isom"), new byte[4]), moov, truncatedData);
+        var result = MediaInspector.inspect(file).orElseThrow();
+        Assertions.assertEquals(320, result.width());
+        Assertions.assertEquals(3, result.durationSeconds(), DELTA);
+    }
+
+    @Test
+    public void testOpusDurationSubtractsPreSkip() {
+        var head = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN)
+                .put(ascii("OpusHead"))
+                .put((byte) 1)
+                .put((byte) 1)
+                .putShort((short) 312)
+                .putInt(48000)
+                .array();
+        var file = concat(oggPage(0, head), oggPage(48000 * 3 + 312, new byte[8]));
+        var result = MediaInspector.inspect(file).orElseThrow();
+        Assertions.assertEquals(3, result.durationSeconds(), DELTA);
+        Assertions.assertEquals(0, result.width());
+    }
+
+    @Test
+    public void testVorbisDurationUsesSampleRate() {
+        var head = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 1)
+                .put(ascii("vorbis"))
+                .putInt(0)
+                .put((byte) 2)
+                .putInt(44100)
+                .array();
+        var file = concat(oggPage(0, head), oggPage(44100 * 2, new byte[8]));
+        var result = MediaInspector.inspect(file).orElseThrow();
+        Assertions.assertEquals(2, result.durationSeconds(), DELTA);
+    }
+
+    @Test
+    public void testConstantBitrateMp3() {
+        // MPEG 1, layer III, 128 kbps, 44.1 kHz, stereo
+        var file = new byte[16_000];
+        System.arraycopy(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00}, 0, file, 0, 4);
+        var result = MediaInspector.inspect(file).orElseThrow();
+        Assertions.assertEquals(1, result.durationSeconds(), DELTA);
+    }
+
+    @Test
+    public void testXingMp3AfterId3Tag() {
+        var tag = new byte[]{'I', 'D', '3', 3, 0, 0, 0, 0, 0, 10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        var frame = ByteBuffer.allocate(512)
+                .put(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00})
+                .put(new byte[32])
+                .put(ascii("Xing"))
+                .putInt(1)
+                .putInt(100)
+                .array();
+        var result = MediaInspector.inspect(concat(tag, frame)).orElseThrow();
+        Assertions.assertEquals(100 * 1152 / 44100.0, result.durationSeconds(), DELTA);
+    }
+
+    @Test
+    public void testUnknownContainer() {
+        Assertions.assertTrue(MediaInspector.inspect(ascii("this is not a media file")).isEmpty());
+        Assertions.assertTrue(MediaInspector.inspect(new byte[4]).isEmpty());
+    }
+
+    private static byte[] movieHeader(int timescale, int duration) {
+        var payload = ByteBuffer.allocate(100)
+                .putInt(0)
+                .putInt(0)
+                .putInt(0)
+                .putInt(timescale)
+                .putInt(duration)
+                .array();
+        return box("mvhd", payload);
+    }
+
+    private static byte[] track(String handler, int width, int height) {
+        var trackHeader = ByteBuffer.allocate(84)
+                .position(76)
+                .putInt(width << 16)
+                .putInt(height << 16)
+                .array();
+        var handlerReference = ByteBuffer.allocate(24)
+                .position(8)
+                .put(ascii(handler))
+                .array();
+        return box("trak", box("tkhd", trackHeader), box("mdia", box("hdlr", handlerReference)));
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        var payload = concat(children);
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(ascii(type))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] oggPage(long granule, byte[] packet) {
+        return ByteBuffer.allocate(28 + packet.length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put(ascii("OggS"))
+                .put((byte) 0)
+                .put((byte) 0)
+                .putLong(granule)
+                .putInt(1)
+                .putInt(0)
+                .putInt(0)
+                .put((byte) 1)
+                .put((byte) packet.length)
+                .put(packet)
+                .array();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        var output = new ByteArrayOutputStream();
+        for (var part : parts) {
+            output.writeBytes(part);
+        }
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,80 @@
+package it.auties.whatsapp.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class MediasTest {
+    @Test
+    public void testCenteredSquareOfLandscapeImage() {
+        Assertions.assertEquals(new Rectangle(200, 0, 600, 600), Medias.getCenteredSquare(1000, 600));
+    }
+
+    @Test
+    public void testCenteredSquareOfPortraitImage() {
+        Assertions.assertEquals(new Rectangle(0, 201, 600, 600), Medias.getCenteredSquare(600, 1003));
+    }
+
+    @Test
+    public void testCenteredSquareOfSquareImage() {
+        Assertions.assertEquals(new Rectangle(0, 0, 640, 640), Medias.getCenteredSquare(640, 640));
+    }
+
+    @Test
+    public void testSubsamplingKeepsShorterSideAboveTarget() {
+        Assertions.assertEquals(4, Medias.getSubsamplingStep(4000, 3000, 640));
+        Assertions.assertTrue(3000 / Medias.getSubsamplingStep(4000, 3000, 640) >= 640);
+        Assertions.assertEquals(2, Medias.getSubsamplingStep(1280, 1280, 640));
+        Assertions.assertEquals(1, Medias.getSubsamplingStep(1279, 5000, 640));
+    }
+
+    @Test
+    public void testSubsamplingNeverUpsamples() {
+        Assertions.assertEquals(1, Medias.getSubsamplingStep(100, 100, 640));
+        Assertions.assertEquals(1, Medias.getSubsamplingStep(0, 0, 640));
+    }
+
+    @Test
+    public void testProfilePicIsCroppedToCenteredSquare() throws IOException {
+        // Only the centered square is red, so a stretched image would have blue borders
+        var source = new BufferedImage(1920, 640, BufferedImage.TYPE_INT_RGB);
+        var graphics = source.createGraphics();
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, 1920, 640);
+        graphics.setColor(Color.RED);
+        graphics.fillRect(640, 0, 640, 640);
+        graphics.dispose();
+
+        var result = ImageIO.read(new ByteArrayInputStream(Medias.getProfilePic(encode(source, "png"))));
+        Assertions.assertEquals(640, result.getWidth());
+        Assertions.assertEquals(640, result.getHeight());
+        for (var point : new int[][]{{8, 8}, {631, 8}, {320, 320}, {8, 631}, {631, 631}}) {
+            var color = new Color(result.getRGB(point[0], point[1]));
+            Assertions.assertTrue(color.getRed() > 200 && color.getBlue() < 50, "Unexpected color %s at %s, %s".formatted(color, point[0], point[1]));
+        }
+    }
+
+    @Test
+    public void testImageMetadataReadsDimensionsAndThumbnail() throws IOException {
+        var source = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+        var metadata = Medias.getImageMetadata(encode(source, "jpg"), Medias.Format.JPG);
+        Assertions.assertEquals(1200, metadata.dimensions().width());
+        Assertions.assertEquals(900, metadata.dimensions().height());
+        Assertions.assertNotNull(metadata.thumbnail(), "Missing thumbnail");
+        var thumbnail = ImageIO.read(new ByteArrayInputStream(metadata.thumbnail()));
+        Assertions.assertEquals(32, thumbnail.getWidth());
+        Assertions.assertEquals(32, thumbnail.getHeight());
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        var output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+        return output.toByteArray();
+    }
+}